@@ -0,0 +1,71 @@
+package com.jlpereira.mq_benchmarks;
+
+import com.jlpereira.mq_shipment_commons.util.HashedWheelTimer;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentResponseDTO;
+import com.jlpereira.mq_shipment_sender.service.PendingReplyRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-request correlation work in the sender: generating the correlation ID the way
+ * {@code MessageSenderService} does, and registering it in the {@link PendingReplyRegistry} and completing
+ * it from the response listener. The registry is shared, so the multi-threaded run shows contention on it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CorrelationIdBenchmark {
+
+    private static final String INSTANCE_ID = "shipment-sender-1";
+
+    private HashedWheelTimer timer;
+    private PendingReplyRegistry registry;
+    private ShipmentResponseDTO response;
+
+    @Setup
+    public void setUp() {
+        timer = new HashedWheelTimer("benchmark-reply-timeout", 10, TimeUnit.MILLISECONDS, 512);
+        registry = new PendingReplyRegistry(timer, new SimpleMeterRegistry(), 5000, 30000);
+        response = new ShipmentResponseDTO("ORD-20240917-0001", "SUCCESS", "Email sent successfully");
+    }
+
+    @TearDown
+    public void tearDown() {
+        timer.close();
+    }
+
+    @Benchmark
+    public String generate() {
+        return newCorrelationId();
+    }
+
+    @Benchmark
+    public CompletableFuture<ShipmentResponseDTO> registerAndComplete() {
+        String correlationId = newCorrelationId();
+        CompletableFuture<ShipmentResponseDTO> reply = registry.register(correlationId);
+        registry.complete(correlationId, response);
+        return reply;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CompletableFuture<ShipmentResponseDTO> registerAndCompleteContended() {
+        return registerAndComplete();
+    }
+
+    private static String newCorrelationId() {
+        return INSTANCE_ID + ":" + UUID.randomUUID();
+    }
+}
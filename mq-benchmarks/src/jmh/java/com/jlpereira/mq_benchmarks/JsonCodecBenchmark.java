@@ -0,0 +1,63 @@
+package com.jlpereira.mq_benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentJsonCodec;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentResponseDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming JSON codec with the databind calls it replaced: decoding a request in
+ * {@code MessageConverter} and encoding a response in {@code ShipmentService}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonCodecBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ShipmentJsonCodec codec;
+    private ShipmentResponseDTO response;
+    private String requestJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        codec = new ShipmentJsonCodec(objectMapper);
+        response = new ShipmentResponseDTO("ORD-20240917-0001", "SUCCESS", "Email sent successfully");
+        requestJson = objectMapper.writeValueAsString(new ShipmentMessageDTO("ORD-20240917-0001",
+                "customer@example.com", "TRK-9876543210", LocalDate.of(2024, 9, 17), null, null));
+    }
+
+    @Benchmark
+    public ShipmentMessageDTO readRequestDatabind() throws JsonProcessingException {
+        return objectMapper.readValue(requestJson, ShipmentMessageDTO.class);
+    }
+
+    @Benchmark
+    public ShipmentMessageDTO readRequestStreaming() throws JsonProcessingException {
+        return codec.readRequest(requestJson, ShipmentMessageDTO::new);
+    }
+
+    @Benchmark
+    public String writeResponseDatabind() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(response);
+    }
+
+    @Benchmark
+    public String writeResponseStreaming() throws JsonProcessingException {
+        return codec.writeResponse(response);
+    }
+}
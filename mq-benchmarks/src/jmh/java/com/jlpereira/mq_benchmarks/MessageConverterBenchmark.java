@@ -0,0 +1,83 @@
+package com.jlpereira.mq_benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentBinaryCodec;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentJsonCodec;
+import com.jlpereira.mq_shipment_processor.commons.util.MessageConverter;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentRequestDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.TextMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MessageConverter#fromMessage(Message)} on the processor's consumer thread for both wire
+ * formats, including its convert stage timer. The messages are in-memory proxies, so the figures exclude
+ * the MQ client's body handling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageConverterBenchmark {
+
+    private MessageConverter converter;
+    private Message textMessage;
+    private Message bytesMessage;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        converter = new MessageConverter(new ShipmentJsonCodec(objectMapper), new SimpleMeterRegistry());
+
+        ShipmentRequestDTO request = new ShipmentRequestDTO("ORD-20240917-0001", "customer@example.com",
+                "TRK-9876543210", LocalDate.of(2024, 9, 17), null, null);
+        textMessage = textMessage(objectMapper.writeValueAsString(request));
+        bytesMessage = bytesMessage(ShipmentBinaryCodec.encodeRequest(request));
+    }
+
+    @Benchmark
+    public ShipmentMessageDTO fromTextMessage() throws JMSException {
+        return converter.fromMessage(textMessage);
+    }
+
+    @Benchmark
+    public ShipmentMessageDTO fromBytesMessage() throws JMSException {
+        return converter.fromMessage(bytesMessage);
+    }
+
+    private static TextMessage textMessage(String text) {
+        return (TextMessage) Proxy.newProxyInstance(TextMessage.class.getClassLoader(), new Class<?>[]{TextMessage.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getText" -> text;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static BytesMessage bytesMessage(byte[] body) {
+        return (BytesMessage) Proxy.newProxyInstance(BytesMessage.class.getClassLoader(), new Class<?>[]{BytesMessage.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getBodyLength" -> (long) body.length;
+                    case "readBytes" -> {
+                        byte[] target = (byte[]) args[0];
+                        System.arraycopy(body, 0, target, 0, Math.min(body.length, target.length));
+                        yield Math.min(body.length, target.length);
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
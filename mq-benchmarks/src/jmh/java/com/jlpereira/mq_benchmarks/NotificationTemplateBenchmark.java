@@ -0,0 +1,65 @@
+package com.jlpereira.mq_benchmarks;
+
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_processor.template.NotificationTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares rendering the shipment confirmation email from a precompiled template with the string
+ * concatenation it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NotificationTemplateBenchmark {
+
+    private ShipmentMessageDTO shipment;
+    private NotificationTemplate template;
+
+    @Setup
+    public void setUp() throws IOException {
+        shipment = new ShipmentMessageDTO("ORD-20240917-0001", "customer@example.com", "TRK-9876543210",
+                LocalDate.of(2024, 9, 17), null, null);
+        try (InputStream input = getClass().getClassLoader()
+                .getResourceAsStream("templates/notification/shipment-confirmation.txt")) {
+            template = NotificationTemplate.parse(new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * The email body as it was built before templates were precompiled.
+     */
+    @Benchmark
+    public String concatenation() {
+        return "Dear customer,\n\n" +
+                "Your order with ID: " +
+                shipment.orderId() +
+                " has been shipped.\n" +
+                "Tracking Number: " +
+                shipment.trackingNumber() +
+                "\n" +
+                "Shipping Date: " +
+                shipment.shippingDate() +
+                "\n\n" +
+                "Thank you for shopping with us.\n\n" +
+                "Best regards,\n" +
+                "The Shipping Team";
+    }
+
+    @Benchmark
+    public String compiledTemplate() {
+        return template.body().render(shipment);
+    }
+}
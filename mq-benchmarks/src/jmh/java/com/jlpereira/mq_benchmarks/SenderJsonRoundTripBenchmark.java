@@ -0,0 +1,59 @@
+package com.jlpereira.mq_benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentJsonCodec;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentRequestDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentResponseDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the JSON work the sender does per shipment: encoding the request in {@code MessageSenderService}
+ * and decoding the response in {@code ResponseListener}, separately and as one round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SenderJsonRoundTripBenchmark {
+
+    private ShipmentJsonCodec codec;
+    private ShipmentRequestDTO request;
+    private String responseJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        codec = new ShipmentJsonCodec(objectMapper);
+        request = new ShipmentRequestDTO("ORD-20240917-0001", "customer@example.com", "TRK-9876543210",
+                LocalDate.of(2024, 9, 17), null, null);
+        responseJson = codec.writeResponse(new ShipmentResponseDTO("ORD-20240917-0001", "SUCCESS",
+                "Email sent successfully"));
+    }
+
+    @Benchmark
+    public String encodeRequest() throws JsonProcessingException {
+        return codec.writeRequest(request);
+    }
+
+    @Benchmark
+    public ShipmentResponseDTO decodeResponse() throws JsonProcessingException {
+        return codec.readResponse(responseJson, ShipmentResponseDTO::new);
+    }
+
+    @Benchmark
+    public ShipmentResponseDTO roundTrip() throws JsonProcessingException {
+        codec.writeRequest(request);
+        return codec.readResponse(responseJson, ShipmentResponseDTO::new);
+    }
+}
@@ -0,0 +1,57 @@
+package com.jlpereira.mq_benchmarks;
+
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_processor.template.NotificationTemplate;
+import com.jlpereira.mq_shipment_processor.template.NotificationTemplateCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the confirmation email in {@code ShipmentService.sendNotification}: the template
+ * cache lookup and the rendering of the subject and body, for the default and a localized template.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ShipmentNotificationBenchmark {
+
+    private NotificationTemplateCache templateCache;
+    private ShipmentMessageDTO shipment;
+    private ShipmentMessageDTO localizedShipment;
+
+    @Setup
+    public void setUp() {
+        templateCache = new NotificationTemplateCache(new SimpleMeterRegistry(), "", 64, 10000);
+        shipment = new ShipmentMessageDTO("ORD-20240917-0001", "customer@example.com", "TRK-9876543210",
+                LocalDate.of(2024, 9, 17), null, null);
+        localizedShipment = new ShipmentMessageDTO("ORD-20240917-0001", "customer@example.com", "TRK-9876543210",
+                LocalDate.of(2024, 9, 17), null, "es-MX");
+    }
+
+    @Benchmark
+    public void buildEmail(Blackhole blackhole) {
+        build(shipment, blackhole);
+    }
+
+    @Benchmark
+    public void buildLocalizedEmail(Blackhole blackhole) {
+        build(localizedShipment, blackhole);
+    }
+
+    private void build(ShipmentMessageDTO shipmentMessageDTO, Blackhole blackhole) {
+        NotificationTemplate template = templateCache.get("shipment-confirmation",
+                shipmentMessageDTO.brand(), shipmentMessageDTO.locale());
+        blackhole.consume(template.subject().render(shipmentMessageDTO));
+        blackhole.consume(template.body().render(shipmentMessageDTO));
+    }
+}
@@ -0,0 +1,63 @@
+package com.jlpereira.mq_benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentBinaryCodec;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentRequestDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON and binary wire formats for the request hop: encoding on the sender and decoding
+ * on the processor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WireFormatBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ShipmentRequestDTO request;
+    private String json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        request = new ShipmentRequestDTO("ORD-20240917-0001", "customer@example.com", "TRK-9876543210",
+                LocalDate.of(2024, 9, 17), null, null);
+        json = objectMapper.writeValueAsString(request);
+        binary = ShipmentBinaryCodec.encodeRequest(request);
+    }
+
+    @Benchmark
+    public String encodeJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(request);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return ShipmentBinaryCodec.encodeRequest(request);
+    }
+
+    @Benchmark
+    public ShipmentMessageDTO decodeJson() throws JsonProcessingException {
+        return objectMapper.readValue(json, ShipmentMessageDTO.class);
+    }
+
+    @Benchmark
+    public ShipmentMessageDTO decodeBinary() {
+        return ShipmentBinaryCodec.decodeRequest(binary, ShipmentMessageDTO::new);
+    }
+}
@@ -0,0 +1,74 @@
+package com.jlpereira.mq_loadtest;
+
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Non-persistent Artemis broker with an in-VM acceptor, standing in for IBM MQ during the load test.
+ * Queues are created on first use. Paging files go to a temporary directory that is deleted on close.
+ */
+final class EmbeddedBroker implements AutoCloseable {
+
+    private final EmbeddedActiveMQ server;
+    private final String url;
+    private final Path directory;
+
+    /**
+     * Starts the broker.
+     *
+     * @param acceptorUrl The URL clients connect to, e.g. {@code vm://0}.
+     * @throws Exception If the broker cannot be started.
+     */
+    EmbeddedBroker(String acceptorUrl) throws Exception {
+        this.url = acceptorUrl;
+        this.directory = Files.createTempDirectory("mq-loadtest-broker");
+        Configuration configuration = new ConfigurationImpl();
+        configuration.setBrokerInstance(directory.toFile());
+        configuration
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .setJMXManagementEnabled(false)
+                .addAcceptorConfiguration("in-vm", acceptorUrl);
+        this.server = new EmbeddedActiveMQ().setConfiguration(configuration);
+        server.start();
+    }
+
+    /**
+     * @return The URL clients connect to.
+     */
+    String url() {
+        return url;
+    }
+
+    /**
+     * Stops the broker and deletes its directory.
+     *
+     * @throws IllegalStateException If the broker cannot be stopped.
+     */
+    @Override
+    public void close() {
+        try {
+            server.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while stopping the broker", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Error stopping the broker", e);
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error deleting broker directory " + directory, e);
+        }
+    }
+}
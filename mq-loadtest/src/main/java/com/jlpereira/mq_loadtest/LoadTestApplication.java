@@ -0,0 +1,78 @@
+package com.jlpereira.mq_loadtest;
+
+import com.jlpereira.mq_shipment_processor.MqShipmentProcessorApplication;
+import com.jlpereira.mq_shipment_sender.MqShipmentSenderApplication;
+import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the sender and the processor in one JVM against an embedded Artemis broker and drives
+ * {@code POST /api/shipments} at an open-loop rate, reporting throughput, error rate and latency
+ * percentiles of the full sender → processor → sender round trip, and the servlet threads it took.
+ * <p>
+ * Both applications start with the {@code loadtest} profile, which points their {@code ConfigMQ} at the
+ * broker. Each reads its configuration from {@code loadtest/<application>.properties}, because their own
+ * {@code application.properties} share a classpath location.
+ */
+public final class LoadTestApplication {
+
+    private static final String PROFILE = "loadtest";
+    private static final String BROKER_URL = "vm://0";
+
+    private LoadTestApplication() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        run(options, System.out).print(System.out);
+    }
+
+    /**
+     * Starts the broker and both applications, applies the load and stops everything again.
+     *
+     * @param options The options of the run.
+     * @param out     The stream progress is printed to.
+     * @return The results of the run.
+     * @throws Exception If the broker or an application cannot be started.
+     */
+    static LoadTestReport run(LoadTestOptions options, PrintStream out) throws Exception {
+        try (EmbeddedBroker broker = new EmbeddedBroker(BROKER_URL)) {
+            ConfigurableApplicationContext processor = start(MqShipmentProcessorApplication.class,
+                    WebApplicationType.NONE, "processor", broker.url(), options.processorProperties());
+            try (ConfigurableApplicationContext sender = start(MqShipmentSenderApplication.class,
+                    WebApplicationType.SERVLET, "sender", broker.url(), options.senderProperties())) {
+                TomcatWebServer webServer = (TomcatWebServer) ((WebServerApplicationContext) sender).getWebServer();
+                ThreadPoolExecutor servletThreads = (ThreadPoolExecutor) webServer.getTomcat().getConnector()
+                        .getProtocolHandler().getExecutor();
+                out.printf("Sending %d req/s to port %d for %ds after a %ds warm-up%n", options.rate(), webServer.getPort(),
+                        options.duration().toSeconds(), options.warmup().toSeconds());
+                return new OpenLoopDriver(URI.create("http://localhost:" + webServer.getPort() + "/api/shipments"), options,
+                        out, servletThreads::getActiveCount, servletThreads::getPoolSize).run();
+            } finally {
+                processor.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(Class<?> application, WebApplicationType webApplicationType,
+                                                        String name, String brokerUrl, Map<String, String> properties) {
+        List<String> args = new ArrayList<>();
+        args.add("--spring.config.location=classpath:/loadtest/" + name + ".properties");
+        args.add("--loadtest.broker-url=" + brokerUrl);
+        properties.forEach((property, value) -> args.add("--" + property + "=" + value));
+        return new SpringApplicationBuilder(application)
+                .web(webApplicationType)
+                .profiles(PROFILE)
+                .run(args.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,84 @@
+package com.jlpereira.mq_loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Options of a load test run, parsed from {@code --name=value} arguments.
+ * <p>
+ * {@code --processor.<property>=<value>} and {@code --sender.<property>=<value>} are passed to the
+ * processor and sender application contexts, e.g. {@code --processor.shipment.processing.mode=lanes}.
+ *
+ * @param rate                The offered load, in requests per second.
+ * @param warmup              How long the load is applied before results are recorded.
+ * @param duration            How long results are recorded after the warm-up.
+ * @param requestTimeout      How long a request may take before it counts as an error.
+ * @param accepted            Whether shipments are submitted in accepted mode, timing the 202 instead of the round trip.
+ * @param expressShare        The fraction of requests sent with the express service level, between 0 and 1.
+ * @param processorProperties Properties passed to the processor.
+ * @param senderProperties    Properties passed to the sender.
+ */
+record LoadTestOptions(
+        int rate,
+        Duration warmup,
+        Duration duration,
+        Duration requestTimeout,
+        boolean accepted,
+        double expressShare,
+        Map<String, String> processorProperties,
+        Map<String, String> senderProperties
+) {
+
+    private static final String PROCESSOR_PREFIX = "processor.";
+    private static final String SENDER_PREFIX = "sender.";
+
+    /**
+     * Parses the command line arguments of the load test.
+     *
+     * @param args Arguments of the form {@code --name=value}.
+     * @return The options, with defaults for those not given.
+     * @throws IllegalArgumentException If an argument is malformed or unknown.
+     */
+    static LoadTestOptions parse(String... args) {
+        int rate = 200;
+        Duration warmup = Duration.ofSeconds(5);
+        Duration duration = Duration.ofSeconds(30);
+        Duration requestTimeout = Duration.ofSeconds(10);
+        boolean accepted = false;
+        double expressShare = 0;
+        Map<String, String> processorProperties = new LinkedHashMap<>();
+        Map<String, String> senderProperties = new LinkedHashMap<>();
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            if (name.startsWith(PROCESSOR_PREFIX)) {
+                processorProperties.put(name.substring(PROCESSOR_PREFIX.length()), value);
+            } else if (name.startsWith(SENDER_PREFIX)) {
+                senderProperties.put(name.substring(SENDER_PREFIX.length()), value);
+            } else {
+                switch (name) {
+                    case "rate" -> rate = Integer.parseInt(value);
+                    case "warmup" -> warmup = Duration.ofSeconds(Long.parseLong(value));
+                    case "duration" -> duration = Duration.ofSeconds(Long.parseLong(value));
+                    case "timeout" -> requestTimeout = Duration.ofSeconds(Long.parseLong(value));
+                    case "accepted" -> accepted = Boolean.parseBoolean(value);
+                    case "express-share" -> expressShare = Double.parseDouble(value);
+                    default -> throw new IllegalArgumentException("Unknown option: --" + name);
+                }
+            }
+        }
+        if (rate <= 0) {
+            throw new IllegalArgumentException("--rate must be positive");
+        }
+        if (expressShare < 0 || expressShare > 1) {
+            throw new IllegalArgumentException("--express-share must be between 0 and 1");
+        }
+        return new LoadTestOptions(rate, warmup, duration, requestTimeout, accepted, expressShare, processorProperties, senderProperties);
+    }
+}
@@ -0,0 +1,80 @@
+package com.jlpereira.mq_loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+
+/**
+ * Results of the measured part of a load test run.
+ *
+ * @param rate                 The offered load, in requests per second.
+ * @param elapsedSeconds       From the end of the warm-up to the last completed request.
+ * @param sent                 Requests sent.
+ * @param succeeded            Round trips answered with {@code SUCCESS}.
+ * @param notificationFailures Round trips answered with the processor's simulated email failure.
+ * @param errors               Requests that failed for any other reason, including timeouts.
+ * @param errorReasons         The number of errors per reason.
+ * @param latency              Round trip latencies in microseconds, measured from each request's intended send time.
+ * @param expressLatency       The latencies of the express requests among them.
+ * @param busyServletThreads   The most servlet threads of the sender seen handling a request at once.
+ * @param servletThreads       The servlet threads the sender had started by the end of the run.
+ */
+record LoadTestReport(
+        int rate,
+        double elapsedSeconds,
+        long sent,
+        long succeeded,
+        long notificationFailures,
+        long errors,
+        Map<String, Long> errorReasons,
+        Histogram latency,
+        Histogram expressLatency,
+        int busyServletThreads,
+        int servletThreads
+) {
+
+    /**
+     * @return Completed round trips per second, whatever their outcome.
+     */
+    double throughput() {
+        return elapsedSeconds > 0 ? (succeeded + notificationFailures) / elapsedSeconds : 0;
+    }
+
+    /**
+     * @return The fraction of sent requests that did not complete a round trip.
+     */
+    double errorRate() {
+        return sent > 0 ? (double) errors / sent : 0;
+    }
+
+    /**
+     * Prints the report.
+     *
+     * @param out The stream to print to.
+     */
+    void print(PrintStream out) {
+        out.printf("%nOffered load:   %d req/s%n", rate);
+        out.printf("Sent:           %d%n", sent);
+        out.printf("Throughput:     %.1f round trips/s%n", throughput());
+        out.printf("Succeeded:      %d%n", succeeded);
+        out.printf("Email failures: %d (simulated by the processor)%n", notificationFailures);
+        out.printf("Errors:         %d (%.2f%%)%n", errors, errorRate() * 100);
+        errorReasons.forEach((reason, count) -> out.printf("  %-40s %d%n", reason, count));
+        printLatency(out, "Latency (ms):  ", latency);
+        if (expressLatency.getTotalCount() > 0) {
+            printLatency(out, "Express (ms):  ", expressLatency);
+        }
+        out.printf("Servlet threads: %d busy at peak, %d started%n", busyServletThreads, servletThreads);
+    }
+
+    private static void printLatency(PrintStream out, String label, Histogram histogram) {
+        out.printf("%s p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n", label,
+                percentile(histogram, 50), percentile(histogram, 90), percentile(histogram, 99),
+                percentile(histogram, 99.9), histogram.getMaxValue() / 1000.0);
+    }
+
+    private static double percentile(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,207 @@
+package com.jlpereira.mq_loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+/**
+ * Sends shipment requests at a fixed rate, whether or not earlier requests have completed.
+ * <p>
+ * Request {@code i} is due at {@code start + i / rate}, and its latency is measured from that time rather
+ * than from when it was actually sent, so a stalled system cannot hide its queueing delay by slowing the
+ * load down. Every request has a unique order, tracking number and customer, so retries are never
+ * collapsed or replayed and notifications never coalesced. A share of the requests can be sent with the
+ * express service level, evenly spread over the run; their latency is also reported on its own. In accepted mode, a request completes with its 202,
+ * so the latency is that of the submission alone. Responses are handled on a few client threads,
+ * so the driver competes with the applications for CPU as little as possible. The servlet threads of the
+ * sender are sampled every second, to show how many requests hold a thread while they wait for their reply.
+ */
+final class OpenLoopDriver {
+
+    private static final String NOTIFICATION_FAILED = "Email sending failed";
+    private static final int CLIENT_THREADS = 4;
+    private static final String SHIPMENT_JSON =
+            "{\"orderId\":\"LT-%1$d\",\"customerEmail\":\"customer%1$d@example.com\",\"trackingNumber\":\"TRK-%1$d\",\"shippingDate\":\"2024-09-17\",\"serviceLevel\":\"%2$s\"}";
+
+    private final URI endpoint;
+    private final LoadTestOptions options;
+    private final PrintStream out;
+    private final IntSupplier busyServletThreads;
+    private final IntSupplier servletThreads;
+    private final ExecutorService clientExecutor;
+    private final HttpClient httpClient;
+    private final Recorder recorder = new Recorder(3);
+    private final Histogram latency = new Histogram(3);
+    private final Recorder expressRecorder = new Recorder(3);
+    private final AtomicLong outstanding = new AtomicLong();
+    private final AtomicLong lastCompletionNanos = new AtomicLong();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder notificationFailures = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Map<String, LongAdder> errorReasons = new ConcurrentHashMap<>();
+    private final AtomicInteger peakBusyServletThreads = new AtomicInteger();
+
+    /**
+     * Constructor for initializing the driver.
+     *
+     * @param endpoint           The URL of {@code POST /api/shipments}.
+     * @param options            The rate, durations and timeout of the run.
+     * @param out                The stream progress is printed to.
+     * @param busyServletThreads The number of servlet threads of the sender handling a request.
+     * @param servletThreads     The number of servlet threads the sender has started.
+     */
+    OpenLoopDriver(URI endpoint, LoadTestOptions options, PrintStream out, IntSupplier busyServletThreads,
+                   IntSupplier servletThreads) {
+        this.endpoint = endpoint;
+        this.options = options;
+        this.out = out;
+        this.busyServletThreads = busyServletThreads;
+        this.servletThreads = servletThreads;
+        this.clientExecutor = Executors.newFixedThreadPool(CLIENT_THREADS);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .build();
+    }
+
+    /**
+     * Applies the load for the warm-up and the measured duration, then waits for outstanding requests.
+     *
+     * @return The results of the measured duration.
+     * @throws InterruptedException If interrupted while applying the load.
+     */
+    LoadTestReport run() throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long start = System.nanoTime();
+        long measureFrom = start + options.warmup().toNanos();
+        long end = measureFrom + options.duration().toNanos();
+
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor();
+        progress.scheduleAtFixedRate(() -> printProgress(start, measureFrom), 1, 1, TimeUnit.SECONDS);
+        try {
+            for (long i = 0; ; i++) {
+                long intendedNanos = start + i * intervalNanos;
+                if (intendedNanos >= end) {
+                    break;
+                }
+                long waitNanos;
+                while ((waitNanos = intendedNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+                send(i, intendedNanos, intendedNanos >= measureFrom);
+            }
+
+            long deadline = System.nanoTime() + options.requestTimeout().toNanos() + TimeUnit.SECONDS.toNanos(1);
+            while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            progress.shutdownNow();
+            clientExecutor.shutdownNow();
+        }
+
+        synchronized (latency) {
+            latency.add(recorder.getIntervalHistogram());
+        }
+        Histogram expressLatency = expressRecorder.getIntervalHistogram();
+        Map<String, Long> reasons = new TreeMap<>();
+        errorReasons.forEach((reason, count) -> reasons.put(reason, count.sum()));
+        double elapsedSeconds = Math.max(end, lastCompletionNanos.get()) - measureFrom;
+        return new LoadTestReport(options.rate(), elapsedSeconds / TimeUnit.SECONDS.toNanos(1), sent.sum(),
+                succeeded.sum(), notificationFailures.sum(), errors.sum() + outstanding.get(), reasons, latency,
+                expressLatency, peakBusyServletThreads.get(), servletThreads.getAsInt());
+    }
+
+    private void send(long sequence, long intendedNanos, boolean measured) {
+        boolean express = (long) ((sequence + 1) * options.expressShare()) > (long) (sequence * options.expressShare());
+        HttpRequest.Builder builder = HttpRequest.newBuilder(endpoint)
+                .header("Content-Type", "application/json")
+                .timeout(options.requestTimeout())
+                .POST(HttpRequest.BodyPublishers.ofString(SHIPMENT_JSON.formatted(sequence, express ? "express" : "standard")));
+        if (options.accepted()) {
+            builder.header("Prefer", "respond-async");
+        }
+        HttpRequest request = builder.build();
+        if (measured) {
+            sent.increment();
+        }
+        outstanding.incrementAndGet();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> complete(response, error, intendedNanos, measured, express));
+    }
+
+    private void complete(HttpResponse<String> response, Throwable error, long intendedNanos, boolean measured,
+                          boolean express) {
+        long now = System.nanoTime();
+        outstanding.decrementAndGet();
+        if (!measured) {
+            return;
+        }
+        lastCompletionNanos.accumulateAndGet(now, Math::max);
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            recordError(cause.getClass().getSimpleName());
+        } else if (response.statusCode() == (options.accepted() ? 202 : 200)) {
+            succeeded.increment();
+            recordLatency(now - intendedNanos, express);
+        } else if (response.statusCode() == 500 && response.body().contains(NOTIFICATION_FAILED)) {
+            notificationFailures.increment();
+            recordLatency(now - intendedNanos, express);
+        } else {
+            recordError("HTTP " + response.statusCode());
+        }
+    }
+
+    private void recordLatency(long nanos, boolean express) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        recorder.recordValue(micros);
+        if (express) {
+            expressRecorder.recordValue(micros);
+        }
+    }
+
+    private void recordError(String reason) {
+        errors.increment();
+        errorReasons.computeIfAbsent(reason, key -> new LongAdder()).increment();
+    }
+
+    private void printProgress(long start, long measureFrom) {
+        long now = System.nanoTime();
+        long second = TimeUnit.NANOSECONDS.toSeconds(now - start);
+        if (now < measureFrom) {
+            out.printf("[%3ds] warming up, %d outstanding%n", second, outstanding.get());
+            return;
+        }
+        Histogram interval = recorder.getIntervalHistogram();
+        synchronized (latency) {
+            latency.add(interval);
+        }
+        int busy = busyServletThreads.getAsInt();
+        peakBusyServletThreads.accumulateAndGet(busy, Math::max);
+        out.printf("[%3ds] %d round trips, %d errors, %d outstanding, %d busy servlet threads, p50 %.2f ms, p99 %.2f ms%n",
+                second, interval.getTotalCount(), errors.sum(), outstanding.get(), busy,
+                interval.getValueAtPercentile(50) / 1000.0, interval.getValueAtPercentile(99) / 1000.0);
+    }
+}
@@ -0,0 +1,45 @@
+package com.jlpereira.mq_loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadTestApplicationTest {
+
+	@Test
+	void completesEveryRoundTripThroughTheEmbeddedBroker() throws Exception {
+		LoadTestOptions options = LoadTestOptions.parse("--rate=20", "--warmup=1", "--duration=2", "--timeout=5");
+
+		LoadTestReport report = LoadTestApplication.run(options, new PrintStream(new ByteArrayOutputStream()));
+
+		assertTrue(report.sent() >= 36, "sent " + report.sent());
+		assertEquals(0, report.errors(), () -> "errors " + report.errorReasons());
+		assertEquals(report.sent(), report.succeeded() + report.notificationFailures());
+		assertEquals(report.sent(), report.latency().getTotalCount());
+	}
+
+	@Test
+	void parsesApplicationProperties() {
+		LoadTestOptions options = LoadTestOptions.parse("--rate=500", "--processor.shipment.processing.mode=lanes",
+				"--sender.shipment.wire-format=binary", "--accepted=true", "--express-share=0.1");
+
+		assertEquals(500, options.rate());
+		assertTrue(options.accepted());
+		assertEquals(0.1, options.expressShare());
+		assertEquals(Map.of("shipment.processing.mode", "lanes"), options.processorProperties());
+		assertEquals(Map.of("shipment.wire-format", "binary"), options.senderProperties());
+	}
+
+	@Test
+	void rejectsUnknownOptions() {
+		assertThrows(IllegalArgumentException.class, () -> LoadTestOptions.parse("--rps=500"));
+		assertThrows(IllegalArgumentException.class, () -> LoadTestOptions.parse("rate=500"));
+		assertThrows(IllegalArgumentException.class, () -> LoadTestOptions.parse("--express-share=2"));
+	}
+}
@@ -0,0 +1,56 @@
+package com.jlpereira.mq_shipment_commons.codec;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+
+/**
+ * A message body already encoded in its wire format, so encoding errors surface before anything is sent.
+ *
+ * @param format The wire format.
+ * @param text   The JSON text, for {@link WireFormat#JSON}.
+ * @param bytes  The binary body, for {@link WireFormat#BINARY}.
+ */
+public record EncodedPayload(
+        WireFormat format,
+        String text,
+        byte[] bytes
+) {
+
+    /**
+     * @param text The JSON text.
+     * @return A JSON payload.
+     */
+    public static EncodedPayload json(String text) {
+        return new EncodedPayload(WireFormat.JSON, text, null);
+    }
+
+    /**
+     * @param bytes The binary body.
+     * @return A binary payload.
+     */
+    public static EncodedPayload binary(byte[] bytes) {
+        return new EncodedPayload(WireFormat.BINARY, null, bytes);
+    }
+
+    /**
+     * Creates a message carrying the payload and its format property.
+     *
+     * @param session The session the message is created on.
+     * @return A {@code TextMessage} or {@code BytesMessage}.
+     * @throws JMSException If the message cannot be created.
+     */
+    public Message createMessage(Session session) throws JMSException {
+        Message message;
+        if (format == WireFormat.BINARY) {
+            BytesMessage bytesMessage = session.createBytesMessage();
+            bytesMessage.writeBytes(bytes);
+            message = bytesMessage;
+        } else {
+            message = session.createTextMessage(text);
+        }
+        message.setStringProperty(WireFormat.PROPERTY, format.name());
+        return message;
+    }
+}
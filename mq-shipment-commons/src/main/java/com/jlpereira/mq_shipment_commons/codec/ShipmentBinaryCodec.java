@@ -0,0 +1,233 @@
+package com.jlpereira.mq_shipment_commons.codec;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Compact, versioned binary encoding of shipment requests and responses.
+ * <p>
+ * Layout, version 1:
+ * <pre>
+ * header:   'S' 'H' | version (1 byte) | kind (1 byte: 1 request, 2 response)
+ * request:  orderId, customerEmail, trackingNumber: string | shippingDate: date | brand, locale: string
+ * response: orderId, status, message: string
+ * string:   varint (UTF-8 length + 1, 0 for null) | UTF-8 bytes
+ * date:     varint (zigzag epoch day + 1, 0 for null)
+ * </pre>
+ * Fields are positional, so no field names travel with the message. A decoder rejects versions newer
+ * than {@link #VERSION}; producers must only switch to a new version once every consumer understands it.
+ * Decoders build each service's own DTO through a factory, so both services share this one layout.
+ */
+public final class ShipmentBinaryCodec {
+
+    /**
+     * The newest format version this codec reads and the version it writes.
+     */
+    public static final byte VERSION = 1;
+
+    private static final byte MAGIC_0 = 'S';
+    private static final byte MAGIC_1 = 'H';
+    private static final byte KIND_REQUEST = 1;
+    private static final byte KIND_RESPONSE = 2;
+    private static final int HEADER_SIZE = 4;
+
+    private ShipmentBinaryCodec() {
+    }
+
+    /**
+     * Encodes a shipment request.
+     *
+     * @param request The request.
+     * @return The encoded bytes.
+     */
+    public static byte[] encodeRequest(ShipmentRequestFields request) {
+        byte[] orderId = utf8(request.orderId());
+        byte[] customerEmail = utf8(request.customerEmail());
+        byte[] trackingNumber = utf8(request.trackingNumber());
+        long shippingDate = dateValue(request.shippingDate());
+        byte[] brand = utf8(request.brand());
+        byte[] locale = utf8(request.locale());
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + stringSize(orderId) + stringSize(customerEmail)
+                + stringSize(trackingNumber) + varintSize(shippingDate) + stringSize(brand) + stringSize(locale));
+        writeHeader(buffer, KIND_REQUEST);
+        writeString(buffer, orderId);
+        writeString(buffer, customerEmail);
+        writeString(buffer, trackingNumber);
+        writeVarint(buffer, shippingDate);
+        writeString(buffer, brand);
+        writeString(buffer, locale);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a shipment request.
+     *
+     * @param bytes   The encoded bytes.
+     * @param factory Creates the request from its fields.
+     * @param <T>     The request DTO.
+     * @return The request.
+     * @throws IllegalArgumentException If the bytes are not a supported shipment request.
+     */
+    public static <T> T decodeRequest(byte[] bytes, ShipmentRequestFields.Factory<T> factory) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            readHeader(buffer, KIND_REQUEST);
+            return factory.create(readString(buffer), readString(buffer), readString(buffer),
+                    readDate(buffer), readString(buffer), readString(buffer));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated shipment request");
+        }
+    }
+
+    /**
+     * Encodes a shipment response.
+     *
+     * @param response The response.
+     * @return The encoded bytes.
+     */
+    public static byte[] encodeResponse(ShipmentResponseFields response) {
+        byte[] orderId = utf8(response.orderId());
+        byte[] status = utf8(response.status());
+        byte[] message = utf8(response.message());
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + stringSize(orderId) + stringSize(status) + stringSize(message));
+        writeHeader(buffer, KIND_RESPONSE);
+        writeString(buffer, orderId);
+        writeString(buffer, status);
+        writeString(buffer, message);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a shipment response.
+     *
+     * @param bytes   The encoded bytes.
+     * @param factory Creates the response from its fields.
+     * @param <T>     The response DTO.
+     * @return The response.
+     * @throws IllegalArgumentException If the bytes are not a supported shipment response.
+     */
+    public static <T> T decodeResponse(byte[] bytes, ShipmentResponseFields.Factory<T> factory) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            readHeader(buffer, KIND_RESPONSE);
+            return factory.create(readString(buffer), readString(buffer), readString(buffer));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated shipment response");
+        }
+    }
+
+    /**
+     * Reads the whole body of a bytes message.
+     *
+     * @param message The message.
+     * @return The body.
+     * @throws JMSException If the body cannot be read.
+     */
+    public static byte[] readBody(BytesMessage message) throws JMSException {
+        byte[] body = new byte[(int) message.getBodyLength()];
+        message.readBytes(body);
+        return body;
+    }
+
+    private static void writeHeader(ByteBuffer buffer, byte kind) {
+        buffer.put(MAGIC_0).put(MAGIC_1).put(VERSION).put(kind);
+    }
+
+    private static void readHeader(ByteBuffer buffer, byte expectedKind) {
+        if (buffer.get() != MAGIC_0 || buffer.get() != MAGIC_1) {
+            throw new IllegalArgumentException("Not a binary shipment message");
+        }
+        byte version = buffer.get();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported binary shipment format version: " + version);
+        }
+        byte kind = buffer.get();
+        if (kind != expectedKind) {
+            throw new IllegalArgumentException("Unexpected binary shipment message kind: " + kind);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int stringSize(byte[] value) {
+        return value != null ? varintSize(value.length + 1L) + value.length : 1;
+    }
+
+    private static void writeString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.put((byte) 0);
+            return;
+        }
+        writeVarint(buffer, value.length + 1L);
+        buffer.put(value);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        long encoded = readVarint(buffer);
+        if (encoded == 0) {
+            return null;
+        }
+        int length = (int) (encoded - 1);
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static long dateValue(LocalDate date) {
+        if (date == null) {
+            return 0;
+        }
+        long epochDay = date.toEpochDay();
+        return ((epochDay << 1) ^ (epochDay >> 63)) + 1;
+    }
+
+    private static LocalDate readDate(ByteBuffer buffer) {
+        long encoded = readVarint(buffer);
+        if (encoded == 0) {
+            return null;
+        }
+        long zigzag = encoded - 1;
+        return LocalDate.ofEpochDay((zigzag >>> 1) ^ -(zigzag & 1));
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
@@ -0,0 +1,266 @@
+package com.jlpereira.mq_shipment_commons.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SegmentedStringWriter;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Streaming JSON codec for the shipment DTOs, written against {@link JsonParser} and {@link JsonGenerator}
+ * instead of databind.
+ * <p>
+ * Produces the same documents as the {@link ObjectMapper} with the Java time module: dates are written as
+ * {@code [year,month,day]}, and read from that form, from {@code "yyyy-MM-dd"} or from an epoch day.
+ * Dates are parsed from the parser's character buffer without creating a string. Field names are
+ * pre-encoded, unknown fields are skipped, and output is written into recycled Jackson buffers.
+ * Readers build each service's own DTO through a factory, so both services share these documents.
+ */
+public class ShipmentJsonCodec {
+
+    private static final SerializableString ORDER_ID = new SerializedString("orderId");
+    private static final SerializableString CUSTOMER_EMAIL = new SerializedString("customerEmail");
+    private static final SerializableString TRACKING_NUMBER = new SerializedString("trackingNumber");
+    private static final SerializableString SHIPPING_DATE = new SerializedString("shippingDate");
+    private static final SerializableString BRAND = new SerializedString("brand");
+    private static final SerializableString LOCALE = new SerializedString("locale");
+    private static final SerializableString STATUS = new SerializedString("status");
+    private static final SerializableString MESSAGE = new SerializedString("message");
+
+    private final JsonFactory jsonFactory;
+
+    /**
+     * Initializes the codec with the factory of the application's {@link ObjectMapper}.
+     *
+     * @param objectMapper The object mapper whose parser and generator settings are used.
+     */
+    public ShipmentJsonCodec(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Writes a shipment request as JSON.
+     *
+     * @param request The request.
+     * @return The JSON document.
+     * @throws JsonProcessingException If the document cannot be generated.
+     */
+    public String writeRequest(ShipmentRequestFields request) throws JsonProcessingException {
+        return write(generator -> {
+            generator.writeStartObject();
+            writeString(generator, ORDER_ID, request.orderId());
+            writeString(generator, CUSTOMER_EMAIL, request.customerEmail());
+            writeString(generator, TRACKING_NUMBER, request.trackingNumber());
+            generator.writeFieldName(SHIPPING_DATE);
+            writeDate(generator, request.shippingDate());
+            writeString(generator, BRAND, request.brand());
+            writeString(generator, LOCALE, request.locale());
+            generator.writeEndObject();
+        });
+    }
+
+    /**
+     * Reads a shipment request from JSON.
+     *
+     * @param json    The JSON document.
+     * @param factory Creates the request from its fields.
+     * @param <T>     The request DTO.
+     * @return The request.
+     * @throws JsonProcessingException If the document is not a valid shipment request.
+     */
+    public <T> T readRequest(String json, ShipmentRequestFields.Factory<T> factory) throws JsonProcessingException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            expectStartObject(parser);
+            String orderId = null;
+            String customerEmail = null;
+            String trackingNumber = null;
+            LocalDate shippingDate = null;
+            String brand = null;
+            String locale = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "orderId" -> orderId = readString(parser, value);
+                    case "customerEmail" -> customerEmail = readString(parser, value);
+                    case "trackingNumber" -> trackingNumber = readString(parser, value);
+                    case "shippingDate" -> shippingDate = readDate(parser, value);
+                    case "brand" -> brand = readString(parser, value);
+                    case "locale" -> locale = readString(parser, value);
+                    default -> parser.skipChildren();
+                }
+            }
+            return factory.create(orderId, customerEmail, trackingNumber, shippingDate, brand, locale);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a shipment response as JSON.
+     *
+     * @param response The response.
+     * @return The JSON document.
+     * @throws JsonProcessingException If the document cannot be generated.
+     */
+    public String writeResponse(ShipmentResponseFields response) throws JsonProcessingException {
+        return write(generator -> {
+            generator.writeStartObject();
+            writeString(generator, ORDER_ID, response.orderId());
+            writeString(generator, STATUS, response.status());
+            writeString(generator, MESSAGE, response.message());
+            generator.writeEndObject();
+        });
+    }
+
+    /**
+     * Reads a shipment response from JSON.
+     *
+     * @param json    The JSON document.
+     * @param factory Creates the response from its fields.
+     * @param <T>     The response DTO.
+     * @return The response.
+     * @throws JsonProcessingException If the document is not a valid shipment response.
+     */
+    public <T> T readResponse(String json, ShipmentResponseFields.Factory<T> factory) throws JsonProcessingException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            expectStartObject(parser);
+            String orderId = null;
+            String status = null;
+            String message = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "orderId" -> orderId = readString(parser, value);
+                    case "status" -> status = readString(parser, value);
+                    case "message" -> message = readString(parser, value);
+                    default -> parser.skipChildren();
+                }
+            }
+            return factory.create(orderId, status, message);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String write(DocumentWriter document) throws JsonProcessingException {
+        SegmentedStringWriter writer = new SegmentedStringWriter(jsonFactory._getBufferRecycler());
+        try {
+            try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+                document.write(generator);
+            }
+            return writer.getAndClear();
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void expectStartObject(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object");
+        }
+    }
+
+    private static void writeString(JsonGenerator generator, SerializableString field, String value) throws IOException {
+        generator.writeFieldName(field);
+        generator.writeString(value);
+    }
+
+    private static void writeDate(JsonGenerator generator, LocalDate date) throws IOException {
+        if (date == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartArray();
+        generator.writeNumber(date.getYear());
+        generator.writeNumber(date.getMonthValue());
+        generator.writeNumber(date.getDayOfMonth());
+        generator.writeEndArray();
+    }
+
+    private static String readString(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected a string for " + parser.currentName());
+        }
+        return parser.getText();
+    }
+
+    private static LocalDate readDate(JsonParser parser, JsonToken token) throws IOException {
+        try {
+            return switch (token) {
+                case VALUE_NULL -> null;
+                case VALUE_STRING -> parseIsoDate(parser);
+                case VALUE_NUMBER_INT -> LocalDate.ofEpochDay(parser.getLongValue());
+                case START_ARRAY -> {
+                    int year = parser.nextIntValue(0);
+                    int month = parser.nextIntValue(0);
+                    int day = parser.nextIntValue(0);
+                    if (parser.nextToken() != JsonToken.END_ARRAY) {
+                        throw new JsonParseException(parser, "Expected [year,month,day] for shippingDate");
+                    }
+                    yield LocalDate.of(year, month, day);
+                }
+                default -> throw new JsonParseException(parser, "Unexpected token for shippingDate: " + token);
+            };
+        } catch (DateTimeException e) {
+            throw new JsonParseException(parser, "Invalid shippingDate: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses {@code yyyy-MM-dd} straight from the parser's character buffer.
+     */
+    private static LocalDate parseIsoDate(JsonParser parser) throws IOException {
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        if (length == 0) {
+            return null;
+        }
+        if (length != 10 || chars[offset + 4] != '-' || chars[offset + 7] != '-') {
+            return LocalDate.parse(parser.getText());
+        }
+        return LocalDate.of(digits(parser, chars, offset, 4), digits(parser, chars, offset + 5, 2),
+                digits(parser, chars, offset + 8, 2));
+    }
+
+    private static int digits(JsonParser parser, char[] chars, int offset, int count) throws JsonParseException {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new JsonParseException(parser, "Invalid shippingDate");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Writes the content of one JSON document.
+     */
+    @FunctionalInterface
+    private interface DocumentWriter {
+        void write(JsonGenerator generator) throws IOException;
+    }
+}
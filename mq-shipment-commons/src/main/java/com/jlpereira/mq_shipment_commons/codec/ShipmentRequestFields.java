@@ -0,0 +1,32 @@
+package com.jlpereira.mq_shipment_commons.codec;
+
+import java.time.LocalDate;
+
+/**
+ * The fields of a shipment request that travel in a request message, implemented by each service's request DTO.
+ */
+public interface ShipmentRequestFields {
+
+    String orderId();
+
+    String customerEmail();
+
+    String trackingNumber();
+
+    LocalDate shippingDate();
+
+    String brand();
+
+    String locale();
+
+    /**
+     * Creates a service's request DTO from decoded fields, typically its constructor.
+     *
+     * @param <T> The request DTO.
+     */
+    @FunctionalInterface
+    interface Factory<T> {
+        T create(String orderId, String customerEmail, String trackingNumber, LocalDate shippingDate, String brand,
+                 String locale);
+    }
+}
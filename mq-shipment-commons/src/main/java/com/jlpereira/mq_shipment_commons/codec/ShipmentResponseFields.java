@@ -0,0 +1,23 @@
+package com.jlpereira.mq_shipment_commons.codec;
+
+/**
+ * The fields of a shipment response that travel in a reply message, implemented by each service's response DTO.
+ */
+public interface ShipmentResponseFields {
+
+    String orderId();
+
+    String status();
+
+    String message();
+
+    /**
+     * Creates a service's response DTO from decoded fields, typically its constructor.
+     *
+     * @param <T> The response DTO.
+     */
+    @FunctionalInterface
+    interface Factory<T> {
+        T create(String orderId, String status, String message);
+    }
+}
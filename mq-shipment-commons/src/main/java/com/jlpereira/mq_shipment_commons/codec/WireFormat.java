@@ -0,0 +1,61 @@
+package com.jlpereira.mq_shipment_commons.codec;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+
+import java.util.Locale;
+
+/**
+ * Encodings of shipment messages on the queues.
+ * <p>
+ * The encoding is named in the {@link #PROPERTY} message property. Messages without it are JSON
+ * {@code TextMessage}s from services that predate the property, or {@code BytesMessage}s in the binary format.
+ */
+public enum WireFormat {
+
+    /**
+     * JSON in a {@code TextMessage}.
+     */
+    JSON,
+
+    /**
+     * {@link ShipmentBinaryCodec} in a {@code BytesMessage}.
+     */
+    BINARY;
+
+    /**
+     * Name of the message property carrying the format.
+     */
+    public static final String PROPERTY = "shipmentFormat";
+
+    /**
+     * Parses a configured format name, ignoring case.
+     *
+     * @param name The format name, e.g. {@code json} or {@code binary}.
+     * @return The format.
+     * @throws IllegalArgumentException If the name is not a format.
+     */
+    public static WireFormat parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Determines the format of a received message.
+     *
+     * @param message The message.
+     * @return The format of its body.
+     * @throws JMSException If the property cannot be read or names an unknown format.
+     */
+    public static WireFormat of(Message message) throws JMSException {
+        String name = message.getStringProperty(PROPERTY);
+        if (name == null) {
+            return message instanceof BytesMessage ? BINARY : JSON;
+        }
+        try {
+            return parse(name);
+        } catch (IllegalArgumentException e) {
+            throw new JMSException("Unsupported shipment format: " + name);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.jlpereira.mq_shipment_commons.jms;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall-clock times, in epoch milliseconds, at which a shipment request passed each hop, carried as JMS
+ * properties on the request and on its reply.
+ * <p>
+ * The sender stamps when it received the request and when it sent the request message. The processor
+ * copies both onto the reply, together with when it received the request, when the notification finished
+ * and when it sent the reply. With the {@code JMSTimestamp} the provider sets on every send, they split a
+ * round trip into time spent in each service and time spent waiting in each queue. A hop that was not
+ * stamped is 0. Times stamped on different hosts are only as comparable as the hosts' clocks.
+ *
+ * @param senderReceived    When the sender received the request.
+ * @param senderSent        When the sender sent the request message.
+ * @param processorReceived When the processor received the request message.
+ * @param processorNotified When the processor finished the notification, or 0 if it sent none.
+ * @param processorReplied  When the processor sent the reply message.
+ */
+public record HopTimestamps(
+        long senderReceived,
+        long senderSent,
+        long processorReceived,
+        long processorNotified,
+        long processorReplied
+) {
+
+    public static final String SENDER_RECEIVED = "shipmentSenderReceived";
+    public static final String SENDER_SENT = "shipmentSenderSent";
+    public static final String PROCESSOR_RECEIVED = "shipmentProcessorReceived";
+    public static final String PROCESSOR_NOTIFIED = "shipmentProcessorNotified";
+    public static final String PROCESSOR_REPLIED = "shipmentProcessorReplied";
+
+    /**
+     * Name of the timer recording how long messages wait in a queue, tagged by {@code queue}.
+     */
+    public static final String DWELL_TIMER = "shipment.queue.dwell";
+
+    /**
+     * @param at When the sender received the request.
+     * @return The hops of a request the sender has just received.
+     */
+    public static HopTimestamps receivedBySender(long at) {
+        return new HopTimestamps(at, 0, 0, 0, 0);
+    }
+
+    /**
+     * Reads the hops stamped on a message.
+     *
+     * @param message The request or reply message.
+     * @return The hops, 0 for those without a property.
+     * @throws JMSException If the properties cannot be read.
+     */
+    public static HopTimestamps read(Message message) throws JMSException {
+        return new HopTimestamps(
+                get(message, SENDER_RECEIVED),
+                get(message, SENDER_SENT),
+                get(message, PROCESSOR_RECEIVED),
+                get(message, PROCESSOR_NOTIFIED),
+                get(message, PROCESSOR_REPLIED));
+    }
+
+    private static long get(Message message, String property) throws JMSException {
+        return message.propertyExists(property) ? message.getLongProperty(property) : 0;
+    }
+
+    public HopTimestamps sent(long at) {
+        return new HopTimestamps(senderReceived, at, processorReceived, processorNotified, processorReplied);
+    }
+
+    public HopTimestamps receivedByProcessor(long at) {
+        return new HopTimestamps(senderReceived, senderSent, at, processorNotified, processorReplied);
+    }
+
+    public HopTimestamps notified(long at) {
+        return new HopTimestamps(senderReceived, senderSent, processorReceived, at, processorReplied);
+    }
+
+    public HopTimestamps replied(long at) {
+        return new HopTimestamps(senderReceived, senderSent, processorReceived, processorNotified, at);
+    }
+
+    /**
+     * Stamps the hops on a message as long properties, skipping those that are 0.
+     *
+     * @param message The message to stamp.
+     * @throws JMSException If a property cannot be set.
+     */
+    public void writeTo(Message message) throws JMSException {
+        set(message, SENDER_RECEIVED, senderReceived);
+        set(message, SENDER_SENT, senderSent);
+        set(message, PROCESSOR_RECEIVED, processorReceived);
+        set(message, PROCESSOR_NOTIFIED, processorNotified);
+        set(message, PROCESSOR_REPLIED, processorReplied);
+    }
+
+    private static void set(Message message, String property, long value) throws JMSException {
+        if (value != 0) {
+            message.setLongProperty(property, value);
+        }
+    }
+
+    /**
+     * Creates the timer for the time messages wait in a queue.
+     *
+     * @param meterRegistry The registry to register the timer with.
+     * @param queue         The name of the queue.
+     * @return The dwell timer of the queue.
+     */
+    public static Timer dwellTimer(MeterRegistry meterRegistry, String queue) {
+        return Timer.builder(DWELL_TIMER)
+                .description("Time messages wait in a queue before they are received")
+                .tag("queue", queue)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records how long a message waited in its queue, from the {@code JMSTimestamp} the provider set when
+     * it was sent to when it was received. Nothing is recorded if the provider did not set a timestamp;
+     * a receive time before the timestamp, from clock skew between hosts, is recorded as 0.
+     *
+     * @param dwellTimer The dwell timer of the queue.
+     * @param message    The received message.
+     * @param receivedAt When the message was received, in epoch milliseconds.
+     * @throws JMSException If the timestamp cannot be read.
+     */
+    public static void recordDwell(Timer dwellTimer, Message message, long receivedAt) throws JMSException {
+        long sentAt = message.getJMSTimestamp();
+        if (sentAt > 0) {
+            dwellTimer.record(Math.max(0, receivedAt - sentAt), TimeUnit.MILLISECONDS);
+        }
+    }
+}
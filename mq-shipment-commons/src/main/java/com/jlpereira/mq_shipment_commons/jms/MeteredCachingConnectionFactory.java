@@ -0,0 +1,211 @@
+package com.jlpereira.mq_shipment_commons.jms;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link CachingConnectionFactory} that reports pool metrics and releases its shared connection when idle.
+ * <p>
+ * Sessions, producers and consumers are cached by the parent class. This class adds:
+ * <ul>
+ *     <li>borrow timers tagged {@code hit} (served from the cache) or {@code miss} (new physical session),</li>
+ *     <li>a gauge of sessions currently borrowed,</li>
+ *     <li>idle eviction: the connection and all cached sessions are closed after {@code idleTimeoutMs}
+ *     without a borrow, and re-created on the next one,</li>
+ *     <li>{@link #warmUp(int, List)} to open sessions and producers before the first request.</li>
+ * </ul>
+ */
+public class MeteredCachingConnectionFactory extends CachingConnectionFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MeteredCachingConnectionFactory.class);
+
+    private final ThreadLocal<Boolean> createdOnThisThread = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    private final ReentrantReadWriteLock evictionLock = new ReentrantReadWriteLock();
+    private final AtomicInteger sessionsInUse = new AtomicInteger();
+    private final long idleTimeoutMs;
+    private final Timer borrowHits;
+    private final Timer borrowMisses;
+    private final Counter evictions;
+    private volatile long lastBorrowNanos = System.nanoTime();
+    private volatile boolean evicted = true;
+    private ScheduledExecutorService evictionScheduler;
+
+    /**
+     * Creates the factory.
+     *
+     * @param targetConnectionFactory The factory for physical connections.
+     * @param idleTimeoutMs           Idle time after which the connection is released; 0 disables eviction.
+     * @param meterRegistry           The registry for pool metrics.
+     */
+    public MeteredCachingConnectionFactory(ConnectionFactory targetConnectionFactory, long idleTimeoutMs, MeterRegistry meterRegistry) {
+        super(targetConnectionFactory);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.borrowHits = Timer.builder("jms.pool.borrow")
+                .description("Time to obtain a JMS session from the pool")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.borrowMisses = Timer.builder("jms.pool.borrow")
+                .description("Time to obtain a JMS session from the pool")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("jms.pool.evictions")
+                .description("Idle evictions of the pooled connection")
+                .register(meterRegistry);
+        Gauge.builder("jms.pool.sessions.in-use", sessionsInUse, AtomicInteger::get)
+                .description("JMS sessions currently borrowed from the pool")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        if (idleTimeoutMs > 0) {
+            long checkInterval = Math.max(idleTimeoutMs / 2, 1000);
+            evictionScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "jms-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictionScheduler.scheduleWithFixedDelay(this::evictIfIdle, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (evictionScheduler != null) {
+            evictionScheduler.shutdownNow();
+        }
+        super.destroy();
+    }
+
+    /**
+     * Opens sessions and, for each destination, a cached producer, then returns them to the cache.
+     * Failures are logged and ignored so the application can start while the broker is down.
+     *
+     * @param sessions     The number of sessions to open.
+     * @param destinations The destinations to create producers for.
+     */
+    public void warmUp(int sessions, List<? extends Destination> destinations) {
+        if (sessions <= 0) {
+            return;
+        }
+        List<Session> opened = new ArrayList<>(sessions);
+        try {
+            Connection connection = createConnection();
+            for (int i = 0; i < sessions; i++) {
+                Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                opened.add(session);
+                for (Destination destination : destinations) {
+                    MessageProducer producer = session.createProducer(destination);
+                    producer.close();
+                }
+            }
+            LOGGER.info("Warmed up JMS pool with {} sessions", opened.size());
+        } catch (JMSException e) {
+            LOGGER.warn("JMS pool warm-up stopped after {} sessions. Error: {}", opened.size(), e.getMessage());
+        } finally {
+            for (Session session : opened) {
+                try {
+                    session.close();
+                } catch (JMSException e) {
+                    LOGGER.debug("Error returning warm-up session to the pool", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected Session getSession(Connection con, Integer mode) throws JMSException {
+        long start = System.nanoTime();
+        evictionLock.readLock().lock();
+        try {
+            createdOnThisThread.set(Boolean.FALSE);
+            Session session = super.getSession(con, mode);
+            if (session == null) {
+                return null;
+            }
+            sessionsInUse.incrementAndGet();
+            lastBorrowNanos = System.nanoTime();
+            evicted = false;
+            (createdOnThisThread.get() ? borrowMisses : borrowHits).record(lastBorrowNanos - start, TimeUnit.NANOSECONDS);
+            return trackReturn(session);
+        } finally {
+            createdOnThisThread.remove();
+            evictionLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected Session createSession(Connection con, Integer mode) throws JMSException {
+        createdOnThisThread.set(Boolean.TRUE);
+        return super.createSession(con, mode);
+    }
+
+    private void evictIfIdle() {
+        if (evicted || System.nanoTime() - lastBorrowNanos < TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs)) {
+            return;
+        }
+        evictionLock.writeLock().lock();
+        try {
+            if (sessionsInUse.get() == 0 && !evicted) {
+                LOGGER.info("Releasing JMS connection after {} ms idle", idleTimeoutMs);
+                resetConnection();
+                evicted = true;
+                evictions.increment();
+            }
+        } finally {
+            evictionLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Wraps a borrowed session so that closing it, which returns it to the cache, is counted.
+     */
+    private Session trackReturn(Session session) {
+        AtomicBoolean returned = new AtomicBoolean();
+        Class<?>[] interfaces = ClassUtils.getAllInterfaces(session);
+        return (Session) Proxy.newProxyInstance(session.getClass().getClassLoader(), interfaces, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        sessionsInUse.decrementAndGet();
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(session, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        });
+    }
+}
@@ -0,0 +1,196 @@
+package com.jlpereira.mq_shipment_commons.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-threaded hashed timing wheel for large numbers of short-lived timeouts.
+ * <p>
+ * Scheduling and cancelling are O(1) and never block; expired tasks run on the wheel thread,
+ * so they must be short (completing a future, flipping a flag). A task that throws is logged
+ * and does not stop the wheel.
+ */
+public final class HashedWheelTimer implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private final long tickNanos;
+    private final int mask;
+    private final LinkedList<Timeout>[] wheel;
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger activeTimeouts = new AtomicInteger();
+    private final Thread worker;
+    private final long startTime;
+    private volatile boolean running = true;
+    private long tick;
+
+    /**
+     * Creates and starts a timer.
+     *
+     * @param name          The name of the worker thread.
+     * @param tickDuration  The duration of one wheel tick; it bounds the timeout precision.
+     * @param unit          The unit of {@code tickDuration}.
+     * @param ticksPerWheel The number of buckets, rounded up to a power of two.
+     */
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("tickDuration and ticksPerWheel must be positive");
+        }
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.mask = size - 1;
+        this.wheel = newWheel(size);
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    private static LinkedList<Timeout>[] newWheel(int size) {
+        @SuppressWarnings("unchecked")
+        LinkedList<Timeout>[] buckets = (LinkedList<Timeout>[]) new LinkedList<?>[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new LinkedList<>();
+        }
+        return buckets;
+    }
+
+    /**
+     * Schedules a task to run once after the given delay.
+     *
+     * @param task  The task to run on expiry.
+     * @param delay The delay before expiry.
+     * @param unit  The unit of {@code delay}.
+     * @return A handle that can cancel the timeout.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!running) {
+            throw new IllegalStateException("Timer has been stopped");
+        }
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(delay));
+        activeTimeouts.incrementAndGet();
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return The number of timeouts that are scheduled and neither expired nor cancelled.
+     */
+    public int activeCount() {
+        return activeTimeouts.get();
+    }
+
+    /**
+     * Stops the worker thread. Timeouts that have not expired yet are dropped.
+     */
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = tickNanos * (tick + 1);
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+            transferPendingTimeouts();
+            expireTimeouts(wheel[(int) (tick & mask)], deadline);
+            tick++;
+        }
+    }
+
+    private void transferPendingTimeouts() {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void expireTimeouts(LinkedList<Timeout> bucket, long deadline) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.isCancelled()) {
+                iterator.remove();
+            } else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+                iterator.remove();
+                timeout.expire();
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    /**
+     * Handle to a scheduled task.
+     */
+    public final class Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout if it has not expired yet.
+         *
+         * @return true if this call cancelled the timeout.
+         */
+        public boolean cancel() {
+            if (state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                activeTimeouts.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return true if the timeout was cancelled before expiry.
+         */
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        private void expire() {
+            if (state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+                activeTimeouts.decrementAndGet();
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // A failing task must not kill the wheel thread.
+                    LOGGER.error("Timer task {} failed on {}", task, Thread.currentThread().getName(), e);
+                }
+            }
+        }
+    }
+}
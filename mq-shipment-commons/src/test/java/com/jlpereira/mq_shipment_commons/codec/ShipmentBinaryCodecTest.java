@@ -0,0 +1,48 @@
+package com.jlpereira.mq_shipment_commons.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShipmentBinaryCodecTest {
+
+	@Test
+	void roundTripsRequests() {
+		Request request = new Request("ORD-1", "cliente@example.com", "TRK-ñ-1",
+				LocalDate.of(2024, 9, 17), null, "es-MX");
+
+		assertEquals(request, ShipmentBinaryCodec.decodeRequest(ShipmentBinaryCodec.encodeRequest(request), Request::new));
+	}
+
+	@Test
+	void roundTripsResponsesAndNullFields() {
+		Response response = new Response("ORD-1", "SUCCESS", null);
+		Request empty = new Request(null, null, null, null, null, null);
+
+		assertEquals(response, ShipmentBinaryCodec.decodeResponse(ShipmentBinaryCodec.encodeResponse(response), Response::new));
+		assertEquals(empty, ShipmentBinaryCodec.decodeRequest(ShipmentBinaryCodec.encodeRequest(empty), Request::new));
+	}
+
+	@Test
+	void rejectsTruncatedNewerOrForeignMessages() {
+		byte[] encoded = ShipmentBinaryCodec.encodeResponse(new Response("ORD-1", "SUCCESS", "Email sent successfully"));
+		byte[] newer = encoded.clone();
+		newer[2] = ShipmentBinaryCodec.VERSION + 1;
+
+		assertThrows(IllegalArgumentException.class, () -> ShipmentBinaryCodec.decodeResponse(Arrays.copyOf(encoded, 10), Response::new));
+		assertThrows(IllegalArgumentException.class, () -> ShipmentBinaryCodec.decodeResponse(newer, Response::new));
+		assertThrows(IllegalArgumentException.class, () -> ShipmentBinaryCodec.decodeRequest(encoded, Request::new));
+		assertThrows(IllegalArgumentException.class, () -> ShipmentBinaryCodec.decodeResponse("{}".getBytes(), Response::new));
+	}
+
+	record Request(String orderId, String customerEmail, String trackingNumber, LocalDate shippingDate, String brand,
+				   String locale) implements ShipmentRequestFields {
+	}
+
+	record Response(String orderId, String status, String message) implements ShipmentResponseFields {
+	}
+}
@@ -0,0 +1,46 @@
+package com.jlpereira.mq_shipment_commons.codec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentBinaryCodecTest.Request;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentBinaryCodecTest.Response;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShipmentJsonCodecTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+	private final ShipmentJsonCodec codec = new ShipmentJsonCodec(objectMapper);
+	private final Request request = new Request("ORD-1", "cliente@example.com", "TRK-\"1\"",
+			LocalDate.of(2024, 9, 17), null, "es");
+
+	@Test
+	void writesTheSameDocumentsAsTheObjectMapper() throws Exception {
+		Response response = new Response("ORD-1", "SUCCESS", "Email sent successfully");
+
+		assertEquals(objectMapper.writeValueAsString(request), codec.writeRequest(request));
+		assertEquals(objectMapper.writeValueAsString(response), codec.writeResponse(response));
+		assertEquals(response, codec.readResponse(codec.writeResponse(response), Response::new));
+	}
+
+	@Test
+	void readsDatesAsArraysIsoStringsOrEpochDays() throws Exception {
+		assertEquals(request, codec.readRequest(objectMapper.writeValueAsString(request), Request::new));
+		assertEquals(LocalDate.of(2024, 9, 17), codec.readRequest("{\"shippingDate\":\"2024-09-17\"}", Request::new).shippingDate());
+		assertEquals(LocalDate.of(2024, 9, 17), codec.readRequest("{\"shippingDate\":19983}", Request::new).shippingDate());
+		assertNull(codec.readRequest("{\"shippingDate\":null,\"extra\":{\"a\":[1]}}", Request::new).shippingDate());
+	}
+
+	@Test
+	void rejectsInvalidDocuments() {
+		assertThrows(JsonProcessingException.class, () -> codec.readRequest("[]", Request::new));
+		assertThrows(JsonProcessingException.class, () -> codec.readRequest("{\"shippingDate\":\"2024-13-45\"}", Request::new));
+		assertThrows(JsonProcessingException.class, () -> codec.readRequest("{\"orderId\":", Request::new));
+	}
+}
@@ -0,0 +1,60 @@
+package com.jlpereira.mq_shipment_commons.jms;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.Message;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HopTimestampsTest {
+
+	@Test
+	void carriesEachHopFromRequestToReply() throws Exception {
+		Message request = message(0, new HashMap<>());
+		HopTimestamps.receivedBySender(1_000).sent(1_002).writeTo(request);
+
+		Message reply = message(0, new HashMap<>());
+		HopTimestamps.read(request).receivedByProcessor(1_010).notified(1_050).replied(1_051).writeTo(reply);
+
+		assertEquals(new HopTimestamps(1_000, 1_002, 1_010, 1_050, 1_051), HopTimestamps.read(reply));
+	}
+
+	@Test
+	void leavesUnstampedHopsOut() throws Exception {
+		Map<String, Object> properties = new HashMap<>();
+		HopTimestamps.receivedBySender(1_000).writeTo(message(0, properties));
+
+		assertEquals(Map.of(HopTimestamps.SENDER_RECEIVED, 1_000L), properties);
+		assertEquals(new HopTimestamps(0, 0, 0, 0, 0), HopTimestamps.read(message(0, new HashMap<>())));
+	}
+
+	@Test
+	void recordsDwellFromTheJmsTimestamp() throws Exception {
+		Timer dwell = HopTimestamps.dwellTimer(new SimpleMeterRegistry(), "DEV.QUEUE.1");
+
+		HopTimestamps.recordDwell(dwell, message(1_000, Map.of()), 1_025);
+		HopTimestamps.recordDwell(dwell, message(1_000, Map.of()), 990);
+		HopTimestamps.recordDwell(dwell, message(0, Map.of()), 1_025);
+
+		assertEquals(2, dwell.count());
+		assertEquals(25, dwell.max(TimeUnit.MILLISECONDS));
+		assertEquals("DEV.QUEUE.1", dwell.getId().getTag("queue"));
+	}
+
+	private static Message message(long jmsTimestamp, Map<String, Object> properties) {
+		return (Message) Proxy.newProxyInstance(Message.class.getClassLoader(), new Class<?>[]{Message.class},
+				(proxy, method, args) -> switch (method.getName()) {
+					case "getJMSTimestamp" -> jmsTimestamp;
+					case "propertyExists" -> properties.containsKey(args[0]);
+					case "getLongProperty" -> properties.get(args[0]);
+					case "setLongProperty" -> properties.put((String) args[0], args[1]);
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+}
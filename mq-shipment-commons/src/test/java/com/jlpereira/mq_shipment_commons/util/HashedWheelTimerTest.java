@@ -0,0 +1,54 @@
+package com.jlpereira.mq_shipment_commons.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedWheelTimerTest {
+
+	@Test
+	void expiresScheduledTasks() throws InterruptedException {
+		try (HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 8)) {
+			CountDownLatch expired = new CountDownLatch(2);
+			timer.schedule(expired::countDown, 10, TimeUnit.MILLISECONDS);
+			timer.schedule(expired::countDown, 100, TimeUnit.MILLISECONDS);
+
+			assertTrue(expired.await(2, TimeUnit.SECONDS));
+			assertEquals(0, timer.activeCount());
+		}
+	}
+
+	@Test
+	void keepsExpiringTasksAfterOneFails() throws InterruptedException {
+		try (HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 8)) {
+			CountDownLatch expired = new CountDownLatch(1);
+			timer.schedule(() -> {
+				throw new IllegalStateException("Task failed");
+			}, 10, TimeUnit.MILLISECONDS);
+			timer.schedule(expired::countDown, 50, TimeUnit.MILLISECONDS);
+
+			assertTrue(expired.await(2, TimeUnit.SECONDS));
+			assertEquals(0, timer.activeCount());
+		}
+	}
+
+	@Test
+	void cancelledTasksNeverRun() throws InterruptedException {
+		try (HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 8)) {
+			AtomicBoolean ran = new AtomicBoolean();
+			HashedWheelTimer.Timeout timeout = timer.schedule(() -> ran.set(true), 20, TimeUnit.MILLISECONDS);
+
+			assertTrue(timeout.cancel());
+			Thread.sleep(100);
+
+			assertFalse(ran.get());
+			assertEquals(0, timer.activeCount());
+		}
+	}
+}
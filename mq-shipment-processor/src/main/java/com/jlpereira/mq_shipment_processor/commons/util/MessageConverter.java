@@ -1,26 +1,73 @@
 package com.jlpereira.mq_shipment_processor.commons.util;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentBinaryCodec;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentJsonCodec;
 import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_processor.service.ShipmentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.jms.BytesMessage;
 import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.TextMessage;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.TimeUnit;
+
 /**
- * Converts JSON messages into {@link ShipmentMessageDTO} objects.
+ * Converts JSON and binary messages into {@link ShipmentMessageDTO} objects.
  */
 @Component
 public class MessageConverter {
 
-    private final ObjectMapper objectMapper;
+    private final ShipmentJsonCodec jsonCodec;
+    private final Timer convertTimer;
 
     /**
-     * Initializes the converter with a configured {@link ObjectMapper}.
+     * Initializes the converter with the streaming JSON codec.
      *
-     * @param objectMapper The Jackson {@link ObjectMapper} used for deserialization.
+     * @param jsonCodec     The {@link ShipmentJsonCodec} used for deserialization.
+     * @param meterRegistry The registry for the convert stage timer.
+     */
+    public MessageConverter(ShipmentJsonCodec jsonCodec, MeterRegistry meterRegistry) {
+        this.jsonCodec = jsonCodec;
+        this.convertTimer = Timer.builder(ShipmentService.STAGE_TIMER)
+                .description("Time spent in each stage of a shipment request")
+                .tag("stage", "convert")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Converts a request message to a {@link ShipmentMessageDTO}: a {@link TextMessage} holds JSON,
+     * a {@link BytesMessage} holds the {@link ShipmentBinaryCodec} encoding. The conversion is timed
+     * as the {@code convert} stage.
+     *
+     * @param message The request message.
+     * @return The corresponding {@link ShipmentMessageDTO}.
+     * @throws JMSException If the message type is not supported or decoding fails.
      */
-    public MessageConverter(ObjectMapper objectMapper) {
-        this.objectMapper = objectMapper;
+    public ShipmentMessageDTO fromMessage(Message message) throws JMSException {
+        long start = System.nanoTime();
+        try {
+            return decode(message);
+        } finally {
+            convertTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private ShipmentMessageDTO decode(Message message) throws JMSException {
+        if (message instanceof TextMessage textMessage) {
+            return fromMessage(textMessage.getText());
+        }
+        if (message instanceof BytesMessage bytesMessage) {
+            try {
+                return ShipmentBinaryCodec.decodeRequest(ShipmentBinaryCodec.readBody(bytesMessage), ShipmentMessageDTO::new);
+            } catch (IllegalArgumentException e) {
+                throw new JMSException("Failed to decode binary ShipmentMessageDTO: " + e.getMessage());
+            }
+        }
+        throw new JMSException("Unsupported message type: " + message.getClass().getSimpleName());
     }
 
     /**
@@ -32,7 +79,7 @@ public class MessageConverter {
      */
     public ShipmentMessageDTO fromMessage(String jsonMessage) throws JMSException {
         try {
-            return objectMapper.readValue(jsonMessage, ShipmentMessageDTO.class);
+            return jsonCodec.readRequest(jsonMessage, ShipmentMessageDTO::new);
         } catch (JsonProcessingException e) {
             throw new JMSException("Failed to convert JSON to ShipmentMessageDTO: " + e.getMessage());
         }
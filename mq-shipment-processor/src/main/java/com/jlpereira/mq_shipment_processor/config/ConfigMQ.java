@@ -3,17 +3,33 @@ package com.jlpereira.mq_shipment_processor.config;
 import com.ibm.mq.jakarta.jms.MQConnectionFactory;
 import com.ibm.mq.jakarta.jms.MQQueue;
 import com.ibm.msg.client.wmq.common.CommonConstants;
+import com.jlpereira.mq_shipment_commons.jms.MeteredCachingConnectionFactory;
+import com.jlpereira.mq_shipment_processor.listener.WindowedAckListenerContainer;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.jms.ConnectionFactory;
 import jakarta.jms.JMSException;
 import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.apache.activemq.artemis.jms.client.ActiveMQQueue;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.jms.annotation.EnableJms;
 import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
 import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+import java.util.List;
 
 /**
  * Configuration for IBM MQ and JMS messaging.
+ * <p>
+ * With the {@code loadtest} profile the connection factory and queues point to an Artemis broker instead,
+ * by default the embedded one started by the in-JVM load test.
  */
 @Configuration
 @EnableJms
@@ -34,6 +50,30 @@ public class ConfigMQ {
     @Value("${ibm.mq.queue.response}")
     private String responseQueue;
 
+    @Value("${loadtest.broker-url:vm://0}")
+    private String loadTestBrokerUrl;
+
+    @Value("${ibm.mq.pool.session-cache-size:10}")
+    private Integer poolSessionCacheSize;
+
+    @Value("${ibm.mq.pool.cache-producers:true}")
+    private boolean poolCacheProducers;
+
+    @Value("${ibm.mq.pool.cache-consumers:true}")
+    private boolean poolCacheConsumers;
+
+    @Value("${ibm.mq.pool.idle-timeout-ms:300000}")
+    private long poolIdleTimeoutMs;
+
+    @Value("${ibm.mq.pool.warm-up-sessions:2}")
+    private Integer poolWarmUpSessions;
+
+    @Value("${shipment.listener.concurrency:1}")
+    private String listenerConcurrency;
+
+    @Value("${shipment.listener.ack-window:200}")
+    private Integer listenerAckWindow;
+
     /**
      * Configures the IBM MQ connection factory.
      *
@@ -41,6 +81,7 @@ public class ConfigMQ {
      * @throws JMSException if any error occurs during setup.
      */
     @Bean
+    @Profile("!loadtest")
     public MQConnectionFactory mqConnectionFactory() throws JMSException {
         MQConnectionFactory factory = new MQConnectionFactory();
         factory.setHostName(host);
@@ -51,28 +92,82 @@ public class ConfigMQ {
         return factory;
     }
 
+    /**
+     * Configures the Artemis connection factory used in place of IBM MQ by the load test.
+     *
+     * @return Configured ActiveMQConnectionFactory.
+     */
+    @Bean(name = "mqConnectionFactory")
+    @Profile("loadtest")
+    public ActiveMQConnectionFactory loadTestConnectionFactory() {
+        return new ActiveMQConnectionFactory(loadTestBrokerUrl);
+    }
+
+    /**
+     * Configures the pooled connection factory used for sending responses. It shares one connection
+     * and caches sessions, producers and consumers, so each response no longer opens its own.
+     *
+     * @param mqConnectionFactory The broker connection factory.
+     * @param meterRegistry       The registry for pool metrics.
+     * @return Configured MeteredCachingConnectionFactory.
+     */
+    @Bean
+    public MeteredCachingConnectionFactory cachingConnectionFactory(ConnectionFactory mqConnectionFactory, MeterRegistry meterRegistry) {
+        MeteredCachingConnectionFactory factory = new MeteredCachingConnectionFactory(mqConnectionFactory, poolIdleTimeoutMs, meterRegistry);
+        factory.setSessionCacheSize(poolSessionCacheSize);
+        factory.setCacheProducers(poolCacheProducers);
+        factory.setCacheConsumers(poolCacheConsumers);
+        return factory;
+    }
+
+    /**
+     * Opens pooled sessions and response queue producers once the application is ready.
+     *
+     * @param cachingConnectionFactory The pooled connection factory.
+     * @param responseQueue            The response queue.
+     * @return Listener that warms up the pool.
+     */
+    @Bean
+    public ApplicationListener<ApplicationReadyEvent> connectionPoolWarmUp(MeteredCachingConnectionFactory cachingConnectionFactory,
+                                                                           Queue responseQueue) {
+        return event -> cachingConnectionFactory.warmUp(poolWarmUpSessions, List.of(responseQueue));
+    }
+
     /**
      * Configures the JMS listener container factory.
+     * Containers keep their connection, session and consumer open for their whole lifetime,
+     * so they use the MQ connection factory directly rather than the pool. When the autoscaler is
+     * enabled it overrides the configured concurrency at runtime. Sessions use
+     * {@link Session#CLIENT_ACKNOWLEDGE}, and containers are {@link WindowedAckListenerContainer}s, so a
+     * message is acknowledged once it has been processed, and redelivered if processing fails.
      *
-     * @param mqConnectionFactory The MQ connection factory.
+     * @param mqConnectionFactory The broker connection factory.
      * @return Configured DefaultJmsListenerContainerFactory.
      */
     @Bean
-    public DefaultJmsListenerContainerFactory jmsListenerContainerFactory(MQConnectionFactory mqConnectionFactory) {
-        DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+    public DefaultJmsListenerContainerFactory jmsListenerContainerFactory(ConnectionFactory mqConnectionFactory) {
+        DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory() {
+            @Override
+            protected DefaultMessageListenerContainer createContainerInstance() {
+                return new WindowedAckListenerContainer(listenerAckWindow);
+            }
+        };
         factory.setConnectionFactory(mqConnectionFactory);
+        factory.setCacheLevel(DefaultMessageListenerContainer.CACHE_CONSUMER);
+        factory.setSessionAcknowledgeMode(Session.CLIENT_ACKNOWLEDGE);
+        factory.setConcurrency(listenerConcurrency);
         return factory;
     }
 
     /**
      * Configures the JMS template for sending messages.
      *
-     * @param mqConnectionFactory The MQ connection factory.
+     * @param cachingConnectionFactory The pooled connection factory.
      * @return Configured JmsTemplate.
      */
     @Bean
-    public JmsTemplate jmsTemplate(MQConnectionFactory mqConnectionFactory) {
-        return new JmsTemplate(mqConnectionFactory);
+    public JmsTemplate jmsTemplate(MeteredCachingConnectionFactory cachingConnectionFactory) {
+        return new JmsTemplate(cachingConnectionFactory);
     }
 
     /**
@@ -82,7 +177,19 @@ public class ConfigMQ {
      * @throws JMSException if any error occurs.
      */
     @Bean
+    @Profile("!loadtest")
     public Queue responseQueue() throws JMSException {
         return new MQQueue(responseQueue);
     }
+
+    /**
+     * Configures the response queue on the load test's Artemis broker.
+     *
+     * @return Configured Queue.
+     */
+    @Bean(name = "responseQueue")
+    @Profile("loadtest")
+    public Queue loadTestResponseQueue() {
+        return new ActiveMQQueue(responseQueue);
+    }
 }
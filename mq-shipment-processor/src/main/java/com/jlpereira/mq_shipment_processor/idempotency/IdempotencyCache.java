@@ -0,0 +1,238 @@
+package com.jlpereira.mq_shipment_processor.idempotency;
+
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentResponseDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers the responses of processed requests so redelivered requests are answered without notifying
+ * the customer again.
+ * <p>
+ * Each response is cached under the request's correlation ID, so a redelivery is recognized. A successful
+ * response is also cached under its order ID and tracking number, so a resend with a new correlation ID is
+ * recognized too, while a resend after a failed notification notifies the customer again. Entries expire after the
+ * TTL and the least recently used ones are evicted beyond the maximum number of keys. With a store path
+ * configured, entries are also appended to a memory-mapped log that is replayed on startup.
+ */
+@Component
+public class IdempotencyCache implements DisposableBean {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(IdempotencyCache.class);
+
+    private static final String CORRELATION_PREFIX = "cid:";
+    private static final String SHIPMENT_PREFIX = "shipment:";
+    private static final String SUCCESS = "SUCCESS";
+
+    private final boolean enabled;
+    private final long ttlMs;
+    private final Map<String, IdempotencyEntry> entries;
+    private final MappedIdempotencyLog log;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+
+    /**
+     * Constructor for initializing the idempotency cache.
+     *
+     * @param meterRegistry The registry for hit and eviction metrics.
+     * @param enabled       Whether duplicate requests are detected.
+     * @param maxKeys       The maximum number of keys cached; each response takes up to two.
+     * @param ttlMs         How long a response is remembered, in milliseconds.
+     * @param storePath     Optional file for the memory-mapped log; empty keeps the cache in memory only.
+     * @param storeSizeMb   The size of the memory-mapped log in megabytes.
+     */
+    public IdempotencyCache(MeterRegistry meterRegistry,
+                            @Value("${shipment.idempotency.enabled:true}") boolean enabled,
+                            @Value("${shipment.idempotency.max-keys:100000}") int maxKeys,
+                            @Value("${shipment.idempotency.ttl-ms:86400000}") long ttlMs,
+                            @Value("${shipment.idempotency.store.path:}") String storePath,
+                            @Value("${shipment.idempotency.store.size-mb:32}") int storeSizeMb) {
+        this.enabled = enabled;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyEntry> eldest) {
+                if (eldest.getValue().isExpired(System.currentTimeMillis())) {
+                    expiredEvictions.increment();
+                    return true;
+                }
+                boolean evict = size() > maxKeys;
+                if (evict) {
+                    sizeEvictions.increment();
+                }
+                return evict;
+            }
+        };
+        this.hits = lookupCounter(meterRegistry, "hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        this.sizeEvictions = evictionCounter(meterRegistry, "size");
+        this.expiredEvictions = evictionCounter(meterRegistry, "expired");
+        Gauge.builder("shipment.idempotency.size", this, IdempotencyCache::size)
+                .description("Keys in the idempotency cache")
+                .register(meterRegistry);
+
+        this.log = enabled && StringUtils.hasText(storePath)
+                ? new MappedIdempotencyLog(Path.of(storePath), storeSizeBytes(storeSizeMb))
+                : null;
+        if (log != null) {
+            replay();
+        }
+    }
+
+    private static int storeSizeBytes(int storeSizeMb) {
+        long sizeBytes = (long) storeSizeMb * 1024 * 1024;
+        if (sizeBytes <= 0 || sizeBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("shipment.idempotency.store.size-mb must be between 1 and 2047, was "
+                    + storeSizeMb);
+        }
+        return (int) sizeBytes;
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("shipment.idempotency.lookups")
+                .description("Idempotency cache lookups")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter evictionCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("shipment.idempotency.evictions")
+                .description("Keys removed from the idempotency cache")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the response already sent for a request, if any.
+     *
+     * @param correlationId      The correlation ID of the request.
+     * @param shipmentMessageDTO The shipment details.
+     * @return The cached response, or null if the request was not processed yet.
+     */
+    public ShipmentResponseDTO get(String correlationId, ShipmentMessageDTO shipmentMessageDTO) {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            IdempotencyEntry entry = lookup(CORRELATION_PREFIX + correlationId, now);
+            if (entry == null) {
+                entry = lookup(SHIPMENT_PREFIX + shipmentKey(shipmentMessageDTO), now);
+            }
+            if (entry != null) {
+                hits.increment();
+                return entry.response();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    private IdempotencyEntry lookup(String key, long now) {
+        IdempotencyEntry entry = entries.get(key);
+        if (entry != null && entry.isExpired(now)) {
+            entries.remove(key);
+            expiredEvictions.increment();
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Remembers the response of a processed request. A failed response is only remembered for its
+     * correlation ID, so a resend of the shipment is processed again.
+     *
+     * @param correlationId      The correlation ID of the request.
+     * @param shipmentMessageDTO The shipment details.
+     * @param responseDTO        The response sent for the request.
+     */
+    public void put(String correlationId, ShipmentMessageDTO shipmentMessageDTO, ShipmentResponseDTO responseDTO) {
+        if (!enabled) {
+            return;
+        }
+        String shipmentKey = SUCCESS.equals(responseDTO.status()) ? shipmentKey(shipmentMessageDTO) : null;
+        if (correlationId == null && shipmentKey == null) {
+            return;
+        }
+        IdempotencyEntry entry = new IdempotencyEntry(correlationId, shipmentKey, responseDTO,
+                System.currentTimeMillis() + ttlMs);
+        synchronized (entries) {
+            index(entry);
+            if (log != null && !log.append(entry, this::liveEntries)) {
+                LOG.warn("Idempotency log is full or the response too large, orderId: {} is only cached in memory",
+                        responseDTO.orderId());
+            }
+        }
+    }
+
+    private void index(IdempotencyEntry entry) {
+        if (entry.correlationId() != null) {
+            entries.put(CORRELATION_PREFIX + entry.correlationId(), entry);
+        }
+        if (entry.shipmentKey() != null) {
+            entries.put(SHIPMENT_PREFIX + entry.shipmentKey(), entry);
+        }
+    }
+
+    private Set<IdempotencyEntry> liveEntries() {
+        long now = System.currentTimeMillis();
+        Set<IdempotencyEntry> live = new LinkedHashSet<>();
+        for (IdempotencyEntry entry : entries.values()) {
+            if (!entry.isExpired(now)) {
+                live.add(entry);
+            }
+        }
+        return live;
+    }
+
+    private void replay() {
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        synchronized (entries) {
+            for (IdempotencyEntry entry : log.read()) {
+                if (!entry.isExpired(now)) {
+                    index(entry);
+                    restored++;
+                }
+            }
+        }
+        LOG.info("Restored {} processed requests from the idempotency log", restored);
+    }
+
+    private static String shipmentKey(ShipmentMessageDTO shipmentMessageDTO) {
+        return shipmentMessageDTO.orderId() + '|' + shipmentMessageDTO.trackingNumber();
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Forces the idempotency log to disk.
+     */
+    @Override
+    public void destroy() {
+        if (log != null) {
+            synchronized (entries) {
+                log.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.jlpereira.mq_shipment_processor.idempotency;
+
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentResponseDTO;
+
+/**
+ * The response sent for a processed request, cached under its correlation ID and its shipment key.
+ *
+ * @param correlationId The correlation ID of the request, or null.
+ * @param shipmentKey   The order ID and tracking number of the shipment.
+ * @param response      The response that was sent.
+ * @param expiresAtMs   When the entry expires, in epoch milliseconds.
+ */
+record IdempotencyEntry(
+        String correlationId,
+        String shipmentKey,
+        ShipmentResponseDTO response,
+        long expiresAtMs
+) {
+
+    boolean isExpired(long nowMs) {
+        return nowMs >= expiresAtMs;
+    }
+}
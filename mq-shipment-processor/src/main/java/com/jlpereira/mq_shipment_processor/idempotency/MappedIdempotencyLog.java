@@ -0,0 +1,187 @@
+package com.jlpereira.mq_shipment_processor.idempotency;
+
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentResponseDTO;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Append-only log of processed requests in a memory-mapped file, so the idempotency cache survives restarts.
+ * <p>
+ * Each record is {@code [int length][payload]} and the log ends at the first zero length. A record's
+ * payload and the zero terminator after it are written before its length, so a process that dies
+ * mid-append leaves the previous end of the log intact. Writes go to the page cache, which outlives the
+ * process; {@link #close()} forces them to disk. When the file is full it is rewritten from the live entries;
+ * a record larger than {@value #MAX_RECORD_BYTES} bytes is rejected without compacting.
+ * Not thread-safe; the cache serializes access.
+ */
+final class MappedIdempotencyLog implements AutoCloseable {
+
+    private static final int LENGTH_BYTES = Integer.BYTES;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer record = ByteBuffer.allocate(MAX_RECORD_BYTES);
+
+    /**
+     * Opens or creates the log file.
+     *
+     * @param file      The log file.
+     * @param sizeBytes The size of the file, i.e. the maximum size of the log.
+     */
+    MappedIdempotencyLog(Path file, int sizeBytes) {
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening idempotency log " + file, e);
+        }
+    }
+
+    /**
+     * Reads every record of the log, expired or not, and positions the log for appending after the last one.
+     *
+     * @return The records in the order they were appended.
+     */
+    List<IdempotencyEntry> read() {
+        List<IdempotencyEntry> entries = new ArrayList<>();
+        int position = 0;
+        while (position + LENGTH_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + LENGTH_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(position + LENGTH_BYTES, length);
+            try {
+                entries.add(decode(payload));
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                break;
+            }
+            position += LENGTH_BYTES + length;
+        }
+        buffer.position(position);
+        return entries;
+    }
+
+    /**
+     * Appends a record, compacting the log to the live entries first if it is full.
+     *
+     * @param entry The entry to append.
+     * @param live  Supplies the entries to keep if the log has to be compacted; includes {@code entry}.
+     *              Only called when the log is full.
+     * @return false if the entry is too large, or could not be stored even after compacting.
+     */
+    boolean append(IdempotencyEntry entry, Supplier<Collection<IdempotencyEntry>> live) {
+        if (!encode(entry)) {
+            return false;
+        }
+        if (writeRecord()) {
+            return true;
+        }
+        buffer.position(0);
+        buffer.putInt(0, 0);
+        for (IdempotencyEntry liveEntry : live.get()) {
+            if (!encode(liveEntry) || !writeRecord()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean encode(IdempotencyEntry entry) {
+        record.clear();
+        try {
+            encode(entry, record);
+        } catch (BufferOverflowException e) {
+            return false;
+        }
+        record.flip();
+        return true;
+    }
+
+    private boolean writeRecord() {
+        int length = record.remaining();
+        int position = buffer.position();
+        int next = position + LENGTH_BYTES + length;
+        if (next > buffer.capacity()) {
+            return false;
+        }
+        buffer.put(position + LENGTH_BYTES, record, 0, length);
+        if (next + LENGTH_BYTES <= buffer.capacity()) {
+            buffer.putInt(next, 0);
+        }
+        buffer.putInt(position, length);
+        buffer.position(next);
+        return true;
+    }
+
+    private static void encode(IdempotencyEntry entry, ByteBuffer target) {
+        target.putLong(entry.expiresAtMs());
+        putString(target, entry.correlationId());
+        putString(target, entry.shipmentKey());
+        putString(target, entry.response().orderId());
+        putString(target, entry.response().status());
+        putString(target, entry.response().message());
+    }
+
+    private static IdempotencyEntry decode(ByteBuffer source) {
+        long expiresAtMs = source.getLong();
+        String correlationId = getString(source);
+        String shipmentKey = getString(source);
+        ShipmentResponseDTO response = new ShipmentResponseDTO(getString(source), getString(source), getString(source));
+        return new IdempotencyEntry(correlationId, shipmentKey, response, expiresAtMs);
+    }
+
+    private static void putString(ByteBuffer target, String value) {
+        if (value == null) {
+            target.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        target.putInt(bytes.length);
+        target.put(bytes);
+    }
+
+    private static String getString(ByteBuffer source) {
+        int length = source.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > source.remaining()) {
+            throw new IllegalArgumentException("Corrupt idempotency record");
+        }
+        byte[] bytes = new byte[length];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Forces the log to disk and closes the file.
+     */
+    @Override
+    public void close() {
+        buffer.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
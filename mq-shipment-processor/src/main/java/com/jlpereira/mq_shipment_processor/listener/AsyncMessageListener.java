@@ -0,0 +1,41 @@
+package com.jlpereira.mq_shipment_processor.listener;
+
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageListener;
+import org.springframework.jms.support.JmsUtils;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A message listener that hands a message off and reports when it has been processed.
+ * {@link WindowedAckListenerContainer} acknowledges the message only then, without holding its consumer
+ * thread in the meantime.
+ */
+@FunctionalInterface
+public interface AsyncMessageListener extends MessageListener {
+
+    /**
+     * Hands a message off for processing.
+     *
+     * @param message The message received.
+     * @return A future completed once the message has been processed, or completed exceptionally if it
+     * must be redelivered.
+     * @throws JMSException If the message cannot be read.
+     */
+    CompletableFuture<?> receive(Message message) throws JMSException;
+
+    /**
+     * Processes a message and waits for it, for containers that acknowledge a message once its listener returns.
+     *
+     * @param message The message received.
+     */
+    @Override
+    default void onMessage(Message message) {
+        try {
+            receive(message).join();
+        } catch (JMSException e) {
+            throw JmsUtils.convertJmsAccessException(e);
+        }
+    }
+}
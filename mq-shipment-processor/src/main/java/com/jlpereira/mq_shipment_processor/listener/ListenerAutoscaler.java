@@ -0,0 +1,286 @@
+package com.jlpereira.mq_shipment_processor.listener;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.jms.JMSException;
+import jakarta.jms.QueueBrowser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Grows and shrinks the consumers of the request listener containers from observed load. Only the
+ * containers of the {@link PriorityLanes priority lanes} are scaled; other listeners, such as the notification
+ * retry listener, keep their own concurrency.
+ * <p>
+ * Every interval it samples:
+ * <ul>
+ *     <li>utilization: time the consumers spent handing messages off, as recorded by
+ *     {@link MqMessageListener#PROCESSING_TIMER}, divided by the time available to all consumers. Consumers
+ *     do not wait for notifications, so their sending and coalescing time is not counted;</li>
+ *     <li>mean hand-off latency of the messages handled in the interval,</li>
+ *     <li>backlog: the depth of the request queues of all lanes, each browsed up to a sample limit.</li>
+ * </ul>
+ * A backlog or high utilization asks for more consumers; low utilization with an empty queue, or a
+ * processing latency above the ceiling (a saturated downstream), asks for fewer. A change is only made
+ * after the same signal was seen for several consecutive intervals, which provides hysteresis.
+ * <p>
+ * The consumer count applies per unit of lane weight: each {@link PriorityLanes priority lane} container
+ * gets the count multiplied by its weight, so scaling keeps the lanes' proportions.
+ */
+@Component
+@ConditionalOnProperty(name = "shipment.autoscaler.enabled", havingValue = "true")
+public class ListenerAutoscaler implements SmartLifecycle {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(ListenerAutoscaler.class);
+
+    private final JmsListenerEndpointRegistry listenerEndpointRegistry;
+    private final JmsTemplate jmsTemplate;
+    private final PriorityLanes priorityLanes;
+    private final Timer processingTimer;
+    private final int minConsumers;
+    private final int maxConsumers;
+    private final long intervalMs;
+    private final double scaleUpUtilization;
+    private final double scaleDownUtilization;
+    private final long latencyCeilingMs;
+    private final int backlogPerConsumer;
+    private final int backlogSampleLimit;
+    private final int scaleUpIntervals;
+    private final int scaleDownIntervals;
+
+    private final AtomicInteger targetConsumers = new AtomicInteger();
+    private final AtomicInteger lastBacklog = new AtomicInteger();
+    private final Counter scaleUpDecisions;
+    private final Counter scaleDownDecisions;
+    private final Counter holdDecisions;
+    private volatile double lastUtilization;
+    private int upStreak;
+    private int downStreak;
+    private long lastCount;
+    private double lastTotalNanos;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor for initializing the autoscaler.
+     *
+     * @param listenerEndpointRegistry The registry holding the listener containers.
+     * @param jmsTemplate              The JMS template used to browse the request queues.
+     * @param priorityLanes            The request queues and weights of the containers.
+     * @param meterRegistry            The registry for input and decision metrics.
+     * @param minConsumers             The lower bound of consumers per container and unit of lane weight.
+     * @param maxConsumers             The upper bound of consumers per container and unit of lane weight.
+     * @param intervalMs               The sampling interval in milliseconds.
+     * @param scaleUpUtilization       Utilization above which consumers are added.
+     * @param scaleDownUtilization     Utilization below which consumers are removed.
+     * @param latencyCeilingMs         Mean processing latency above which consumers are removed; 0 disables.
+     * @param backlogPerConsumer       Queued messages per consumer above which consumers are added.
+     * @param backlogSampleLimit       The maximum number of messages browsed to estimate the backlog; 0 disables.
+     * @param scaleUpIntervals         Consecutive intervals asking to scale up before consumers are added.
+     * @param scaleDownIntervals       Consecutive intervals asking to scale down before consumers are removed.
+     */
+    public ListenerAutoscaler(JmsListenerEndpointRegistry listenerEndpointRegistry, JmsTemplate jmsTemplate,
+                              PriorityLanes priorityLanes, MeterRegistry meterRegistry,
+                              @Value("${shipment.autoscaler.min-consumers:1}") int minConsumers,
+                              @Value("${shipment.autoscaler.max-consumers:20}") int maxConsumers,
+                              @Value("${shipment.autoscaler.interval-ms:5000}") long intervalMs,
+                              @Value("${shipment.autoscaler.scale-up-utilization:0.8}") double scaleUpUtilization,
+                              @Value("${shipment.autoscaler.scale-down-utilization:0.3}") double scaleDownUtilization,
+                              @Value("${shipment.autoscaler.latency-ceiling-ms:0}") long latencyCeilingMs,
+                              @Value("${shipment.autoscaler.backlog-per-consumer:50}") int backlogPerConsumer,
+                              @Value("${shipment.autoscaler.backlog-sample-limit:500}") int backlogSampleLimit,
+                              @Value("${shipment.autoscaler.scale-up-intervals:2}") int scaleUpIntervals,
+                              @Value("${shipment.autoscaler.scale-down-intervals:6}") int scaleDownIntervals) {
+        if (minConsumers < 1 || maxConsumers < minConsumers) {
+            throw new IllegalArgumentException("Autoscaler bounds must satisfy 1 <= min-consumers <= max-consumers");
+        }
+        this.listenerEndpointRegistry = listenerEndpointRegistry;
+        this.jmsTemplate = jmsTemplate;
+        this.priorityLanes = priorityLanes;
+        this.processingTimer = meterRegistry.timer(MqMessageListener.PROCESSING_TIMER);
+        this.minConsumers = minConsumers;
+        this.maxConsumers = maxConsumers;
+        this.intervalMs = intervalMs;
+        this.scaleUpUtilization = scaleUpUtilization;
+        this.scaleDownUtilization = scaleDownUtilization;
+        this.latencyCeilingMs = latencyCeilingMs;
+        this.backlogPerConsumer = backlogPerConsumer;
+        this.backlogSampleLimit = backlogSampleLimit;
+        this.scaleUpIntervals = scaleUpIntervals;
+        this.scaleDownIntervals = scaleDownIntervals;
+        this.targetConsumers.set(minConsumers);
+
+        Gauge.builder("shipment.autoscaler.consumers", targetConsumers, AtomicInteger::get)
+                .description("Consumers per listener container and unit of lane weight chosen by the autoscaler")
+                .register(meterRegistry);
+        Gauge.builder("shipment.autoscaler.utilization", this, autoscaler -> autoscaler.lastUtilization)
+                .description("Share of consumer time spent processing in the last interval")
+                .register(meterRegistry);
+        Gauge.builder("shipment.autoscaler.backlog", lastBacklog, AtomicInteger::get)
+                .description("Sampled request queue depth, capped at the sample limit; -1 if unknown")
+                .register(meterRegistry);
+        this.scaleUpDecisions = decisionCounter(meterRegistry, "up");
+        this.scaleDownDecisions = decisionCounter(meterRegistry, "down");
+        this.holdDecisions = decisionCounter(meterRegistry, "hold");
+    }
+
+    private static Counter decisionCounter(MeterRegistry meterRegistry, String decision) {
+        return Counter.builder("shipment.autoscaler.decisions")
+                .description("Autoscaler decisions")
+                .tag("decision", decision)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        applyConsumers(targetConsumers.get());
+        lastCount = processingTimer.count();
+        lastTotalNanos = processingTimer.totalTime(TimeUnit.NANOSECONDS);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "listener-autoscaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::evaluate, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Samples the load of the last interval and scales the consumers if the same signal was seen for
+     * enough consecutive intervals.
+     */
+    void evaluate() {
+        try {
+            int consumers = targetConsumers.get();
+            long count = processingTimer.count();
+            double totalNanos = processingTimer.totalTime(TimeUnit.NANOSECONDS);
+            long processed = count - lastCount;
+            double busyNanos = totalNanos - lastTotalNanos;
+            lastCount = count;
+            lastTotalNanos = totalNanos;
+
+            int weights = Math.max(1, containers().stream().mapToInt(this::weight).sum());
+            double utilization = busyNanos / ((double) TimeUnit.MILLISECONDS.toNanos(intervalMs) * consumers * weights);
+            double meanLatencyMs = processed > 0 ? busyNanos / processed / 1_000_000 : 0;
+            int backlog = sampleBacklog();
+            lastUtilization = utilization;
+            lastBacklog.set(backlog);
+
+            boolean saturatedDownstream = latencyCeilingMs > 0 && meanLatencyMs > latencyCeilingMs;
+            boolean wantsUp = !saturatedDownstream
+                    && (utilization > scaleUpUtilization || backlog > (long) consumers * backlogPerConsumer);
+            boolean wantsDown = saturatedDownstream || (utilization < scaleDownUtilization && backlog <= 0);
+
+            upStreak = wantsUp ? upStreak + 1 : 0;
+            downStreak = wantsDown ? downStreak + 1 : 0;
+
+            if (upStreak >= scaleUpIntervals && consumers < maxConsumers) {
+                scale(consumers, Math.min(maxConsumers, consumers + Math.max(1, consumers / 4)), utilization, meanLatencyMs, backlog);
+                scaleUpDecisions.increment();
+            } else if (downStreak >= scaleDownIntervals && consumers > minConsumers) {
+                scale(consumers, consumers - 1, utilization, meanLatencyMs, backlog);
+                scaleDownDecisions.increment();
+            } else {
+                holdDecisions.increment();
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Autoscaler evaluation failed. Error: {}", e.getMessage());
+        }
+    }
+
+    private void scale(int from, int to, double utilization, double meanLatencyMs, int backlog) {
+        LOG.info("Scaling listener consumers from {} to {} (utilization: {}, latency: {} ms, backlog: {})",
+                from, to, String.format("%.2f", utilization), String.format("%.1f", meanLatencyMs), backlog);
+        targetConsumers.set(to);
+        applyConsumers(to);
+        upStreak = 0;
+        downStreak = 0;
+    }
+
+    private void applyConsumers(int consumers) {
+        for (DefaultMessageListenerContainer container : containers()) {
+            int weighted = consumers * weight(container);
+            container.setConcurrentConsumers(weighted);
+            container.setMaxConcurrentConsumers(weighted);
+        }
+    }
+
+    private int weight(DefaultMessageListenerContainer container) {
+        return priorityLanes.weight(container.getDestinationName());
+    }
+
+    private List<DefaultMessageListenerContainer> containers() {
+        List<String> laneQueues = priorityLanes.lanes().stream().map(PriorityLanes.Lane::queue).toList();
+        return listenerEndpointRegistry.getListenerContainers().stream()
+                .filter(DefaultMessageListenerContainer.class::isInstance)
+                .map(DefaultMessageListenerContainer.class::cast)
+                .filter(container -> laneQueues.contains(container.getDestinationName()))
+                .toList();
+    }
+
+    /**
+     * Browses the request queue of every lane up to the sample limit.
+     *
+     * @return The number of queued messages seen, or -1 if sampling is disabled or failed.
+     */
+    private int sampleBacklog() {
+        if (backlogSampleLimit <= 0) {
+            return -1;
+        }
+        int backlog = 0;
+        for (PriorityLanes.Lane lane : priorityLanes.lanes()) {
+            try {
+                Integer depth = jmsTemplate.browse(lane.queue(), (session, browser) -> countMessages(browser));
+                if (depth == null) {
+                    return -1;
+                }
+                backlog += depth;
+            } catch (JmsException e) {
+                LOG.warn("Could not sample the depth of request queue {}. Error: {}", lane.queue(), e.getMessage());
+                return -1;
+            }
+        }
+        return backlog;
+    }
+
+    private int countMessages(QueueBrowser browser) throws JMSException {
+        Enumeration<?> messages = browser.getEnumeration();
+        int depth = 0;
+        while (depth < backlogSampleLimit && messages.hasMoreElements()) {
+            messages.nextElement();
+            depth++;
+        }
+        return depth;
+    }
+}
@@ -1,52 +1,133 @@
 package com.jlpereira.mq_shipment_processor.listener;
 
+import com.jlpereira.mq_shipment_commons.codec.WireFormat;
+import com.jlpereira.mq_shipment_commons.jms.HopTimestamps;
 import com.jlpereira.mq_shipment_processor.commons.util.MessageConverter;
 import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentResponseDTO;
 import com.jlpereira.mq_shipment_processor.service.ShipmentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.jms.JMSException;
-import jakarta.jms.TextMessage;
+import jakarta.jms.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.jms.annotation.JmsListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jms.annotation.JmsListenerConfigurer;
+import org.springframework.jms.config.JmsListenerEndpointRegistrar;
+import org.springframework.jms.config.SimpleJmsListenerEndpoint;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Listener for receiving messages from the IBM MQ queue.
+ * Active in the default {@code listener} processing mode.
+ * Registers one listener container per {@link PriorityLanes priority lane}, with the listener concurrency
+ * scaled by the lane's weight.
+ * <p>
+ * The listener returns once the notification is handed to the asynchronous, coalescing or retry stages,
+ * and the {@link WindowedAckListenerContainer} acknowledges the message once its response is sent, or its
+ * notification handed to the retry queue, so a request is redelivered if the processor stops before
+ * answering it (at-least-once). With {@code ackOnHandoff} it is acknowledged as soon as the listener
+ * returns instead, which loses the request if the processor stops before the response is sent (at-most-once).
  */
 @Component
-public class MqMessageListener {
+@ConditionalOnProperty(name = "shipment.processing.mode", havingValue = "listener", matchIfMissing = true)
+public class MqMessageListener implements JmsListenerConfigurer {
 
     protected static final Logger LOG = LoggerFactory.getLogger(MqMessageListener.class);
 
+    /**
+     * Name of the timer recording how long the listener spends handing off each message.
+     */
+    public static final String PROCESSING_TIMER = "shipment.listener.processing";
+
     private final MessageConverter messageConverter;
     private final ShipmentService shipmentService;
+    private final PriorityLanes priorityLanes;
+    private final String listenerConcurrency;
+    private final boolean ackOnHandoff;
+    private final Timer processingTimer;
 
     /**
      * Constructor for initializing the listener with a message converter and shipment service.
      *
-     * @param messageConverter Utility to convert messages.
-     * @param shipmentService  Service for processing shipments.
+     * @param messageConverter    Utility to convert messages.
+     * @param shipmentService     Service for processing shipments.
+     * @param priorityLanes       The request queues to drain and their weights.
+     * @param meterRegistry       The registry for the processing timer.
+     * @param listenerConcurrency The consumers per container, before scaling by the lane weight.
+     * @param ackOnHandoff        Whether a message is acknowledged once its notification is handed off,
+     *                            rather than once its response is sent.
      */
-    public MqMessageListener(MessageConverter messageConverter, ShipmentService shipmentService) {
+    public MqMessageListener(MessageConverter messageConverter, ShipmentService shipmentService,
+                             PriorityLanes priorityLanes, MeterRegistry meterRegistry,
+                             @Value("${shipment.listener.concurrency:1}") String listenerConcurrency,
+                             @Value("${shipment.listener.ack-on-handoff:false}") boolean ackOnHandoff) {
         this.messageConverter = messageConverter;
         this.shipmentService = shipmentService;
+        this.priorityLanes = priorityLanes;
+        this.listenerConcurrency = listenerConcurrency;
+        this.ackOnHandoff = ackOnHandoff;
+        this.processingTimer = Timer.builder(PROCESSING_TIMER)
+                .description("Time spent by the listener handing off each request message")
+                .register(meterRegistry);
     }
 
     /**
-     * Receives and processes incoming messages from the queue.
+     * Registers the listener container of each priority lane, using the default container factory.
+     *
+     * @param registrar The registrar of the listener endpoints.
+     */
+    @Override
+    public void configureJmsListeners(JmsListenerEndpointRegistrar registrar) {
+        for (PriorityLanes.Lane lane : priorityLanes.lanes()) {
+            SimpleJmsListenerEndpoint endpoint = new SimpleJmsListenerEndpoint();
+            endpoint.setId("shipment-" + lane.name());
+            endpoint.setDestination(lane.queue());
+            endpoint.setConcurrency(lane.concurrency(listenerConcurrency));
+            endpoint.setMessageListener((AsyncMessageListener) message -> {
+                CompletableFuture<ShipmentResponseDTO> response = receiveMessage(message, lane.queue());
+                return ackOnHandoff ? CompletableFuture.completedFuture(null) : response;
+            });
+            registrar.registerEndpoint(endpoint);
+            LOG.info("Listening to {} lane on {} with concurrency {}", lane.name(), lane.queue(),
+                    endpoint.getConcurrency());
+        }
+    }
+
+    /**
+     * Receives an incoming message from a request queue and hands its notification off.
+     * Returns without waiting for the notification; the response is sent once it completes.
      *
      * @param message The message received from the queue.
-     * @throws JMSException If message processing fails.
+     * @param queue   The name of the request queue the message was received from.
+     * @return A future completed once the response is sent, or completed exceptionally if the message
+     * could not be processed.
+     * @throws JMSException If the message cannot be read.
      */
-    @JmsListener(destination = "${ibm.mq.queue.request}")
-    public void receiveMessage(TextMessage message) throws JMSException {
+    public CompletableFuture<ShipmentResponseDTO> receiveMessage(Message message, String queue) throws JMSException {
+        long start = System.nanoTime();
+        try {
+            return handleMessage(message, queue);
+        } finally {
+            processingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private CompletableFuture<ShipmentResponseDTO> handleMessage(Message message, String queue) throws JMSException {
         String correlationId = message.getJMSCorrelationID();
-        String payload = message.getText();
+        WireFormat format = WireFormat.of(message);
 
-        LOG.info("Received message with Correlation ID: {}", correlationId);
-        LOG.info("Message payload: {}", payload);
+        LOG.info("Received {} message with Correlation ID: {}", format, correlationId);
 
-        ShipmentMessageDTO shipmentMessageDTO = messageConverter.fromMessage(payload);
-        shipmentService.processShipment(shipmentMessageDTO, correlationId);
+        HopTimestamps hops = shipmentService.receive(message, queue);
+        ShipmentMessageDTO shipmentMessageDTO = messageConverter.fromMessage(message);
+        LOG.info("Message payload: {}", shipmentMessageDTO);
+        return shipmentService.processShipment(shipmentMessageDTO, correlationId, format,
+                shipmentService.replyDestination(message), hops);
     }
 }
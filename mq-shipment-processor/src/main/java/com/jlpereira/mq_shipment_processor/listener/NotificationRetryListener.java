@@ -0,0 +1,59 @@
+package com.jlpereira.mq_shipment_processor.listener;
+
+import com.jlpereira.mq_shipment_commons.codec.WireFormat;
+import com.jlpereira.mq_shipment_commons.jms.HopTimestamps;
+import com.jlpereira.mq_shipment_processor.commons.util.MessageConverter;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_processor.service.NotificationRetrier;
+import com.jlpereira.mq_shipment_processor.service.ShipmentService;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jms.annotation.JmsListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listener for notification retries on the retry queue, which the broker delivers once their delay elapsed.
+ * Active with the {@code queue} notification retry store.
+ */
+@Component
+@ConditionalOnProperty(name = "shipment.notification.retry.store", havingValue = "queue")
+public class NotificationRetryListener {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(NotificationRetryListener.class);
+
+    private final MessageConverter messageConverter;
+    private final ShipmentService shipmentService;
+
+    /**
+     * Constructor for initializing the listener.
+     *
+     * @param messageConverter Utility to convert messages.
+     * @param shipmentService  Service for processing shipments.
+     */
+    public NotificationRetryListener(MessageConverter messageConverter, ShipmentService shipmentService) {
+        this.messageConverter = messageConverter;
+        this.shipmentService = shipmentService;
+    }
+
+    /**
+     * Retries the notification of a shipment and responds once it is sent or out of attempts.
+     *
+     * @param message The retry message.
+     * @throws JMSException If the message cannot be read.
+     */
+    @JmsListener(destination = "${shipment.notification.retry.queue:DEV.QUEUE.3}")
+    public void receiveRetry(Message message) throws JMSException {
+        String correlationId = message.getJMSCorrelationID();
+        int attempts = message.getIntProperty(NotificationRetrier.ATTEMPTS_PROPERTY);
+        WireFormat replyFormat = WireFormat.parse(message.getStringProperty(NotificationRetrier.REPLY_FORMAT_PROPERTY));
+
+        ShipmentMessageDTO shipmentMessageDTO = messageConverter.fromMessage(message);
+        LOG.info("Retrying notification of orderId: {} with Correlation ID: {}, attempt {}",
+                shipmentMessageDTO.orderId(), correlationId, attempts + 1);
+        shipmentService.retryNotification(shipmentMessageDTO, correlationId, replyFormat,
+                shipmentService.replyDestination(message), HopTimestamps.read(message), attempts + 1);
+    }
+}
@@ -0,0 +1,362 @@
+package com.jlpereira.mq_shipment_processor.listener;
+
+import com.jlpereira.mq_shipment_commons.codec.WireFormat;
+import com.jlpereira.mq_shipment_commons.jms.HopTimestamps;
+import com.jlpereira.mq_shipment_processor.commons.util.MessageConverter;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_processor.service.NotificationCoalescer;
+import com.jlpereira.mq_shipment_processor.service.ShipmentService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Consumes the request queue on one thread and processes messages on N worker lanes chosen by
+ * hashing {@link ShipmentMessageDTO#orderId()}, so messages of the same order keep their queue order
+ * while different orders are processed in parallel.
+ * <p>
+ * The session uses {@link Session#CLIENT_ACKNOWLEDGE}. Since acknowledging a message acknowledges
+ * everything received before it on the session, messages are only acknowledged when every dispatched
+ * message has been processed: whenever the lanes go idle, or when {@code ackWindow} messages are
+ * unacknowledged, in which case consumption pauses until the lanes catch up. If processing fails,
+ * the session is recovered and all unacknowledged messages are redelivered; the IDs of the messages
+ * the lanes completed since the last acknowledgement are remembered until their redeliveries arrive,
+ * which are then acknowledged without being processed again. A message that cannot be read is moved
+ * to the backout queue, so it is acknowledged without being lost.
+ * <p>
+ * Since each lane waits for the notification of a message before the next, notification coalescing
+ * would hold a lane for a whole digest window and is rejected at startup.
+ */
+@Component
+@ConditionalOnProperty(name = "shipment.processing.mode", havingValue = "lanes")
+public class OrderedLaneConsumer implements SmartLifecycle {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(OrderedLaneConsumer.class);
+
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final ConnectionFactory mqConnectionFactory;
+    private final MessageConverter messageConverter;
+    private final ShipmentService shipmentService;
+    private final String requestQueue;
+    private final String backoutQueue;
+    private final int ackWindow;
+    private final long receiveTimeoutMs;
+    private final Lane[] lanes;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean processingFailed = new AtomicBoolean();
+    private final Set<String> completedMessageIds = ConcurrentHashMap.newKeySet();
+    private final Set<String> recoveredMessageIds = new HashSet<>();
+    private final Object idleMonitor = new Object();
+    private final Timer dispatchWait;
+    private final Counter recoveries;
+    private final Counter skippedRedeliveries;
+    private final Counter backouts;
+
+    private volatile boolean running;
+    private Thread receiveThread;
+
+    /**
+     * Constructor for initializing the lane consumer.
+     *
+     * @param mqConnectionFactory   The broker connection factory.
+     * @param messageConverter      Utility to convert messages.
+     * @param shipmentService       Service for processing shipments.
+     * @param notificationCoalescer The notification coalescer, which must be disabled.
+     * @param meterRegistry         The registry for lane metrics.
+     * @param requestQueue          The name of the request queue.
+     * @param laneCount             The number of worker lanes.
+     * @param laneCapacity          The number of messages each lane can buffer.
+     * @param ackWindow             The maximum number of unacknowledged messages.
+     * @param receiveTimeoutMs      How long a receive waits for a message before checking for acknowledgements.
+     * @param backoutQueue          The name of the queue messages that cannot be read are moved to.
+     */
+    public OrderedLaneConsumer(ConnectionFactory mqConnectionFactory, MessageConverter messageConverter,
+                               ShipmentService shipmentService, NotificationCoalescer notificationCoalescer,
+                               MeterRegistry meterRegistry,
+                               @Value("${ibm.mq.queue.request}") String requestQueue,
+                               @Value("${shipment.lanes.count:4}") int laneCount,
+                               @Value("${shipment.lanes.queue-capacity:100}") int laneCapacity,
+                               @Value("${shipment.lanes.ack-window:200}") int ackWindow,
+                               @Value("${shipment.lanes.receive-timeout-ms:1000}") long receiveTimeoutMs,
+                               @Value("${shipment.lanes.backout-queue:DEV.DEAD.LETTER.QUEUE}") String backoutQueue) {
+        if (notificationCoalescer.isEnabled()) {
+            throw new IllegalStateException("Notification coalescing cannot be enabled in lanes mode, "
+                    + "each lane would wait for the whole digest window");
+        }
+        this.mqConnectionFactory = mqConnectionFactory;
+        this.messageConverter = messageConverter;
+        this.shipmentService = shipmentService;
+        this.requestQueue = requestQueue;
+        this.backoutQueue = backoutQueue;
+        this.ackWindow = ackWindow;
+        this.receiveTimeoutMs = receiveTimeoutMs;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, laneCapacity);
+            Gauge.builder("shipment.lanes.queue.depth", lanes[i].tasks, BlockingQueue::size)
+                    .description("Messages waiting in a processing lane")
+                    .tag("lane", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+        Gauge.builder("shipment.lanes.inflight", inFlight, AtomicInteger::get)
+                .description("Messages dispatched to lanes and not yet processed")
+                .register(meterRegistry);
+        this.dispatchWait = Timer.builder("shipment.lanes.dispatch.wait")
+                .description("Time the consumer waited for room in a full lane")
+                .register(meterRegistry);
+        this.recoveries = Counter.builder("shipment.lanes.recoveries")
+                .description("Session recoveries after a lane failed to process a message")
+                .register(meterRegistry);
+        this.skippedRedeliveries = Counter.builder("shipment.lanes.redeliveries.skipped")
+                .description("Redelivered messages not processed again because a lane already completed them")
+                .register(meterRegistry);
+        this.backouts = Counter.builder("shipment.lanes.backouts")
+                .description("Messages that could not be read, moved to the backout queue")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        for (Lane lane : lanes) {
+            lane.start();
+        }
+        running = true;
+        receiveThread = new Thread(this::consume, "lane-consumer");
+        receiveThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            receiveThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Lane lane : lanes) {
+            lane.stop();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Receive loop: reconnects after connection failures until the consumer is stopped.
+     */
+    private void consume() {
+        while (running) {
+            try (Connection connection = mqConnectionFactory.createConnection()) {
+                Session session = connection.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+                MessageConsumer consumer = session.createConsumer(session.createQueue(requestQueue));
+                MessageProducer backout = session.createProducer(session.createQueue(backoutQueue));
+                connection.start();
+                LOG.info("Consuming {} on {} ordered lanes", requestQueue, lanes.length);
+                consume(session, consumer, backout);
+            } catch (JMSException e) {
+                LOG.error("Lane consumer connection failed, reconnecting in {} ms. Error: {}", RECONNECT_DELAY_MS, e.getMessage());
+                awaitLanesIdle();
+                processingFailed.set(false);
+                recoveredMessageIds.addAll(completedMessageIds);
+                completedMessageIds.clear();
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    private void consume(Session session, MessageConsumer consumer, MessageProducer backout) throws JMSException {
+        Message lastUnacknowledged = null;
+        int unacknowledged = 0;
+
+        while (running) {
+            Message message = consumer.receive(receiveTimeoutMs);
+            if (message != null) {
+                dispatch(message, backout);
+                lastUnacknowledged = message;
+                unacknowledged++;
+            }
+            if (unacknowledged > 0 && (unacknowledged >= ackWindow || inFlight.get() == 0)) {
+                awaitLanesIdle();
+                settle(session, lastUnacknowledged);
+                lastUnacknowledged = null;
+                unacknowledged = 0;
+            }
+        }
+
+        if (unacknowledged > 0) {
+            awaitLanesIdle();
+            settle(session, lastUnacknowledged);
+        }
+    }
+
+    /**
+     * Acknowledges everything received so far, or recovers the session if any of it failed, remembering
+     * the messages already completed so their redeliveries are skipped.
+     */
+    private void settle(Session session, Message lastUnacknowledged) throws JMSException {
+        if (processingFailed.getAndSet(false)) {
+            LOG.warn("Recovering session, unacknowledged messages will be redelivered");
+            recoveries.increment();
+            recoveredMessageIds.addAll(completedMessageIds);
+            session.recover();
+        } else {
+            lastUnacknowledged.acknowledge();
+        }
+        completedMessageIds.clear();
+    }
+
+    private void dispatch(Message message, MessageProducer backout) throws JMSException {
+        String correlationId = message.getJMSCorrelationID();
+        String messageId = message.getJMSMessageID();
+        if (!message.getJMSRedelivered()) {
+            recoveredMessageIds.clear();
+        } else if (recoveredMessageIds.remove(messageId)) {
+            LOG.info("Skipping redelivered message with Correlation ID: {}, already processed", correlationId);
+            skippedRedeliveries.increment();
+            return;
+        }
+        LOG.info("Received message with Correlation ID: {}", correlationId);
+
+        WireFormat format;
+        Destination replyTo;
+        HopTimestamps hops;
+        ShipmentMessageDTO shipmentMessageDTO;
+        try {
+            format = WireFormat.of(message);
+            replyTo = shipmentService.replyDestination(message);
+            hops = shipmentService.receive(message);
+            shipmentMessageDTO = messageConverter.fromMessage(message);
+        } catch (JMSException e) {
+            LOG.error("Moving unreadable message with Correlation ID: {} to {}. Error: {}", correlationId, backoutQueue,
+                    e.getMessage());
+            backout.send(message);
+            backouts.increment();
+            return;
+        }
+        LOG.info("Message payload: {}", shipmentMessageDTO);
+
+        Lane lane = lanes[Math.floorMod(String.valueOf(shipmentMessageDTO.orderId()).hashCode(), lanes.length)];
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        lane.put(() -> {
+            shipmentService.processShipment(shipmentMessageDTO, correlationId, format, replyTo, hops).join();
+            if (messageId != null) {
+                completedMessageIds.add(messageId);
+            }
+        });
+        dispatchWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void awaitLanesIdle() {
+        synchronized (idleMonitor) {
+            while (inFlight.get() > 0) {
+                try {
+                    idleMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void completed() {
+        if (inFlight.decrementAndGet() == 0) {
+            synchronized (idleMonitor) {
+                idleMonitor.notifyAll();
+            }
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * A single worker thread with a bounded queue; tasks run in submission order.
+     */
+    private final class Lane {
+        private final BlockingQueue<Runnable> tasks;
+        private final Thread worker;
+        private volatile boolean stopped;
+
+        private Lane(int index, int capacity) {
+            this.tasks = new ArrayBlockingQueue<>(capacity);
+            this.worker = new Thread(this::work, "shipment-lane-" + index);
+        }
+
+        private void start() {
+            worker.start();
+        }
+
+        private void put(Runnable task) {
+            try {
+                tasks.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                completed();
+            }
+        }
+
+        private void stop() {
+            stopped = true;
+            worker.interrupt();
+        }
+
+        private void work() {
+            while (!stopped || !tasks.isEmpty()) {
+                Runnable task;
+                try {
+                    task = tasks.take();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOG.error("Lane failed to process message. Error: {}", e.getMessage());
+                    processingFailed.set(true);
+                } finally {
+                    completed();
+                }
+            }
+        }
+    }
+}
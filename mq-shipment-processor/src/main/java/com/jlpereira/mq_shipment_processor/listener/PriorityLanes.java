@@ -0,0 +1,145 @@
+package com.jlpereira.mq_shipment_processor.listener;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The request queues the listener drains, one per priority lane, and the weight of each lane.
+ * <p>
+ * The standard lane is the request queue. When an express request queue is configured, the sender routes
+ * express requests to it and it becomes the express lane. Each lane gets its own listener container with the
+ * configured listener concurrency multiplied by its weight, so while both lanes are backlogged they are
+ * drained in proportion to their weights: express requests do not wait behind a standard backfill, and the
+ * backfill still moves. Consumers of an idle lane are not lent to the other one.
+ * <p>
+ * When the request queue is partitioned, the sender hashes each orderId to one of the partitions, and every
+ * partition assigned to this instance is a standard lane of its own. Assigning disjoint partitions to the
+ * processor instances spreads the request traffic across them, and across queue managers when the
+ * partitions live on different ones, while the requests of one order stay on one partition.
+ * <p>
+ * Only the listener processing mode drains the express lane and the partitions, so configuring either with
+ * another mode fails at startup instead of leaving requests unconsumed.
+ */
+@Component
+public class PriorityLanes {
+
+    private final List<Lane> lanes;
+
+    /**
+     * Constructor for initializing the lanes.
+     *
+     * @param requestQueue        The name of the request queue, the standard lane.
+     * @param expressRequestQueue The name of the express request queue, or blank for no express lane.
+     * @param requestPartitions   The comma-separated names of the request queue partitions, in the sender's
+     *                            order, or blank if the request queue is not partitioned.
+     * @param assignedPartitions  The comma-separated indexes of the partitions this instance drains, from 0,
+     *                            or blank for all of them.
+     * @param standardWeight      The weight of each standard lane.
+     * @param expressWeight       The weight of the express lane.
+     * @param processingMode      The processing mode, which must be {@code listener} for an express lane or
+     *                            partitions.
+     */
+    public PriorityLanes(@Value("${ibm.mq.queue.request}") String requestQueue,
+                         @Value("${ibm.mq.queue.request-express:}") String expressRequestQueue,
+                         @Value("${ibm.mq.queue.request-partitions:}") String requestPartitions,
+                         @Value("${shipment.partitions.assigned:}") String assignedPartitions,
+                         @Value("${shipment.priority.standard-weight:1}") int standardWeight,
+                         @Value("${shipment.priority.express-weight:2}") int expressWeight,
+                         @Value("${shipment.processing.mode:listener}") String processingMode) {
+        if (standardWeight < 1 || expressWeight < 1) {
+            throw new IllegalArgumentException("Priority lane weights must be at least 1");
+        }
+        List<String> partitions = split(requestPartitions);
+        if ((!expressRequestQueue.isBlank() || !partitions.isEmpty()) && !"listener".equals(processingMode)) {
+            throw new IllegalStateException("An express request queue or request queue partitions require the "
+                    + "listener processing mode, not " + processingMode);
+        }
+        List<Lane> configured = new ArrayList<>();
+        if (!expressRequestQueue.isBlank()) {
+            configured.add(new Lane("express", expressRequestQueue, expressWeight));
+        }
+        if (partitions.isEmpty()) {
+            configured.add(new Lane("standard", requestQueue, standardWeight));
+        } else {
+            for (int partition : assigned(assignedPartitions, partitions.size())) {
+                configured.add(new Lane("standard-" + partition, partitions.get(partition), standardWeight));
+            }
+        }
+        this.lanes = List.copyOf(configured);
+    }
+
+    private static List<String> split(String values) {
+        return Arrays.stream(values.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .toList();
+    }
+
+    private static List<Integer> assigned(String assignedPartitions, int partitionCount) {
+        List<String> indexes = split(assignedPartitions);
+        if (indexes.isEmpty()) {
+            return IntStream.range(0, partitionCount).boxed().toList();
+        }
+        List<Integer> assigned = new ArrayList<>();
+        for (String index : indexes) {
+            int partition = Integer.parseInt(index);
+            if (partition < 0 || partition >= partitionCount) {
+                throw new IllegalArgumentException("Assigned partition " + partition + " is not one of the "
+                        + partitionCount + " request queue partitions");
+            }
+            assigned.add(partition);
+        }
+        return assigned;
+    }
+
+    /**
+     * @return The lanes, express first.
+     */
+    public List<Lane> lanes() {
+        return lanes;
+    }
+
+    /**
+     * @param queue The name of a queue.
+     * @return The weight of the lane draining the queue, or 1 if the queue is not a lane.
+     */
+    public int weight(String queue) {
+        for (Lane lane : lanes) {
+            if (lane.queue().equals(queue)) {
+                return lane.weight();
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * A request queue and its share of the listener consumers.
+     *
+     * @param name   The name of the lane, used as the ID of its listener container.
+     * @param queue  The name of the request queue.
+     * @param weight The consumers of the lane per configured listener consumer.
+     */
+    public record Lane(String name, String queue, int weight) {
+
+        /**
+         * Scales a listener concurrency by the weight of the lane.
+         *
+         * @param concurrency A concurrency such as {@code 2} or {@code 1-4}.
+         * @return The concurrency of the lane, e.g. {@code 2-8} for {@code 1-4} and weight 2.
+         */
+        public String concurrency(String concurrency) {
+            int separator = concurrency.indexOf('-');
+            if (separator < 0) {
+                return String.valueOf(Integer.parseInt(concurrency.trim()) * weight);
+            }
+            int min = Integer.parseInt(concurrency.substring(0, separator).trim());
+            int max = Integer.parseInt(concurrency.substring(separator + 1).trim());
+            return min * weight + "-" + max * weight;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.jlpereira.mq_shipment_processor.listener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.jlpereira.mq_shipment_commons.codec.WireFormat;
+import com.jlpereira.mq_shipment_commons.jms.HopTimestamps;
+import com.jlpereira.mq_shipment_processor.commons.util.MessageConverter;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentResponseDTO;
+import com.jlpereira.mq_shipment_processor.service.ShipmentService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumes request messages in batches inside one transacted session.
+ * <p>
+ * A batch is closed after {@code maxMessages} messages or {@code maxWaitMs} after its first message.
+ * Every message of the batch is processed and its response is sent on the same session, to the request's
+ * reply-to destination or the response queue, then the session is committed once, so the gets of the
+ * requests and the puts of the responses become visible together. If anything fails, the whole batch is
+ * rolled back and redelivered, and its messages are then consumed one per transaction, so a message that
+ * keeps failing only holds up itself. A message delivered more than {@code backoutThreshold} times is moved
+ * to the backout queue instead of processed.
+ */
+@Component
+@ConditionalOnProperty(name = "shipment.processing.mode", havingValue = "batch")
+public class TransactedBatchConsumer implements SmartLifecycle {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(TransactedBatchConsumer.class);
+
+    private static final long RECONNECT_DELAY_MS = 5000;
+    private static final String DELIVERY_COUNT = "JMSXDeliveryCount";
+
+    private final ConnectionFactory mqConnectionFactory;
+    private final MessageConverter messageConverter;
+    private final ShipmentService shipmentService;
+    private final String requestQueue;
+    private final int maxMessages;
+    private final long maxWaitMs;
+    private final long receiveTimeoutMs;
+    private final int backoutThreshold;
+    private final String backoutQueue;
+    private final DistributionSummary batchSize;
+    private final Counter commits;
+    private final Counter rollbacks;
+    private final Counter backouts;
+
+    private volatile boolean running;
+    private Thread receiveThread;
+    private int singleMessages;
+
+    /**
+     * Constructor for initializing the batch consumer.
+     *
+     * @param mqConnectionFactory The broker connection factory.
+     * @param messageConverter    Utility to convert messages.
+     * @param shipmentService     Service for processing shipments.
+     * @param meterRegistry       The registry for batch metrics.
+     * @param requestQueue        The name of the request queue.
+     * @param maxMessages         The maximum number of messages per batch.
+     * @param maxWaitMs           How long a batch stays open after its first message.
+     * @param receiveTimeoutMs    How long to wait for the first message of a batch.
+     * @param backoutThreshold    How many times a message is delivered before it is moved to the backout queue.
+     * @param backoutQueue        The name of the queue messages that keep failing are moved to.
+     */
+    public TransactedBatchConsumer(ConnectionFactory mqConnectionFactory, MessageConverter messageConverter,
+                                   ShipmentService shipmentService, MeterRegistry meterRegistry,
+                                   @Value("${ibm.mq.queue.request}") String requestQueue,
+                                   @Value("${shipment.batch.max-messages:50}") int maxMessages,
+                                   @Value("${shipment.batch.max-wait-ms:100}") long maxWaitMs,
+                                   @Value("${shipment.batch.receive-timeout-ms:1000}") long receiveTimeoutMs,
+                                   @Value("${shipment.batch.backout-threshold:5}") int backoutThreshold,
+                                   @Value("${shipment.batch.backout-queue:DEV.DEAD.LETTER.QUEUE}") String backoutQueue) {
+        this.mqConnectionFactory = mqConnectionFactory;
+        this.messageConverter = messageConverter;
+        this.shipmentService = shipmentService;
+        this.requestQueue = requestQueue;
+        this.maxMessages = maxMessages;
+        this.maxWaitMs = maxWaitMs;
+        this.receiveTimeoutMs = receiveTimeoutMs;
+        this.backoutThreshold = backoutThreshold;
+        this.backoutQueue = backoutQueue;
+        this.batchSize = DistributionSummary.builder("shipment.batch.size")
+                .description("Messages per committed batch")
+                .register(meterRegistry);
+        this.commits = Counter.builder("shipment.batch.commits")
+                .description("Committed batches")
+                .register(meterRegistry);
+        this.rollbacks = Counter.builder("shipment.batch.rollbacks")
+                .description("Rolled back batches")
+                .register(meterRegistry);
+        this.backouts = Counter.builder("shipment.batch.backouts")
+                .description("Messages moved to the backout queue after too many deliveries")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        receiveThread = new Thread(this::consume, "batch-consumer");
+        receiveThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            receiveThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Receive loop: reconnects after connection failures until the consumer is stopped.
+     */
+    private void consume() {
+        while (running) {
+            try (Connection connection = mqConnectionFactory.createConnection()) {
+                Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+                MessageConsumer consumer = session.createConsumer(session.createQueue(requestQueue));
+                MessageProducer producer = session.createProducer(null);
+                Destination backout = session.createQueue(backoutQueue);
+                connection.start();
+                LOG.info("Consuming {} in transacted batches of up to {} messages", requestQueue, maxMessages);
+                while (running) {
+                    consumeBatch(session, consumer, producer, backout);
+                }
+            } catch (JMSException e) {
+                LOG.error("Batch consumer connection failed, reconnecting in {} ms. Error: {}", RECONNECT_DELAY_MS, e.getMessage());
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    /**
+     * Consumes one batch, or a single message while retrying the messages of a failed batch.
+     */
+    private void consumeBatch(Session session, MessageConsumer consumer, MessageProducer producer,
+                              Destination backout) throws JMSException {
+        Message message = consumer.receive(receiveTimeoutMs);
+        if (message == null) {
+            return;
+        }
+
+        int limit = singleMessages > 0 ? 1 : maxMessages;
+        int received = 0;
+        try {
+            long deadline = System.currentTimeMillis() + maxWaitMs;
+            while (message != null) {
+                received++;
+                if (deliveryCount(message) > backoutThreshold) {
+                    backOut(producer, backout, message);
+                } else {
+                    processMessage(session, producer, message);
+                }
+                if (received == limit) {
+                    break;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                message = remaining > 0 ? consumer.receive(remaining) : consumer.receiveNoWait();
+            }
+            session.commit();
+            commits.increment();
+            batchSize.record(received);
+            LOG.info("Committed batch of {} messages", received);
+            if (singleMessages > 0) {
+                singleMessages--;
+            }
+        } catch (JMSException | RuntimeException e) {
+            LOG.error("Rolling back batch of {} messages. Error: {}", received, e.getMessage());
+            rollbacks.increment();
+            session.rollback();
+            if (singleMessages == 0 && received > 1) {
+                singleMessages = received;
+            }
+        }
+    }
+
+    private static int deliveryCount(Message message) throws JMSException {
+        Object deliveryCount = message.getObjectProperty(DELIVERY_COUNT);
+        return deliveryCount instanceof Number number ? number.intValue() : 1;
+    }
+
+    private void backOut(MessageProducer producer, Destination backout, Message message) throws JMSException {
+        LOG.error("Moving message with Correlation ID: {} to {} after {} deliveries", message.getJMSCorrelationID(),
+                backoutQueue, deliveryCount(message));
+        producer.send(backout, message);
+        backouts.increment();
+    }
+
+    private void processMessage(Session session, MessageProducer producer, Message message) throws JMSException {
+        String correlationId = message.getJMSCorrelationID();
+        LOG.info("Received message with Correlation ID: {}", correlationId);
+
+        WireFormat format;
+        Destination replyTo;
+        HopTimestamps hops;
+        ShipmentMessageDTO shipmentMessageDTO;
+        try {
+            format = WireFormat.of(message);
+            replyTo = shipmentService.replyDestination(message);
+            hops = shipmentService.receive(message);
+            shipmentMessageDTO = messageConverter.fromMessage(message);
+        } catch (JMSException e) {
+            LOG.error("Discarding message with Correlation ID: {}. Error: {}", correlationId, e.getMessage());
+            return;
+        }
+        LOG.info("Message payload: {}", shipmentMessageDTO);
+
+        ShipmentResponseDTO responseDTO = shipmentService.handleShipment(shipmentMessageDTO, correlationId);
+        HopTimestamps notified = hops.notified(System.currentTimeMillis());
+        try {
+            producer.send(replyTo, shipmentService.createResponseMessage(session, correlationId, responseDTO, format, notified));
+        } catch (JsonProcessingException e) {
+            LOG.error("Error sending response for orderId: {}", responseDTO.orderId(), e);
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
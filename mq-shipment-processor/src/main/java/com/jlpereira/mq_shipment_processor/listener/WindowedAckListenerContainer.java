@@ -0,0 +1,212 @@
+package com.jlpereira.mq_shipment_processor.listener;
+
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Listener container that acknowledges the messages of an {@link AsyncMessageListener} once they have been
+ * processed rather than once the listener returns, so a consumer receives its next message while earlier
+ * ones are still being processed.
+ * <p>
+ * Since acknowledging a message acknowledges everything received before it on the session, each consumer
+ * acknowledges only when every message it handed off has been processed: after a message if none is left
+ * in flight, or once {@code ackWindow} messages are unacknowledged or a receive times out, in which case
+ * the consumer pauses until they are processed. If any of them failed, the session is recovered instead
+ * and all unacknowledged messages are redelivered; the ones already processed are answered from the
+ * idempotency cache. A consumer also waits for its messages in flight before it recovers its session or
+ * stops, so a message is not redelivered while it is still being processed.
+ * <p>
+ * Other listeners, and sessions not using {@link Session#CLIENT_ACKNOWLEDGE}, are acknowledged as usual.
+ */
+public class WindowedAckListenerContainer extends DefaultMessageListenerContainer {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(WindowedAckListenerContainer.class);
+
+    private final int ackWindow;
+    private final ThreadLocal<AckWindow> windows = new ThreadLocal<>();
+
+    /**
+     * Constructor for initializing the container.
+     *
+     * @param ackWindow The maximum number of unacknowledged messages of each consumer.
+     */
+    public WindowedAckListenerContainer(int ackWindow) {
+        if (ackWindow < 1) {
+            throw new IllegalArgumentException("The acknowledgement window must hold at least one message, got " + ackWindow);
+        }
+        this.ackWindow = ackWindow;
+    }
+
+    @Override
+    protected void invokeListener(Session session, Message message) throws JMSException {
+        if (!(getMessageListener() instanceof AsyncMessageListener listener) || !isClientAcknowledge(session)) {
+            super.invokeListener(session, message);
+            return;
+        }
+        AckWindow window = windows.get();
+        if (window == null || window.session != session) {
+            // A new session: the messages left unacknowledged on the previous one are redelivered by the broker
+            window = new AckWindow(session);
+            windows.set(window);
+        }
+        window.dispatched(message);
+        CompletableFuture<?> processed;
+        try {
+            processed = listener.receive(message);
+        } catch (JMSException | RuntimeException e) {
+            window.completed(false);
+            throw e;
+        }
+        AckWindow dispatchedTo = window;
+        processed.whenComplete((result, error) -> dispatchedTo.completed(error == null));
+    }
+
+    @Override
+    protected void commitIfNecessary(Session session, Message message) throws JMSException {
+        AckWindow window = window(session);
+        if (window == null) {
+            super.commitIfNecessary(session, message);
+            return;
+        }
+        if (window.unacknowledged >= ackWindow) {
+            window.awaitIdle();
+        }
+        window.settleIfIdle();
+    }
+
+    @Override
+    protected void noMessageReceived(Object invoker, Session session) {
+        super.noMessageReceived(invoker, session);
+        AckWindow window = window(session);
+        if (window != null) {
+            // The queue is empty and the consumer may be about to stop as idle
+            window.awaitIdle();
+            try {
+                window.settleIfIdle();
+            } catch (JMSException e) {
+                LOG.error("Error acknowledging processed messages. Error: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    protected boolean receiveAndExecute(Object invoker, Session session, MessageConsumer consumer) throws JMSException {
+        boolean messageReceived = super.receiveAndExecute(invoker, session, consumer);
+        AckWindow window = window(session);
+        if (window != null && (!isRunning() || getActiveConsumerCount() > getMaxConcurrentConsumers())) {
+            // The container is stopping or shrinking, so the consumer may be about to close its session
+            window.awaitIdle();
+            window.settleIfIdle();
+        }
+        return messageReceived;
+    }
+
+    @Override
+    protected void rollbackIfNecessary(Session session) throws JMSException {
+        awaitIdleBeforeRecovery(session);
+        super.rollbackIfNecessary(session);
+    }
+
+    @Override
+    protected void rollbackOnExceptionIfNecessary(Session session, Throwable ex) throws JMSException {
+        awaitIdleBeforeRecovery(session);
+        super.rollbackOnExceptionIfNecessary(session, ex);
+    }
+
+    private void awaitIdleBeforeRecovery(Session session) {
+        AckWindow window = window(session);
+        if (window != null) {
+            window.awaitIdle();
+            window.reset();
+        }
+    }
+
+    private AckWindow window(Session session) {
+        AckWindow window = windows.get();
+        return window != null && window.session == session ? window : null;
+    }
+
+    /**
+     * The unacknowledged messages of one consumer's session. Only the consumer thread acknowledges or
+     * recovers the session; the processing threads only count completions.
+     */
+    private static final class AckWindow {
+        private final Session session;
+        private Message lastUnacknowledged;
+        private int unacknowledged;
+        private int inFlight;
+        private boolean failed;
+
+        private AckWindow(Session session) {
+            this.session = session;
+        }
+
+        private void dispatched(Message message) {
+            lastUnacknowledged = message;
+            unacknowledged++;
+            synchronized (this) {
+                inFlight++;
+            }
+        }
+
+        private synchronized void completed(boolean succeeded) {
+            failed |= !succeeded;
+            if (--inFlight == 0) {
+                notifyAll();
+            }
+        }
+
+        private synchronized void awaitIdle() {
+            while (inFlight > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Acknowledges everything received so far, or recovers the session if any of it failed, unless
+         * messages are still being processed.
+         */
+        private void settleIfIdle() throws JMSException {
+            if (unacknowledged == 0) {
+                return;
+            }
+            boolean recover;
+            synchronized (this) {
+                if (inFlight > 0) {
+                    return;
+                }
+                recover = failed;
+                failed = false;
+            }
+            if (recover) {
+                LOG.warn("Recovering session, {} unacknowledged messages will be redelivered", unacknowledged);
+                session.recover();
+            } else {
+                lastUnacknowledged.acknowledge();
+            }
+            lastUnacknowledged = null;
+            unacknowledged = 0;
+        }
+
+        /**
+         * Forgets the unacknowledged messages, once the container recovers the session itself.
+         */
+        private synchronized void reset() {
+            failed = false;
+            lastUnacknowledged = null;
+            unacknowledged = 0;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.jlpereira.mq_shipment_processor.model.dto;
 
+import com.jlpereira.mq_shipment_commons.codec.ShipmentRequestFields;
+
 import java.time.LocalDate;
 
 /**
@@ -9,10 +11,15 @@ import java.time.LocalDate;
  * @param customerEmail  The email of the customer.
  * @param trackingNumber The tracking number for the shipment.
  * @param shippingDate   The date the shipment was sent.
+ * @param brand          The brand the notification is sent for, or null for the default templates.
+ * @param locale         The customer's locale (e.g. {@code es} or {@code es-MX}), or null for the default language.
  */
 public record ShipmentMessageDTO(
         String orderId,
         String customerEmail,
         String trackingNumber,
-        LocalDate shippingDate
-) {}
+        LocalDate shippingDate,
+        String brand,
+        String locale
+) implements ShipmentRequestFields {
+}
@@ -1,5 +1,7 @@
 package com.jlpereira.mq_shipment_processor.model.dto;
 
+import com.jlpereira.mq_shipment_commons.codec.ShipmentResponseFields;
+
 /**
  * DTO representing the response to a shipment request.
  *
@@ -11,5 +13,5 @@ public record ShipmentResponseDTO(
         String orderId,
         String status,
         String message
-) {
+) implements ShipmentResponseFields {
 }
@@ -0,0 +1,236 @@
+package com.jlpereira.mq_shipment_processor.service;
+
+import com.jlpereira.mq_shipment_commons.util.HashedWheelTimer;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Coalesces the notifications of one customer into a single digest email.
+ * <p>
+ * The first shipment for a customer opens a digest and schedules its window on the notification timing
+ * wheel; shipments for the same customer join it until the window elapses or {@code maxShipments} are
+ * buffered, then the digest is sent once on a flush thread and every shipment in it is completed with
+ * the result of that send. At most {@code maxPending} shipments are buffered; beyond that
+ * {@link #submit} blocks the calling consumer thread until a digest is sent.
+ * <p>
+ * In listener mode a consumer hands a shipment off and receives the next one while the digest is open, so
+ * one consumer's shipments of a customer can share a digest; its requests are acknowledged once the digest
+ * is sent. Coalescing is not supported with ordered lanes, whose workers wait for each shipment's
+ * notification and would each be held for a whole window; the lane consumer refuses to start with it.
+ */
+@Service
+public class NotificationCoalescer implements DisposableBean {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(NotificationCoalescer.class);
+
+    private final boolean enabled;
+    private final long windowMs;
+    private final int maxShipments;
+    private final HashedWheelTimer timer;
+    private final ExecutorService flushExecutor;
+    private final Semaphore pendingSlots;
+    private final Map<String, Digest> digests = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingShipments = new AtomicInteger();
+    private final DistributionSummary digestSize;
+    private final Counter windowFlushes;
+    private final Counter countFlushes;
+    private final Counter shutdownFlushes;
+
+    /**
+     * Constructor for initializing the coalescer.
+     *
+     * @param notificationTimer The timing wheel that closes digest windows.
+     * @param meterRegistry     The registry for digest metrics.
+     * @param enabled           Whether notifications are coalesced.
+     * @param windowMs          How long a digest stays open after its first shipment.
+     * @param maxShipments      The number of shipments that closes a digest before its window elapses.
+     * @param maxPending        The maximum number of shipments buffered across all digests.
+     * @param flushThreads      The number of threads sending digests.
+     */
+    public NotificationCoalescer(HashedWheelTimer notificationTimer, MeterRegistry meterRegistry,
+                                 @Value("${shipment.notification.coalescing.enabled:false}") boolean enabled,
+                                 @Value("${shipment.notification.coalescing.window-ms:2000}") long windowMs,
+                                 @Value("${shipment.notification.coalescing.max-shipments:20}") int maxShipments,
+                                 @Value("${shipment.notification.coalescing.max-pending:1000}") int maxPending,
+                                 @Value("${shipment.notification.coalescing.flush-threads:4}") int flushThreads) {
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.maxShipments = maxShipments;
+        this.timer = notificationTimer;
+        this.pendingSlots = new Semaphore(maxPending);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.flushExecutor = Executors.newFixedThreadPool(flushThreads,
+                runnable -> new Thread(runnable, "notification-digest-" + threadCount.incrementAndGet()));
+
+        Gauge.builder("shipment.notification.coalescing.pending", pendingShipments, AtomicInteger::get)
+                .description("Shipments buffered in open or unsent digests")
+                .register(meterRegistry);
+        Gauge.builder("shipment.notification.coalescing.open", digests, Map::size)
+                .description("Customers with an open digest")
+                .register(meterRegistry);
+        this.digestSize = DistributionSummary.builder("shipment.notification.coalescing.digest.size")
+                .description("Shipments per digest email")
+                .register(meterRegistry);
+        this.windowFlushes = flushCounter(meterRegistry, "window");
+        this.countFlushes = flushCounter(meterRegistry, "count");
+        this.shutdownFlushes = flushCounter(meterRegistry, "shutdown");
+    }
+
+    private static Counter flushCounter(MeterRegistry meterRegistry, String trigger) {
+        return Counter.builder("shipment.notification.coalescing.flushes")
+                .description("Digests sent, by what closed them")
+                .tag("trigger", trigger)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true if notifications are coalesced.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds a shipment to its customer's digest, opening one if needed.
+     *
+     * @param shipment The shipment to notify.
+     * @param sender   Sends a digest; receives the shipments in arrival order and returns whether it was sent.
+     * @return A future completed with the result of the digest the shipment was sent in.
+     */
+    public CompletableFuture<Boolean> submit(ShipmentMessageDTO shipment, Predicate<List<ShipmentMessageDTO>> sender) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        if (shipment.customerEmail() == null) {
+            flushExecutor.execute(() -> send(List.of(shipment), List.of(result), sender));
+            return result;
+        }
+
+        pendingSlots.acquireUninterruptibly();
+        pendingShipments.incrementAndGet();
+        String key = shipment.customerEmail().trim().toLowerCase(Locale.ROOT);
+        while (true) {
+            Digest digest = digests.computeIfAbsent(key, k -> new Digest(k, sender));
+            synchronized (digest) {
+                if (digest.closed) {
+                    continue;
+                }
+                digest.shipments.add(shipment);
+                digest.results.add(result);
+                if (digest.shipments.size() < maxShipments) {
+                    if (digest.timeout == null) {
+                        digest.timeout = timer.schedule(() -> expire(digest), windowMs, TimeUnit.MILLISECONDS);
+                    }
+                    return result;
+                }
+                digest.close();
+            }
+            countFlushes.increment();
+            flush(digest);
+            return result;
+        }
+    }
+
+    private void expire(Digest digest) {
+        synchronized (digest) {
+            if (digest.closed) {
+                return;
+            }
+            digest.close();
+        }
+        windowFlushes.increment();
+        flush(digest);
+    }
+
+    private void flush(Digest digest) {
+        digestSize.record(digest.shipments.size());
+        flushExecutor.execute(() -> {
+            try {
+                send(digest.shipments, digest.results, digest.sender);
+            } finally {
+                pendingShipments.addAndGet(-digest.shipments.size());
+                pendingSlots.release(digest.shipments.size());
+            }
+        });
+    }
+
+    private void send(List<ShipmentMessageDTO> shipments, List<CompletableFuture<Boolean>> results,
+                      Predicate<List<ShipmentMessageDTO>> sender) {
+        try {
+            boolean sent = sender.test(shipments);
+            results.forEach(result -> result.complete(sent));
+        } catch (RuntimeException e) {
+            LOG.error("Error sending digest of {} shipments. Error: {}", shipments.size(), e.getMessage());
+            results.forEach(result -> result.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Sends the open digests and lets the flush threads finish before the context shuts down.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        for (Digest digest : digests.values()) {
+            synchronized (digest) {
+                if (digest.closed) {
+                    continue;
+                }
+                digest.close();
+            }
+            shutdownFlushes.increment();
+            flush(digest);
+        }
+        flushExecutor.shutdown();
+        if (!flushExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+            LOG.warn("Digest executor did not finish in time, {} digests dropped", flushExecutor.shutdownNow().size());
+        }
+    }
+
+    /**
+     * The shipments of one customer collected during a window. Guarded by its own monitor; the window is
+     * scheduled when the first shipment joins, once the digest is visible to other consumers.
+     */
+    private final class Digest {
+        private final String key;
+        private final Predicate<List<ShipmentMessageDTO>> sender;
+        private final List<ShipmentMessageDTO> shipments = new ArrayList<>();
+        private final List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        private HashedWheelTimer.Timeout timeout;
+        private boolean closed;
+
+        private Digest(String key, Predicate<List<ShipmentMessageDTO>> sender) {
+            this.key = key;
+            this.sender = sender;
+        }
+
+        /**
+         * Stops the digest from accepting shipments; the caller then flushes it.
+         */
+        private void close() {
+            closed = true;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            digests.remove(key, this);
+        }
+    }
+}
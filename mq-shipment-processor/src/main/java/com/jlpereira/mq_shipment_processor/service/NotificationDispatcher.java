@@ -0,0 +1,129 @@
+package com.jlpereira.mq_shipment_processor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs notification sends off the consumer thread on a bounded executor.
+ * <p>
+ * The stage holds at most {@code threads + queueCapacity} notifications. When it is full,
+ * {@link #dispatch(BooleanSupplier)} blocks the calling consumer thread until a slot frees up, which
+ * pauses consumption of the request queue instead of buffering without limit. When disabled,
+ * notifications run inline on the calling thread.
+ */
+@Service
+public class NotificationDispatcher implements DisposableBean {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    private final boolean enabled;
+    private final int capacity;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore slots;
+    private final Timer backpressureWait;
+    private final Counter saturations;
+
+    /**
+     * Constructor for initializing the dispatcher.
+     *
+     * @param meterRegistry The registry for queue-depth and saturation metrics.
+     * @param enabled       Whether notifications run asynchronously.
+     * @param threads       The number of notification threads.
+     * @param queueCapacity The number of notifications that can wait for a thread.
+     */
+    public NotificationDispatcher(MeterRegistry meterRegistry,
+                                  @Value("${shipment.notification.async.enabled:false}") boolean enabled,
+                                  @Value("${shipment.notification.async.threads:8}") int threads,
+                                  @Value("${shipment.notification.async.queue-capacity:200}") int queueCapacity) {
+        this.enabled = enabled;
+        this.capacity = threads + queueCapacity;
+        this.slots = new Semaphore(capacity);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> new Thread(runnable, "notification-" + threadCount.incrementAndGet()));
+
+        Gauge.builder("shipment.notification.queue.depth", executor, e -> e.getQueue().size())
+                .description("Notifications waiting for a notification thread")
+                .register(meterRegistry);
+        Gauge.builder("shipment.notification.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Notifications being sent")
+                .register(meterRegistry);
+        Gauge.builder("shipment.notification.saturation", slots, s -> 1.0 - (double) s.availablePermits() / capacity)
+                .description("Share of the notification stage capacity in use")
+                .register(meterRegistry);
+        this.backpressureWait = Timer.builder("shipment.notification.backpressure.wait")
+                .description("Time consumers were paused waiting for notification capacity")
+                .register(meterRegistry);
+        this.saturations = Counter.builder("shipment.notification.saturated")
+                .description("Dispatches that found the notification stage full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a notification on the notification executor, blocking while the stage is saturated.
+     *
+     * @param notification The notification to run; returns whether it was sent.
+     * @return A future completed with the result of the notification.
+     */
+    public CompletableFuture<Boolean> dispatch(BooleanSupplier notification) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(notification.getAsBoolean());
+        }
+
+        acquireSlot();
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(notification.getAsBoolean());
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            slots.release();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private void acquireSlot() {
+        if (slots.tryAcquire()) {
+            return;
+        }
+        saturations.increment();
+        LOG.warn("Notification stage saturated, pausing consumption");
+        long start = System.nanoTime();
+        slots.acquireUninterruptibly();
+        backpressureWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Lets queued notifications finish before the context shuts down.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            LOG.warn("Notification executor did not finish in time, {} notifications dropped", executor.shutdownNow().size());
+        }
+    }
+}
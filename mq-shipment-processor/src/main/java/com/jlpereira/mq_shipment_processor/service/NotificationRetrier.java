@@ -0,0 +1,298 @@
+package com.jlpereira.mq_shipment_processor.service;
+
+import com.jlpereira.mq_shipment_commons.codec.EncodedPayload;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentBinaryCodec;
+import com.jlpereira.mq_shipment_commons.codec.WireFormat;
+import com.jlpereira.mq_shipment_commons.jms.HopTimestamps;
+import com.jlpereira.mq_shipment_commons.util.HashedWheelTimer;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.jms.Destination;
+import jakarta.jms.Message;
+import jakarta.jms.MessageProducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Retries failed notifications after a delay, without holding the thread that reported the failure.
+ * <p>
+ * A notification gets at most {@code maxAttempts} attempts. The delay before attempt {@code n + 1} is
+ * {@code initialDelayMs * multiplier^(n - 1)}, capped at {@code maxDelayMs}, of which the {@code jitter}
+ * share is randomized so retries of a burst of failures spread out. Retries are kept in one of two stores:
+ * <ul>
+ *     <li>{@code memory}: the retry is scheduled on the notification timing wheel and runs on a retry
+ *     thread. Retries pending when the processor stops are lost, and their requests redelivered unless
+ *     they were acknowledged on handoff. At most {@code maxPending} notifications wait for a retry; beyond
+ *     that a failure is final.</li>
+ *     <li>{@code queue}: the shipment is put on the retry queue with a JMS delivery delay and retried by
+ *     whichever processor consumes it, which then sends the response.</li>
+ * </ul>
+ */
+@Service
+public class NotificationRetrier implements DisposableBean {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(NotificationRetrier.class);
+
+    /**
+     * Name of the retry message property carrying the number of attempts already made.
+     */
+    public static final String ATTEMPTS_PROPERTY = "shipmentNotificationAttempts";
+
+    /**
+     * Name of the retry message property carrying the wire format of the response.
+     */
+    public static final String REPLY_FORMAT_PROPERTY = "shipmentReplyFormat";
+
+    private final HashedWheelTimer timer;
+    private final JmsTemplate jmsTemplate;
+    private final boolean durable;
+    private final int maxAttempts;
+    private final long initialDelayMs;
+    private final double multiplier;
+    private final long maxDelayMs;
+    private final double jitter;
+    private final int maxPending;
+    private final String retryQueueName;
+    private final ExecutorService retryExecutor;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Counter scheduled;
+    private final Counter overflows;
+    private final DistributionSummary sentAttempts;
+    private final DistributionSummary exhaustedAttempts;
+
+    /**
+     * Constructor for initializing the retrier.
+     *
+     * @param notificationTimer The timing wheel that schedules in-memory retries.
+     * @param jmsTemplate       The JMS template for putting retries on the retry queue.
+     * @param meterRegistry     The registry for retry depth and attempt metrics.
+     * @param store             Where pending retries are kept: {@code memory} or {@code queue}.
+     * @param maxAttempts       The attempts a notification gets, including the first; 1 disables retries.
+     * @param initialDelayMs    The delay before the first retry.
+     * @param multiplier        The factor the delay grows by with each retry.
+     * @param maxDelayMs        The longest delay before a retry.
+     * @param jitter            The share of each delay that is randomized, between 0 and 1.
+     * @param maxPending        The maximum number of notifications waiting for an in-memory retry.
+     * @param threads           The number of threads running in-memory retries.
+     * @param retryQueueName    The queue retries are put on with the {@code queue} store.
+     */
+    public NotificationRetrier(HashedWheelTimer notificationTimer, JmsTemplate jmsTemplate, MeterRegistry meterRegistry,
+                               @Value("${shipment.notification.retry.store:memory}") String store,
+                               @Value("${shipment.notification.retry.max-attempts:3}") int maxAttempts,
+                               @Value("${shipment.notification.retry.initial-delay-ms:200}") long initialDelayMs,
+                               @Value("${shipment.notification.retry.multiplier:2.0}") double multiplier,
+                               @Value("${shipment.notification.retry.max-delay-ms:2000}") long maxDelayMs,
+                               @Value("${shipment.notification.retry.jitter:0.5}") double jitter,
+                               @Value("${shipment.notification.retry.max-pending:1000}") int maxPending,
+                               @Value("${shipment.notification.retry.threads:2}") int threads,
+                               @Value("${shipment.notification.retry.queue:DEV.QUEUE.3}") String retryQueueName) {
+        this.timer = notificationTimer;
+        this.jmsTemplate = jmsTemplate;
+        this.durable = switch (store.trim().toLowerCase(Locale.ROOT)) {
+            case "memory" -> false;
+            case "queue" -> true;
+            default -> throw new IllegalArgumentException("Unsupported notification retry store: " + store);
+        };
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialDelayMs = initialDelayMs;
+        this.multiplier = multiplier;
+        this.maxDelayMs = maxDelayMs;
+        this.jitter = Math.max(0, Math.min(1, jitter));
+        this.maxPending = maxPending;
+        this.retryQueueName = retryQueueName;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.retryExecutor = Executors.newFixedThreadPool(Math.max(1, threads),
+                runnable -> new Thread(runnable, "notification-retry-" + threadCount.incrementAndGet()));
+
+        Gauge.builder("shipment.notification.retry.pending", pending, AtomicInteger::get)
+                .description("Notifications waiting for an in-memory retry")
+                .register(meterRegistry);
+        this.scheduled = Counter.builder("shipment.notification.retry.scheduled")
+                .description("Notification retries scheduled")
+                .tag("store", durable ? "queue" : "memory")
+                .register(meterRegistry);
+        this.overflows = Counter.builder("shipment.notification.retry.overflow")
+                .description("Failed notifications not retried because too many were waiting for a retry")
+                .register(meterRegistry);
+        this.sentAttempts = attemptsSummary(meterRegistry, "sent");
+        this.exhaustedAttempts = attemptsSummary(meterRegistry, "exhausted");
+    }
+
+    private DistributionSummary attemptsSummary(MeterRegistry meterRegistry, String outcome) {
+        return DistributionSummary.builder("shipment.notification.attempts")
+                .description("Attempts per notification, by final outcome")
+                .tag("outcome", outcome)
+                .serviceLevelObjectives(IntStream.rangeClosed(1, maxAttempts).asDoubleStream().toArray())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Completes a notification whose first attempt is already running: with the {@code memory} store a failed
+     * first attempt is retried before the returned future completes. With the {@code queue} store a failure is
+     * returned as is, for {@link #deferToQueue} to retry.
+     *
+     * @param firstAttempt The result of the first attempt.
+     * @param retry        Runs one more attempt; returns whether the notification was sent.
+     * @return A future completed with whether the notification was sent.
+     */
+    public CompletableFuture<Boolean> send(CompletableFuture<Boolean> firstAttempt, BooleanSupplier retry) {
+        return firstAttempt.thenCompose(sent -> {
+            if (sent) {
+                sentAttempts.record(1);
+                return CompletableFuture.completedFuture(true);
+            }
+            if (durable) {
+                return CompletableFuture.completedFuture(false);
+            }
+            CompletableFuture<Boolean> result = new CompletableFuture<>();
+            retryLater(retry, 1, result);
+            return result;
+        });
+    }
+
+    private void retryLater(BooleanSupplier retry, int attempts, CompletableFuture<Boolean> result) {
+        if (attempts >= maxAttempts) {
+            exhaustedAttempts.record(attempts);
+            result.complete(false);
+            return;
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            overflows.increment();
+            exhaustedAttempts.record(attempts);
+            result.complete(false);
+            return;
+        }
+        scheduled.increment();
+        timer.schedule(() -> {
+            try {
+                retryExecutor.execute(() -> attempt(retry, attempts + 1, result));
+            } catch (RejectedExecutionException e) {
+                pending.decrementAndGet();
+                exhaustedAttempts.record(attempts);
+                result.complete(false);
+            }
+        }, delayMs(attempts), TimeUnit.MILLISECONDS);
+    }
+
+    private void attempt(BooleanSupplier retry, int attempt, CompletableFuture<Boolean> result) {
+        pending.decrementAndGet();
+        boolean sent;
+        try {
+            sent = retry.getAsBoolean();
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        if (sent) {
+            sentAttempts.record(attempt);
+            result.complete(true);
+        } else {
+            retryLater(retry, attempt, result);
+        }
+    }
+
+    /**
+     * Runs an attempt of a notification consumed from the retry queue.
+     *
+     * @param retry   Runs the attempt; returns whether the notification was sent.
+     * @param attempt The number of this attempt, counting the first.
+     * @return true if the notification was sent.
+     */
+    public boolean retryNow(BooleanSupplier retry, int attempt) {
+        boolean sent = retry.getAsBoolean();
+        if (sent) {
+            sentAttempts.record(attempt);
+        }
+        return sent;
+    }
+
+    /**
+     * Puts a failed notification on the retry queue, if the {@code queue} store is used and it has attempts left.
+     *
+     * @param shipment      The shipment whose notification failed.
+     * @param correlationId The correlation ID of the request.
+     * @param replyFormat   The wire format of the response.
+     * @param replyTo       The destination of the response, carried to the retry as its reply-to; may be null.
+     * @param hops          The hops of the request, carried to the retry.
+     * @param attempts      The attempts made so far.
+     * @return true if the retry was queued and will send the response; false if the failure is final.
+     */
+    public boolean deferToQueue(ShipmentMessageDTO shipment, String correlationId, WireFormat replyFormat,
+                                Destination replyTo, HopTimestamps hops, int attempts) {
+        if (!durable) {
+            return false;
+        }
+        if (attempts >= maxAttempts) {
+            exhaustedAttempts.record(attempts);
+            return false;
+        }
+        long delayMs = delayMs(attempts);
+        try {
+            EncodedPayload payload = EncodedPayload.binary(ShipmentBinaryCodec.encodeRequest(shipment));
+            jmsTemplate.execute(session -> {
+                MessageProducer producer = session.createProducer(session.createQueue(retryQueueName));
+                try {
+                    Message message = payload.createMessage(session);
+                    message.setJMSCorrelationID(correlationId);
+                    message.setJMSReplyTo(replyTo);
+                    message.setIntProperty(ATTEMPTS_PROPERTY, attempts);
+                    message.setStringProperty(REPLY_FORMAT_PROPERTY, replyFormat.name());
+                    hops.writeTo(message);
+                    producer.setDeliveryDelay(delayMs);
+                    producer.send(message);
+                } finally {
+                    producer.close();
+                }
+                return null;
+            }, false);
+        } catch (JmsException e) {
+            LOG.error("Error queueing notification retry for orderId: {} with Correlation ID: {}. Error: {}",
+                    shipment.orderId(), correlationId, e.getMessage());
+            exhaustedAttempts.record(attempts);
+            return false;
+        }
+        scheduled.increment();
+        LOG.info("Queued notification retry {} of orderId: {} in {} ms", attempts + 1, shipment.orderId(), delayMs);
+        return true;
+    }
+
+    /**
+     * @param attempts The attempts made so far.
+     * @return The delay before the next attempt, in milliseconds.
+     */
+    long delayMs(int attempts) {
+        double cap = Math.min(maxDelayMs, initialDelayMs * Math.pow(multiplier, attempts - 1));
+        return Math.round(cap * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * Lets running retries finish before the context shuts down; retries still on the timing wheel fail.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        retryExecutor.shutdown();
+        if (!retryExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            LOG.warn("Notification retry executor did not finish in time, {} retries dropped", retryExecutor.shutdownNow().size());
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.jlpereira.mq_shipment_processor.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service for simulating email notifications.
@@ -15,9 +18,22 @@ public class NotificationService {
     protected static final Logger LOG = LoggerFactory.getLogger(NotificationService.class);
 
     private final Random random = new Random();
+    private final Timer emailTimer;
 
     /**
-     * Simulates sending an email to a customer.
+     * Constructor for initializing the notification service.
+     *
+     * @param meterRegistry The registry for the email stage timer.
+     */
+    public NotificationService(MeterRegistry meterRegistry) {
+        this.emailTimer = Timer.builder(ShipmentService.STAGE_TIMER)
+                .description("Time spent in each stage of a shipment request")
+                .tag("stage", "email")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Simulates sending an email to a customer, timed as the {@code email} stage.
      *
      * @param to      The recipient's email address.
      * @param subject The subject of the email.
@@ -25,6 +41,15 @@ public class NotificationService {
      * @return true if the email was sent successfully, false if it failed (simulated).
      */
     public boolean sendEmail(String to, String subject, String body) {
+        long start = System.nanoTime();
+        try {
+            return send(to, subject, body);
+        } finally {
+            emailTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean send(String to, String subject, String body) {
         LOG.info("Sending email with shipment details to: {}", to);
         LOG.info("Subject: {}", subject);
         LOG.info("Body: \n {}", body);
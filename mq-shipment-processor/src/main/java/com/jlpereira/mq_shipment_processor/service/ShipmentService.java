@@ -1,16 +1,36 @@
 package com.jlpereira.mq_shipment_processor.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jlpereira.mq_shipment_commons.codec.EncodedPayload;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentBinaryCodec;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentJsonCodec;
+import com.jlpereira.mq_shipment_commons.codec.WireFormat;
+import com.jlpereira.mq_shipment_commons.jms.HopTimestamps;
+import com.jlpereira.mq_shipment_processor.idempotency.IdempotencyCache;
 import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
 import com.jlpereira.mq_shipment_processor.model.dto.ShipmentResponseDTO;
+import com.jlpereira.mq_shipment_processor.template.NotificationTemplate;
+import com.jlpereira.mq_shipment_processor.template.NotificationTemplateCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
 import jakarta.jms.Queue;
-import jakarta.jms.TextMessage;
+import jakarta.jms.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Service for processing shipment messages and sending notifications.
  */
@@ -19,41 +39,258 @@ public class ShipmentService {
 
     protected static final Logger LOGGER = LoggerFactory.getLogger(ShipmentService.class);
 
+    /**
+     * Name of the timer recording each stage of a shipment request, tagged by {@code stage}.
+     */
+    public static final String STAGE_TIMER = "shipment.stage";
+
+    private static final String SHIPMENT_CONFIRMATION_TEMPLATE = "shipment-confirmation";
+    private static final String SHIPMENT_DIGEST_TEMPLATE = "shipment-digest";
+
     private final NotificationService notificationService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final NotificationCoalescer notificationCoalescer;
+    private final NotificationRetrier notificationRetrier;
+    private final NotificationTemplateCache templateCache;
+    private final IdempotencyCache idempotencyCache;
     private final JmsTemplate jmsTemplate;
     private final Queue responseQueue;
-    private final ObjectMapper objectMapper;
+    private final ShipmentJsonCodec jsonCodec;
+    private final Timer respondTimer;
+    private final MeterRegistry meterRegistry;
+    private final String requestQueueName;
+    private final Map<String, Timer> dwellTimers = new ConcurrentHashMap<>();
+    private final Counter successOutcomes;
+    private final Counter failedOutcomes;
 
     /**
      * Constructor to initialize the shipment service.
      *
-     * @param notificationService The service for sending notifications.
-     * @param jmsTemplate         The JMS template for interacting with the message queue.
-     * @param responseQueue       The queue for sending response messages.
-     * @param objectMapper        The object mapper for serializing JSON.
+     * @param notificationService    The service for sending notifications.
+     * @param notificationDispatcher The stage that runs notifications off the consumer thread.
+     * @param notificationCoalescer  The stage that combines a customer's notifications into digests.
+     * @param notificationRetrier    The stage that retries failed notifications.
+     * @param templateCache          The cache of compiled notification templates.
+     * @param idempotencyCache       The responses of processed requests, replayed for duplicates.
+     * @param jmsTemplate            The JMS template for interacting with the message queue.
+     * @param responseQueue          The queue for response messages to requests without a reply-to destination.
+     * @param jsonCodec              The codec for serializing JSON responses.
+     * @param meterRegistry          The registry for the respond stage timer, outcome counters and request queue dwell timer.
+     * @param requestQueueName       The name of the request queue, the tag of its dwell timer.
+     *                               Other request queues, such as the express lane, get their own dwell timers.
      */
-    public ShipmentService(NotificationService notificationService, JmsTemplate jmsTemplate, Queue responseQueue, ObjectMapper objectMapper) {
+    public ShipmentService(NotificationService notificationService, NotificationDispatcher notificationDispatcher,
+                           NotificationCoalescer notificationCoalescer, NotificationRetrier notificationRetrier,
+                           NotificationTemplateCache templateCache,
+                           IdempotencyCache idempotencyCache, JmsTemplate jmsTemplate, Queue responseQueue,
+                           ShipmentJsonCodec jsonCodec, MeterRegistry meterRegistry,
+                           @Value("${ibm.mq.queue.request}") String requestQueueName) {
         this.notificationService = notificationService;
+        this.notificationDispatcher = notificationDispatcher;
+        this.notificationCoalescer = notificationCoalescer;
+        this.notificationRetrier = notificationRetrier;
+        this.templateCache = templateCache;
+        this.idempotencyCache = idempotencyCache;
         this.jmsTemplate = jmsTemplate;
         this.responseQueue = responseQueue;
-        this.objectMapper = objectMapper;
+        this.jsonCodec = jsonCodec;
+        this.respondTimer = Timer.builder(STAGE_TIMER)
+                .description("Time spent in each stage of a shipment request")
+                .tag("stage", "respond")
+                .register(meterRegistry);
+        this.successOutcomes = outcomeCounter(meterRegistry, "SUCCESS");
+        this.failedOutcomes = outcomeCounter(meterRegistry, "FAILED");
+        this.meterRegistry = meterRegistry;
+        this.requestQueueName = requestQueueName;
+        this.dwellTimers.put(requestQueueName, HopTimestamps.dwellTimer(meterRegistry, requestQueueName));
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("shipment.outcome")
+                .description("Processed shipments by outcome; replayed duplicates are not counted")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records how long a request message waited in the request queue and stamps its receipt.
+     *
+     * @param request The request message, just received.
+     * @return The hops of the request, with the processor's receive time.
+     * @throws JMSException If the message properties cannot be read.
+     */
+    public HopTimestamps receive(Message request) throws JMSException {
+        return receive(request, requestQueueName);
+    }
+
+    /**
+     * Records how long a request message waited in the request queue it was received from and stamps its receipt.
+     *
+     * @param request The request message, just received.
+     * @param queue   The name of the request queue, the tag of the dwell timer.
+     * @return The hops of the request, with the processor's receive time.
+     * @throws JMSException If the message properties cannot be read.
+     */
+    public HopTimestamps receive(Message request, String queue) throws JMSException {
+        long receivedAt = System.currentTimeMillis();
+        Timer dwellTimer = dwellTimers.computeIfAbsent(queue, name -> HopTimestamps.dwellTimer(meterRegistry, name));
+        HopTimestamps.recordDwell(dwellTimer, request, receivedAt);
+        return HopTimestamps.read(request).receivedByProcessor(receivedAt);
+    }
+
+    /**
+     * Returns where the response to a request goes: the request's {@code JMSReplyTo}, so each sender
+     * instance can receive its replies on its own queue, or the response queue for senders that do not set one.
+     *
+     * @param request The request message.
+     * @return The destination of the response.
+     * @throws JMSException If the reply-to destination cannot be read.
+     */
+    public Destination replyDestination(Message request) throws JMSException {
+        Destination replyTo = request.getJMSReplyTo();
+        return replyTo != null ? replyTo : responseQueue;
     }
 
     /**
      * Processes the shipment message and sends a notification to the customer.
-     * Responds to the queue with success or failure of the notification.
+     * Responds to the queue with success or failure of the notification once the notification completes,
+     * which may be on a notification thread rather than the calling thread.
+     * With coalescing enabled, the notification is sent as part of the customer's next digest.
+     * A failed notification is retried as a single notification, with the response sent once it is sent or
+     * out of attempts; retries from the retry queue are answered by {@link #retryNotification}.
+     * A request that was already processed is answered with the cached response and no notification.
      *
      * @param shipmentMessageDTO The shipment details.
      * @param correlationId      The correlation ID for tracking the response.
+     * @param replyFormat        The wire format of the response, the same as the request's.
+     * @param replyTo            The destination of the response, from {@link #replyDestination}.
+     * @param hops               The hops of the request, stamped on the response with the notification and reply times.
+     * @return A future completed with the response once it has been sent, or with null if the response was
+     * left to a retry from the retry queue.
+     */
+    public CompletableFuture<ShipmentResponseDTO> processShipment(ShipmentMessageDTO shipmentMessageDTO, String correlationId,
+                                                                  WireFormat replyFormat, Destination replyTo,
+                                                                  HopTimestamps hops) {
+        ShipmentResponseDTO cached = idempotencyCache.get(correlationId, shipmentMessageDTO);
+        if (cached != null) {
+            LOGGER.info("Replaying response for duplicate orderId: {} with Correlation ID: {}", shipmentMessageDTO.orderId(), correlationId);
+            sendResponseMessage(correlationId, cached, replyFormat, replyTo, hops);
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<Boolean> firstAttempt = notificationCoalescer.isEnabled()
+                ? notificationCoalescer.submit(shipmentMessageDTO, this::sendDigest)
+                : notificationDispatcher.dispatch(() -> sendNotification(shipmentMessageDTO));
+        CompletableFuture<ShipmentResponseDTO> result = notificationRetrier
+                .send(firstAttempt, () -> sendNotification(shipmentMessageDTO))
+                .thenApply(emailSent -> {
+                    if (!emailSent && notificationRetrier.deferToQueue(shipmentMessageDTO, correlationId, replyFormat,
+                            replyTo, hops, 1)) {
+                        return null;
+                    }
+                    return respond(shipmentMessageDTO, correlationId, replyFormat, replyTo, hops, emailSent);
+                });
+        result.whenComplete((responseDTO, error) -> {
+            if (error != null) {
+                LOGGER.error("Error processing shipment for orderId: {} with Correlation ID: {}",
+                        shipmentMessageDTO.orderId(), correlationId, error);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs a notification retry consumed from the retry queue, and sends the response once the notification
+     * is sent or out of attempts.
+     *
+     * @param shipmentMessageDTO The shipment details.
+     * @param correlationId      The correlation ID of the request.
+     * @param replyFormat        The wire format of the response.
+     * @param replyTo            The destination of the response.
+     * @param hops               The hops of the request.
+     * @param attempt            The number of this attempt, counting the first.
+     */
+    public void retryNotification(ShipmentMessageDTO shipmentMessageDTO, String correlationId, WireFormat replyFormat,
+                                  Destination replyTo, HopTimestamps hops, int attempt) {
+        boolean emailSent = notificationRetrier.retryNow(() -> sendNotification(shipmentMessageDTO), attempt);
+        if (!emailSent && notificationRetrier.deferToQueue(shipmentMessageDTO, correlationId, replyFormat, replyTo,
+                hops, attempt)) {
+            return;
+        }
+        respond(shipmentMessageDTO, correlationId, replyFormat, replyTo, hops, emailSent);
+    }
+
+    private ShipmentResponseDTO respond(ShipmentMessageDTO shipmentMessageDTO, String correlationId, WireFormat replyFormat,
+                                        Destination replyTo, HopTimestamps hops, boolean emailSent) {
+        HopTimestamps notified = hops.notified(System.currentTimeMillis());
+        ShipmentResponseDTO responseDTO = toResponse(shipmentMessageDTO, emailSent);
+        idempotencyCache.put(correlationId, shipmentMessageDTO, responseDTO);
+        sendResponseMessage(correlationId, responseDTO, replyFormat, replyTo, notified);
+        return responseDTO;
+    }
+
+    /**
+     * Sends a notification to the customer and builds the response, without sending it.
+     * A failed notification is not retried, since the caller waits for the response.
+     * A request that was already processed returns the cached response and sends no notification.
+     *
+     * @param shipmentMessageDTO The shipment details.
+     * @param correlationId      The correlation ID of the request.
+     * @return The response describing the outcome of the notification.
      */
-    public void processShipment(ShipmentMessageDTO shipmentMessageDTO, String correlationId) {
-        boolean emailSent = sendNotification(shipmentMessageDTO);
-        ShipmentResponseDTO responseDTO = new ShipmentResponseDTO(
+    public ShipmentResponseDTO handleShipment(ShipmentMessageDTO shipmentMessageDTO, String correlationId) {
+        ShipmentResponseDTO cached = idempotencyCache.get(correlationId, shipmentMessageDTO);
+        if (cached != null) {
+            LOGGER.info("Replaying response for duplicate orderId: {} with Correlation ID: {}", shipmentMessageDTO.orderId(), correlationId);
+            return cached;
+        }
+        ShipmentResponseDTO responseDTO = toResponse(shipmentMessageDTO, sendNotification(shipmentMessageDTO));
+        idempotencyCache.put(correlationId, shipmentMessageDTO, responseDTO);
+        return responseDTO;
+    }
+
+    private ShipmentResponseDTO toResponse(ShipmentMessageDTO shipmentMessageDTO, boolean emailSent) {
+        (emailSent ? successOutcomes : failedOutcomes).increment();
+        return new ShipmentResponseDTO(
                 shipmentMessageDTO.orderId(),
                 emailSent ? "SUCCESS" : "FAILED",
                 emailSent ? "Email sent successfully" : "Email sending failed"
         );
-        sendResponseMessage(correlationId, responseDTO);
+    }
+
+    /**
+     * Creates the response message for a shipment on the given session.
+     *
+     * @param session       The session the message is created on.
+     * @param correlationId The correlation ID for the response.
+     * @param responseDTO   The response DTO.
+     * @param format        The wire format of the response.
+     * @param hops          The hops of the request, stamped on the response with the current time as reply time.
+     * @return The response message.
+     * @throws JMSException            If the message cannot be created.
+     * @throws JsonProcessingException If the response cannot be serialized.
+     */
+    public Message createResponseMessage(Session session, String correlationId, ShipmentResponseDTO responseDTO,
+                                         WireFormat format, HopTimestamps hops) throws JMSException, JsonProcessingException {
+        Message response = encodeResponse(responseDTO, format).createMessage(session);
+        response.setJMSCorrelationID(correlationId);
+        hops.replied(System.currentTimeMillis()).writeTo(response);
+        return response;
+    }
+
+    /**
+     * Encodes a response in the given wire format.
+     *
+     * @param responseDTO The response DTO.
+     * @param format      The wire format.
+     * @return The encoded response.
+     * @throws JsonProcessingException If the response cannot be serialized to JSON.
+     */
+    private EncodedPayload encodeResponse(ShipmentResponseDTO responseDTO, WireFormat format) throws JsonProcessingException {
+        if (format == WireFormat.BINARY) {
+            return EncodedPayload.binary(ShipmentBinaryCodec.encodeResponse(responseDTO));
+        }
+        return EncodedPayload.json(jsonCodec.writeResponse(responseDTO));
     }
 
     /**
@@ -63,43 +300,59 @@ public class ShipmentService {
      * @return true if the email was sent successfully, false otherwise.
      */
     private boolean sendNotification(ShipmentMessageDTO shipmentMessageDTO) {
-        String emailBody = "Dear customer,\n\n" +
-                "Your order with ID: " +
-                shipmentMessageDTO.orderId() +
-                " has been shipped.\n" +
-                "Tracking Number: " +
-                shipmentMessageDTO.trackingNumber() +
-                "\n" +
-                "Shipping Date: " +
-                shipmentMessageDTO.shippingDate() +
-                "\n\n" +
-                "Thank you for shopping with us.\n\n" +
-                "Best regards,\n" +
-                "The Shipping Team";
-
-        return notificationService.sendEmail(shipmentMessageDTO.customerEmail(), "Shipment Confirmation", emailBody);
+        NotificationTemplate template = templateCache.get(SHIPMENT_CONFIRMATION_TEMPLATE,
+                shipmentMessageDTO.brand(), shipmentMessageDTO.locale());
+
+        return notificationService.sendEmail(shipmentMessageDTO.customerEmail(),
+                template.subject().render(shipmentMessageDTO), template.body().render(shipmentMessageDTO));
+    }
+
+    /**
+     * Sends one email for several shipments of the same customer, in the language and brand of the first one.
+     *
+     * @param shipments The shipments of the digest.
+     * @return true if the email was sent successfully, false otherwise.
+     */
+    private boolean sendDigest(List<ShipmentMessageDTO> shipments) {
+        if (shipments.size() == 1) {
+            return sendNotification(shipments.get(0));
+        }
+        ShipmentMessageDTO first = shipments.get(0);
+        NotificationTemplate template = templateCache.get(SHIPMENT_DIGEST_TEMPLATE, first.brand(), first.locale());
+
+        return notificationService.sendEmail(first.customerEmail(),
+                template.subject().render(shipments), template.body().render(shipments));
     }
 
     /**
-     * Sends a response message to the queue indicating the result of the notification.
+     * Sends a response message indicating the result of the notification to the request's reply-to
+     * destination, or the response queue if it has none, timed as the {@code respond} stage.
      *
      * @param correlationId The correlation ID for the response.
      * @param responseDTO   The response DTO.
+     * @param format        The wire format of the response.
+     * @param replyTo       The destination of the response, or null for the response queue.
+     * @param hops          The hops of the request, stamped on the response with the reply time.
      */
-    private void sendResponseMessage(String correlationId, ShipmentResponseDTO responseDTO) {
+    private void sendResponseMessage(String correlationId, ShipmentResponseDTO responseDTO, WireFormat format,
+                                     Destination replyTo, HopTimestamps hops) {
+        long start = System.nanoTime();
         try {
-            String responseJson = objectMapper.writeValueAsString(responseDTO);
+            EncodedPayload payload = encodeResponse(responseDTO, format);
 
-            jmsTemplate.send(responseQueue, session -> {
-                TextMessage response = session.createTextMessage(responseJson);
+            jmsTemplate.send(replyTo != null ? replyTo : responseQueue, session -> {
+                Message response = payload.createMessage(session);
                 response.setJMSCorrelationID(correlationId);
+                hops.replied(System.currentTimeMillis()).writeTo(response);
                 return response;
             });
 
-            LOGGER.info("Sent response message: {} with Correlation ID: {}", responseJson, correlationId);
+            LOGGER.info("Sent {} response message: {} with Correlation ID: {}", format, responseDTO, correlationId);
 
         } catch (JsonProcessingException e) {
             LOGGER.error("Error sending response for orderId: {}", responseDTO.orderId(), e);
+        } finally {
+            respondTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
 }
@@ -0,0 +1,167 @@
+package com.jlpereira.mq_shipment_processor.template;
+
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A template parsed once into a list of literal and variable segments.
+ * <p>
+ * Rendering walks the segments and appends each one into a per-thread buffer that is reused across
+ * renders, so the only string created is the rendered result.
+ * <p>
+ * A section {@code {{#shipments}}...{{/shipments}}} is repeated once per shipment when the template is
+ * rendered for several shipments; variables outside it take the values of the first shipment.
+ */
+public final class CompiledTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    private static final String SECTION_OPEN = "#shipments";
+    private static final String SECTION_CLOSE = "/shipments";
+    private static final int MAX_RETAINED_BUFFER = 16 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    private final Object[] segments;
+
+    private CompiledTemplate(Object[] segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Compiles a template. Placeholders are written {@code {{name}}}, see {@link TemplateVariable}.
+     *
+     * @param source The template text.
+     * @return The compiled template.
+     * @throws IllegalArgumentException If a placeholder is unknown or not closed, or a section is not closed.
+     */
+    public static CompiledTemplate compile(String source) {
+        return compile(source, 0, source.length(), true);
+    }
+
+    private static CompiledTemplate compile(String source, int start, int end, boolean sectionsAllowed) {
+        List<Object> segments = new ArrayList<>();
+        int position = start;
+        while (position < end) {
+            int open = source.indexOf(OPEN, position);
+            if (open < 0 || open >= end) {
+                segments.add(source.substring(position, end));
+                break;
+            }
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0 || close >= end) {
+                throw new IllegalArgumentException("Unclosed placeholder at index " + open);
+            }
+            if (open > position) {
+                segments.add(source.substring(position, open));
+            }
+            String name = source.substring(open + OPEN.length(), close).trim();
+            position = close + CLOSE.length();
+
+            if (name.equals(SECTION_OPEN) && sectionsAllowed) {
+                int sectionEnd = findSectionClose(source, position, end);
+                if (sectionEnd < 0) {
+                    throw new IllegalArgumentException("Unclosed section at index " + open);
+                }
+                segments.add(new Section(compile(source, skipNewline(source, position), sectionEnd, false)));
+                position = skipNewline(source, source.indexOf(CLOSE, sectionEnd) + CLOSE.length());
+            } else {
+                segments.add(TemplateVariable.forPlaceholder(name));
+            }
+        }
+        return new CompiledTemplate(segments.toArray());
+    }
+
+    private static int findSectionClose(String source, int from, int end) {
+        int open = source.indexOf(OPEN, from);
+        while (open >= 0 && open < end) {
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                return -1;
+            }
+            if (source.substring(open + OPEN.length(), close).trim().equals(SECTION_CLOSE)) {
+                return open;
+            }
+            open = source.indexOf(OPEN, close + CLOSE.length());
+        }
+        return -1;
+    }
+
+    /**
+     * Section tags on their own line do not leave an empty line behind.
+     */
+    private static int skipNewline(String source, int position) {
+        return position < source.length() && source.charAt(position) == '\n' ? position + 1 : position;
+    }
+
+    /**
+     * Renders the template for a shipment.
+     *
+     * @param shipment The shipment details.
+     * @return The rendered text.
+     */
+    public String render(ShipmentMessageDTO shipment) {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        renderTo(buffer, shipment);
+        return release(buffer);
+    }
+
+    /**
+     * Renders the template for several shipments, repeating the shipments section once for each.
+     *
+     * @param shipments The shipments, at least one.
+     * @return The rendered text.
+     */
+    public String render(List<ShipmentMessageDTO> shipments) {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        renderTo(buffer, shipments.get(0), shipments);
+        return release(buffer);
+    }
+
+    /**
+     * Appends the rendered template to a caller-owned buffer.
+     *
+     * @param buffer   The buffer to append to.
+     * @param shipment The shipment details.
+     */
+    public void renderTo(StringBuilder buffer, ShipmentMessageDTO shipment) {
+        renderTo(buffer, shipment, null);
+    }
+
+    private void renderTo(StringBuilder buffer, ShipmentMessageDTO first, List<ShipmentMessageDTO> shipments) {
+        for (Object segment : segments) {
+            if (segment instanceof TemplateVariable variable) {
+                variable.appendTo(buffer, first);
+            } else if (segment instanceof Section section) {
+                if (shipments == null) {
+                    section.item.renderTo(buffer, first);
+                } else {
+                    for (ShipmentMessageDTO shipment : shipments) {
+                        section.item.renderTo(buffer, shipment);
+                    }
+                }
+            } else {
+                buffer.append((String) segment);
+            }
+        }
+    }
+
+    private static String release(StringBuilder buffer) {
+        String rendered = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            BUFFER.remove();
+        }
+        return rendered;
+    }
+
+    /**
+     * A part of the template repeated for each shipment.
+     *
+     * @param item The compiled content of the section.
+     */
+    private record Section(CompiledTemplate item) {
+    }
+}
@@ -0,0 +1,37 @@
+package com.jlpereira.mq_shipment_processor.template;
+
+/**
+ * A compiled notification: its subject and its body.
+ *
+ * @param subject The compiled subject line.
+ * @param body    The compiled body.
+ */
+public record NotificationTemplate(
+        CompiledTemplate subject,
+        CompiledTemplate body
+) {
+
+    private static final String SUBJECT_PREFIX = "Subject:";
+
+    /**
+     * Parses a template file. The first line is {@code Subject: ...}, followed by an empty line and the body.
+     *
+     * @param source The template file content.
+     * @return The compiled notification template.
+     * @throws IllegalArgumentException If the subject line is missing or a placeholder is invalid.
+     */
+    public static NotificationTemplate parse(String source) {
+        String normalized = source.replace("\r\n", "\n");
+        int subjectEnd = normalized.indexOf('\n');
+        if (!normalized.startsWith(SUBJECT_PREFIX) || subjectEnd < 0) {
+            throw new IllegalArgumentException("Template must start with a '" + SUBJECT_PREFIX + "' line");
+        }
+        String subject = normalized.substring(SUBJECT_PREFIX.length(), subjectEnd).trim();
+        int bodyStart = normalized.startsWith("\n", subjectEnd + 1) ? subjectEnd + 2 : subjectEnd + 1;
+        String body = normalized.substring(bodyStart);
+        if (body.endsWith("\n")) {
+            body = body.substring(0, body.length() - 1);
+        }
+        return new NotificationTemplate(CompiledTemplate.compile(subject), CompiledTemplate.compile(body));
+    }
+}
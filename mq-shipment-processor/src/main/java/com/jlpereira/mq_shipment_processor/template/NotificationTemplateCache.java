@@ -0,0 +1,252 @@
+package com.jlpereira.mq_shipment_processor.template;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves, compiles and caches notification templates per name, brand and locale.
+ * <p>
+ * A template named {@code name} is looked up as {@code name_brand_language_COUNTRY.txt},
+ * {@code name_brand_language.txt}, {@code name_brand.txt}, {@code name_language_COUNTRY.txt},
+ * {@code name_language.txt} and finally {@code name.txt}, first in the optional templates directory and
+ * then under {@code templates/notification/} on the classpath. Compiled templates are kept in an LRU cache.
+ * Entries are re-resolved at most once per reload interval, and recompiled if a file in the templates
+ * directory was added, removed or modified.
+ */
+@Component
+public class NotificationTemplateCache {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(NotificationTemplateCache.class);
+
+    private static final String CLASSPATH_PREFIX = "templates/notification/";
+    private static final String EXTENSION = ".txt";
+
+    private final Path templatesDirectory;
+    private final long reloadCheckNanos;
+    private final Map<String, CachedTemplate> cache;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter reloads;
+    private final Counter evictions;
+
+    /**
+     * Constructor for initializing the template cache.
+     *
+     * @param meterRegistry      The registry for cache metrics.
+     * @param templatesDirectory Optional directory whose templates override the classpath ones and are hot reloaded.
+     * @param maxSize            The maximum number of compiled templates kept.
+     * @param reloadCheckMs      How often a cached template is checked for changes, in milliseconds.
+     */
+    public NotificationTemplateCache(MeterRegistry meterRegistry,
+                                     @Value("${shipment.templates.directory:}") String templatesDirectory,
+                                     @Value("${shipment.templates.cache-size:64}") int maxSize,
+                                     @Value("${shipment.templates.reload-check-ms:10000}") long reloadCheckMs) {
+        this.templatesDirectory = StringUtils.hasText(templatesDirectory) ? Path.of(templatesDirectory) : null;
+        this.reloadCheckNanos = TimeUnit.MILLISECONDS.toNanos(reloadCheckMs);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedTemplate> eldest) {
+                boolean evict = size() > maxSize;
+                if (evict) {
+                    evictions.increment();
+                }
+                return evict;
+            }
+        };
+        this.hits = cacheCounter(meterRegistry, "hit");
+        this.misses = cacheCounter(meterRegistry, "miss");
+        this.reloads = Counter.builder("shipment.template.reloads")
+                .description("Templates recompiled after their source changed")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("shipment.template.evictions")
+                .description("Compiled templates evicted from the cache")
+                .register(meterRegistry);
+        Gauge.builder("shipment.template.cache.size", this, NotificationTemplateCache::size)
+                .description("Compiled templates in the cache")
+                .register(meterRegistry);
+    }
+
+    private static Counter cacheCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("shipment.template.cache")
+                .description("Template cache lookups")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the compiled template for a name, brand and locale.
+     *
+     * @param name   The template name, e.g. {@code shipment-confirmation}.
+     * @param brand  The brand, or null.
+     * @param locale The locale, e.g. {@code es} or {@code es-MX}, or null.
+     * @return The compiled template.
+     * @throws IllegalStateException If no template exists for the name.
+     */
+    public NotificationTemplate get(String name, String brand, String locale) {
+        String key = name + '|' + brand + '|' + locale;
+        CachedTemplate cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null && !cached.needsReload()) {
+            hits.increment();
+            return cached.template;
+        }
+
+        CachedTemplate loaded;
+        if (cached == null) {
+            misses.increment();
+            loaded = load(name, brand, locale);
+        } else {
+            try {
+                loaded = load(name, brand, locale);
+                reloads.increment();
+                LOG.info("Reloaded template {} from {}", key, loaded.source.location());
+            } catch (RuntimeException e) {
+                LOG.error("Keeping previous template {}, reload failed. Error: {}", key, e.getMessage());
+                return cached.template;
+            }
+        }
+        synchronized (cache) {
+            cache.put(key, loaded);
+        }
+        return loaded.template;
+    }
+
+    private int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private CachedTemplate load(String name, String brand, String locale) {
+        TemplateSource source = resolve(name, brand, locale);
+        String content = source.read();
+        return new CachedTemplate(name, brand, locale, source, NotificationTemplate.parse(content));
+    }
+
+    private TemplateSource resolve(String name, String brand, String locale) {
+        for (String candidate : candidateNames(name, brand, locale)) {
+            if (templatesDirectory != null) {
+                Path file = templatesDirectory.resolve(candidate + EXTENSION);
+                if (Files.isRegularFile(file)) {
+                    return TemplateSource.ofFile(file);
+                }
+            }
+            String resource = CLASSPATH_PREFIX + candidate + EXTENSION;
+            if (getClass().getClassLoader().getResource(resource) != null) {
+                return TemplateSource.ofClasspath(resource);
+            }
+        }
+        throw new IllegalStateException("No notification template found for " + name);
+    }
+
+    private static List<String> candidateNames(String name, String brand, String locale) {
+        List<String> localeSuffixes = new ArrayList<>(3);
+        if (StringUtils.hasText(locale)) {
+            String normalized = locale.replace('-', '_');
+            localeSuffixes.add("_" + normalized);
+            int separator = normalized.indexOf('_');
+            if (separator > 0) {
+                localeSuffixes.add("_" + normalized.substring(0, separator));
+            }
+        }
+        localeSuffixes.add("");
+
+        List<String> candidates = new ArrayList<>(6);
+        if (StringUtils.hasText(brand)) {
+            for (String localeSuffix : localeSuffixes) {
+                candidates.add(name + "_" + brand + localeSuffix);
+            }
+        }
+        for (String localeSuffix : localeSuffixes) {
+            candidates.add(name + localeSuffix);
+        }
+        return candidates;
+    }
+
+    /**
+     * Where a template was loaded from, and the modification time it had then.
+     *
+     * @param location     The file path or classpath resource.
+     * @param file         The file, or null for a classpath resource.
+     * @param lastModified The modification time of the file, or 0.
+     */
+    private record TemplateSource(String location, Path file, long lastModified) {
+
+        static TemplateSource ofFile(Path file) {
+            try {
+                return new TemplateSource(file.toString(), file, Files.getLastModifiedTime(file).toMillis());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        static TemplateSource ofClasspath(String resource) {
+            return new TemplateSource(resource, null, 0);
+        }
+
+        String read() {
+            try (InputStream input = file != null
+                    ? Files.newInputStream(file)
+                    : TemplateSource.class.getClassLoader().getResourceAsStream(location)) {
+                return new String(Objects.requireNonNull(input, location).readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading template " + location, e);
+            }
+        }
+    }
+
+    private final class CachedTemplate {
+        private final String name;
+        private final String brand;
+        private final String locale;
+        private final TemplateSource source;
+        private final NotificationTemplate template;
+        private volatile long nextCheckNanos;
+
+        private CachedTemplate(String name, String brand, String locale, TemplateSource source, NotificationTemplate template) {
+            this.name = name;
+            this.brand = brand;
+            this.locale = locale;
+            this.source = source;
+            this.template = template;
+            this.nextCheckNanos = System.nanoTime() + reloadCheckNanos;
+        }
+
+        /**
+         * Re-resolves the template once per reload interval; without a templates directory nothing can change.
+         */
+        private boolean needsReload() {
+            if (templatesDirectory == null || System.nanoTime() - nextCheckNanos < 0) {
+                return false;
+            }
+            nextCheckNanos = System.nanoTime() + reloadCheckNanos;
+            try {
+                return !resolve(name, brand, locale).equals(source);
+            } catch (RuntimeException e) {
+                LOG.warn("Keeping cached template {}, its source could not be checked. Error: {}", source.location(), e.getMessage());
+                return false;
+            }
+        }
+    }
+}
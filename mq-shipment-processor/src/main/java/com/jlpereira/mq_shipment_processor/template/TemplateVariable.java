@@ -0,0 +1,91 @@
+package com.jlpereira.mq_shipment_processor.template;
+
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+
+import java.time.LocalDate;
+
+/**
+ * Placeholders available in notification templates, written as {@code {{name}}}.
+ * Each variable appends its value straight into the render buffer.
+ */
+public enum TemplateVariable {
+
+    ORDER_ID("orderId") {
+        @Override
+        void appendTo(StringBuilder buffer, ShipmentMessageDTO shipment) {
+            buffer.append(shipment.orderId());
+        }
+    },
+    CUSTOMER_EMAIL("customerEmail") {
+        @Override
+        void appendTo(StringBuilder buffer, ShipmentMessageDTO shipment) {
+            buffer.append(shipment.customerEmail());
+        }
+    },
+    TRACKING_NUMBER("trackingNumber") {
+        @Override
+        void appendTo(StringBuilder buffer, ShipmentMessageDTO shipment) {
+            buffer.append(shipment.trackingNumber());
+        }
+    },
+    SHIPPING_DATE("shippingDate") {
+        @Override
+        void appendTo(StringBuilder buffer, ShipmentMessageDTO shipment) {
+            appendIsoDate(buffer, shipment.shippingDate());
+        }
+    };
+
+    private final String placeholder;
+
+    TemplateVariable(String placeholder) {
+        this.placeholder = placeholder;
+    }
+
+    /**
+     * Appends the value of this variable for the given shipment.
+     *
+     * @param buffer   The render buffer.
+     * @param shipment The shipment being rendered.
+     */
+    abstract void appendTo(StringBuilder buffer, ShipmentMessageDTO shipment);
+
+    /**
+     * Looks up a variable by its placeholder name.
+     *
+     * @param placeholder The name between the braces.
+     * @return The variable.
+     * @throws IllegalArgumentException If no variable has that name.
+     */
+    static TemplateVariable forPlaceholder(String placeholder) {
+        for (TemplateVariable variable : values()) {
+            if (variable.placeholder.equals(placeholder)) {
+                return variable;
+            }
+        }
+        throw new IllegalArgumentException("Unknown template variable: " + placeholder);
+    }
+
+    /**
+     * Appends a date as yyyy-MM-dd, the same text as {@link LocalDate#toString()} for four-digit years,
+     * without creating an intermediate string.
+     */
+    private static void appendIsoDate(StringBuilder buffer, LocalDate date) {
+        if (date == null) {
+            buffer.append("null");
+            return;
+        }
+        int year = date.getYear();
+        if (year < 1000 || year > 9999) {
+            buffer.append(date);
+            return;
+        }
+        buffer.append(year).append('-');
+        appendTwoDigits(buffer, date.getMonthValue());
+        buffer.append('-');
+        appendTwoDigits(buffer, date.getDayOfMonth());
+    }
+
+    private static void appendTwoDigits(StringBuilder buffer, int value) {
+        buffer.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
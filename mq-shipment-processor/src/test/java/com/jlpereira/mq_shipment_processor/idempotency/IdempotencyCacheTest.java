@@ -0,0 +1,124 @@
+package com.jlpereira.mq_shipment_processor.idempotency;
+
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentResponseDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdempotencyCacheTest {
+
+	private final ShipmentMessageDTO shipment = new ShipmentMessageDTO("ORD-1", "customer@example.com", "TRK-1",
+			LocalDate.of(2024, 9, 17), null, null);
+	private final ShipmentResponseDTO response = new ShipmentResponseDTO("ORD-1", "SUCCESS", "Email sent successfully");
+
+	@Test
+	void replaysResponseByCorrelationIdOrShipment() {
+		IdempotencyCache cache = new IdempotencyCache(new SimpleMeterRegistry(), true, 100, 60_000, "", 1);
+
+		assertNull(cache.get("cid-1", shipment));
+		cache.put("cid-1", shipment, response);
+
+		assertEquals(response, cache.get("cid-1", shipment));
+		assertEquals(response, cache.get("cid-2", shipment));
+	}
+
+	@Test
+	void forgetsExpiredResponses() throws InterruptedException {
+		IdempotencyCache cache = new IdempotencyCache(new SimpleMeterRegistry(), true, 100, 1, "", 1);
+
+		cache.put("cid-1", shipment, response);
+		Thread.sleep(5);
+
+		assertNull(cache.get("cid-1", shipment));
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedBeyondMaxKeys() {
+		IdempotencyCache cache = new IdempotencyCache(new SimpleMeterRegistry(), true, 2, 60_000, "", 1);
+		ShipmentMessageDTO other = new ShipmentMessageDTO("ORD-2", "customer@example.com", "TRK-2",
+				LocalDate.of(2024, 9, 17), null, null);
+
+		cache.put("cid-1", shipment, response);
+		cache.put("cid-2", other, new ShipmentResponseDTO("ORD-2", "SUCCESS", "Email sent successfully"));
+
+		assertNull(cache.get("cid-1", shipment));
+	}
+
+	@Test
+	void replaysFailedResponseOnlyByCorrelationId() {
+		IdempotencyCache cache = new IdempotencyCache(new SimpleMeterRegistry(), true, 100, 60_000, "", 1);
+		ShipmentResponseDTO failed = new ShipmentResponseDTO("ORD-1", "FAILED", "Email sending failed");
+
+		cache.put("cid-1", shipment, failed);
+
+		assertEquals(failed, cache.get("cid-1", shipment));
+		assertNull(cache.get("cid-2", shipment));
+	}
+
+	@Test
+	void keepsTooLargeResponseInMemoryOnly(@TempDir Path directory) {
+		String store = directory.resolve("idempotency.log").toString();
+		IdempotencyCache cache = new IdempotencyCache(new SimpleMeterRegistry(), true, 100, 60_000, store, 1);
+		cache.put("cid-1", shipment, response);
+		ShipmentMessageDTO other = new ShipmentMessageDTO("ORD-2", "customer@example.com", "TRK-2",
+				LocalDate.of(2024, 9, 17), null, null);
+		ShipmentResponseDTO large = new ShipmentResponseDTO("ORD-2", "SUCCESS", "x".repeat(100_000));
+		cache.put("cid-2", other, large);
+		assertEquals(large, cache.get("cid-2", other));
+		cache.destroy();
+
+		IdempotencyCache restarted = new IdempotencyCache(new SimpleMeterRegistry(), true, 100, 60_000, store, 1);
+
+		assertEquals(response, restarted.get("cid-1", shipment));
+		assertNull(restarted.get("cid-2", other));
+		restarted.destroy();
+	}
+
+	@Test
+	void rejectsStoreSizeBeyondMappableFile(@TempDir Path directory) {
+		String store = directory.resolve("idempotency.log").toString();
+
+		assertThrows(IllegalArgumentException.class,
+				() -> new IdempotencyCache(new SimpleMeterRegistry(), true, 100, 60_000, store, 4096));
+	}
+
+	@Test
+	void restoresResponsesFromLogAfterRestart(@TempDir Path directory) {
+		String store = directory.resolve("idempotency.log").toString();
+		IdempotencyCache cache = new IdempotencyCache(new SimpleMeterRegistry(), true, 100, 60_000, store, 1);
+		cache.put("cid-1", shipment, response);
+		cache.destroy();
+
+		IdempotencyCache restarted = new IdempotencyCache(new SimpleMeterRegistry(), true, 100, 60_000, store, 1);
+
+		assertEquals(response, restarted.get("cid-1", shipment));
+		restarted.destroy();
+	}
+
+	@Test
+	void compactsFullLog(@TempDir Path directory) {
+		String store = directory.resolve("idempotency.log").toString();
+		IdempotencyCache cache = new IdempotencyCache(new SimpleMeterRegistry(), true, 10, 60_000, store, 1);
+		for (int i = 0; i < 20_000; i++) {
+			ShipmentMessageDTO next = new ShipmentMessageDTO("ORD-" + i, "customer@example.com", "TRK-" + i,
+					LocalDate.of(2024, 9, 17), null, null);
+			cache.put("cid-" + i, next, new ShipmentResponseDTO("ORD-" + i, "SUCCESS", "Email sent successfully"));
+		}
+		cache.destroy();
+
+		IdempotencyCache restarted = new IdempotencyCache(new SimpleMeterRegistry(), true, 10, 60_000, store, 1);
+		ShipmentMessageDTO last = new ShipmentMessageDTO("ORD-19999", "customer@example.com", "TRK-19999",
+				LocalDate.of(2024, 9, 17), null, null);
+
+		assertEquals("ORD-19999", restarted.get("cid-19999", last).orderId());
+		restarted.destroy();
+	}
+}
@@ -0,0 +1,101 @@
+package com.jlpereira.mq_shipment_processor.listener;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.config.SimpleJmsListenerEndpoint;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ListenerAutoscalerTest {
+
+	private static final long INTERVAL_MS = 100;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final PriorityLanes priorityLanes = new PriorityLanes("DEV.QUEUE.1", "DEV.QUEUE.4", "", "", 1, 2, "listener");
+	private final ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory("vm://44");
+	private final JmsListenerEndpointRegistry registry = new JmsListenerEndpointRegistry();
+
+	@BeforeEach
+	void registerContainers() {
+		register("shipment-express", "DEV.QUEUE.4", "2");
+		register("shipment-standard", "DEV.QUEUE.1", "1");
+		register("notification-retry", "DEV.QUEUE.3", "1-2");
+	}
+
+	@AfterEach
+	void destroyContainers() {
+		registry.destroy();
+		connectionFactory.close();
+	}
+
+	@Test
+	void scalesOnlyTheLaneContainersByTheirWeight() {
+		ListenerAutoscaler autoscaler = autoscaler(1, 1);
+
+		// 290 ms of 300 ms available to one consumer per unit of weight of the two lanes
+		recordProcessing(290);
+		autoscaler.evaluate();
+
+		assertEquals(4, container("shipment-express").getMaxConcurrentConsumers());
+		assertEquals(2, container("shipment-standard").getMaxConcurrentConsumers());
+		assertEquals(1, container("notification-retry").getConcurrentConsumers());
+		assertEquals(2, container("notification-retry").getMaxConcurrentConsumers());
+		assertEquals(2, meterRegistry.get("shipment.autoscaler.consumers").gauge().value());
+	}
+
+	@Test
+	void scalesOnlyOnceTheSignalRepeats() {
+		ListenerAutoscaler autoscaler = autoscaler(2, 2);
+
+		recordProcessing(290);
+		autoscaler.evaluate();
+		assertEquals(1, meterRegistry.get("shipment.autoscaler.consumers").gauge().value());
+
+		recordProcessing(290);
+		autoscaler.evaluate();
+		assertEquals(2, meterRegistry.get("shipment.autoscaler.consumers").gauge().value());
+
+		autoscaler.evaluate();
+		assertEquals(2, meterRegistry.get("shipment.autoscaler.consumers").gauge().value());
+		autoscaler.evaluate();
+		assertEquals(1, meterRegistry.get("shipment.autoscaler.consumers").gauge().value());
+		assertEquals(2, container("shipment-express").getMaxConcurrentConsumers());
+		assertEquals(1, container("shipment-standard").getMaxConcurrentConsumers());
+		assertEquals(1, meterRegistry.get("shipment.autoscaler.decisions").tag("decision", "up").counter().count());
+		assertEquals(1, meterRegistry.get("shipment.autoscaler.decisions").tag("decision", "down").counter().count());
+	}
+
+	private ListenerAutoscaler autoscaler(int scaleUpIntervals, int scaleDownIntervals) {
+		return new ListenerAutoscaler(registry, null, priorityLanes, meterRegistry, 1, 20, INTERVAL_MS, 0.8, 0.3, 0, 50, 0,
+				scaleUpIntervals, scaleDownIntervals);
+	}
+
+	private void recordProcessing(long millis) {
+		meterRegistry.timer(MqMessageListener.PROCESSING_TIMER).record(millis, TimeUnit.MILLISECONDS);
+	}
+
+	private void register(String id, String queue, String concurrency) {
+		DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+		factory.setConnectionFactory(connectionFactory);
+		factory.setAutoStartup(false);
+		SimpleJmsListenerEndpoint endpoint = new SimpleJmsListenerEndpoint();
+		endpoint.setId(id);
+		endpoint.setDestination(queue);
+		endpoint.setConcurrency(concurrency);
+		endpoint.setMessageListener(message -> {
+		});
+		registry.registerListenerContainer(endpoint, factory);
+	}
+
+	private DefaultMessageListenerContainer container(String id) {
+		return (DefaultMessageListenerContainer) registry.getListenerContainer(id);
+	}
+}
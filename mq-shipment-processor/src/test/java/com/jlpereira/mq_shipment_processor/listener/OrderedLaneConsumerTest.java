@@ -0,0 +1,191 @@
+package com.jlpereira.mq_shipment_processor.listener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jlpereira.mq_shipment_commons.codec.EncodedPayload;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentBinaryCodec;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentJsonCodec;
+import com.jlpereira.mq_shipment_commons.codec.WireFormat;
+import com.jlpereira.mq_shipment_commons.jms.HopTimestamps;
+import com.jlpereira.mq_shipment_commons.util.HashedWheelTimer;
+import com.jlpereira.mq_shipment_processor.commons.util.MessageConverter;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentResponseDTO;
+import com.jlpereira.mq_shipment_processor.service.NotificationCoalescer;
+import com.jlpereira.mq_shipment_processor.service.ShipmentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.Connection;
+import jakarta.jms.Destination;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OrderedLaneConsumerTest {
+
+	private static final String BROKER_URL = "vm://42";
+	private static final String REQUEST_QUEUE = "LANES.TEST.REQUEST";
+	private static final String BACKOUT_QUEUE = "LANES.TEST.BACKOUT";
+
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 64);
+	private final ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(BROKER_URL);
+	private EmbeddedActiveMQ broker;
+
+	@BeforeEach
+	void startBroker(@TempDir Path directory) throws Exception {
+		ConfigurationImpl configuration = new ConfigurationImpl();
+		configuration.setBrokerInstance(directory.toFile());
+		configuration
+				.setPersistenceEnabled(false)
+				.setSecurityEnabled(false)
+				.setJMXManagementEnabled(false)
+				.addAcceptorConfiguration("in-vm", BROKER_URL);
+		broker = new EmbeddedActiveMQ().setConfiguration(configuration);
+		broker.start();
+	}
+
+	@AfterEach
+	void stopBroker() throws Exception {
+		connectionFactory.close();
+		broker.stop();
+		timer.close();
+	}
+
+	@Test
+	void doesNotReprocessMessagesOfOtherLanesAfterRecovery() throws Exception {
+		FailingOnceShipmentService shipmentService = new FailingOnceShipmentService(meterRegistry, "ORD-1");
+		OrderedLaneConsumer consumer = consumer(shipmentService);
+		send(shipment("ORD-1"), shipment("ORD-2"));
+
+		consumer.start();
+		try {
+			long deadline = System.currentTimeMillis() + 10_000;
+			while (Collections.frequency(shipmentService.processed, "ORD-1") < 2 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			Thread.sleep(300);
+		} finally {
+			consumer.stop();
+		}
+
+		assertEquals(2, Collections.frequency(shipmentService.processed, "ORD-1"));
+		assertEquals(1, Collections.frequency(shipmentService.processed, "ORD-2"));
+		assertEquals(1.0, meterRegistry.get("shipment.lanes.redeliveries.skipped").counter().count());
+	}
+
+	@Test
+	void movesUnreadableMessagesToTheBackoutQueue() throws Exception {
+		FailingOnceShipmentService shipmentService = new FailingOnceShipmentService(meterRegistry, null);
+		OrderedLaneConsumer consumer = consumer(shipmentService);
+		try (Connection connection = connectionFactory.createConnection()) {
+			Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+			TextMessage unreadable = session.createTextMessage("{\"orderId\":");
+			unreadable.setJMSCorrelationID("unreadable");
+			session.createProducer(session.createQueue(REQUEST_QUEUE)).send(unreadable);
+		}
+		send(shipment("ORD-2"));
+
+		consumer.start();
+		try {
+			long deadline = System.currentTimeMillis() + 10_000;
+			while (shipmentService.processed.isEmpty() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+		} finally {
+			consumer.stop();
+		}
+
+		assertEquals(List.of("ORD-2"), shipmentService.processed);
+		assertEquals(1.0, meterRegistry.get("shipment.lanes.backouts").counter().count());
+		assertEquals("unreadable", receive(BACKOUT_QUEUE).getJMSCorrelationID());
+		assertNull(receive(REQUEST_QUEUE));
+	}
+
+	private OrderedLaneConsumer consumer(ShipmentService shipmentService) {
+		return new OrderedLaneConsumer(connectionFactory,
+				new MessageConverter(new ShipmentJsonCodec(new ObjectMapper()), meterRegistry), shipmentService,
+				new NotificationCoalescer(timer, meterRegistry, false, 2000, 20, 1000, 1), meterRegistry,
+				REQUEST_QUEUE, 2, 10, 10, 50, BACKOUT_QUEUE);
+	}
+
+	private Message receive(String queue) throws Exception {
+		try (Connection connection = connectionFactory.createConnection()) {
+			Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+			MessageConsumer consumer = session.createConsumer(session.createQueue(queue));
+			connection.start();
+			return consumer.receive(500);
+		}
+	}
+
+	private void send(ShipmentMessageDTO... shipments) throws Exception {
+		try (Connection connection = connectionFactory.createConnection()) {
+			Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+			MessageProducer producer = session.createProducer(session.createQueue(REQUEST_QUEUE));
+			for (ShipmentMessageDTO shipment : shipments) {
+				producer.send(EncodedPayload.binary(ShipmentBinaryCodec.encodeRequest(shipment)).createMessage(session));
+			}
+		}
+	}
+
+	private static ShipmentMessageDTO shipment(String orderId) {
+		return new ShipmentMessageDTO(orderId, "customer@example.com", "TRK-" + orderId, LocalDate.of(2024, 9, 17), null, null);
+	}
+
+	/**
+	 * Records the processed orders; the first attempt of the failing order waits for the other lane, then fails.
+	 */
+	private static final class FailingOnceShipmentService extends ShipmentService {
+
+		private final List<String> processed = new CopyOnWriteArrayList<>();
+		private final String failingOrderId;
+		private boolean failed;
+
+		private FailingOnceShipmentService(MeterRegistry meterRegistry, String failingOrderId) {
+			super(null, null, null, null, null, null, null, null, null, meterRegistry, REQUEST_QUEUE);
+			this.failingOrderId = failingOrderId;
+		}
+
+		@Override
+		public Destination replyDestination(Message request) {
+			return null;
+		}
+
+		@Override
+		public CompletableFuture<ShipmentResponseDTO> processShipment(ShipmentMessageDTO shipmentMessageDTO,
+																	  String correlationId, WireFormat replyFormat,
+																	  Destination replyTo, HopTimestamps hops) {
+			processed.add(shipmentMessageDTO.orderId());
+			if (shipmentMessageDTO.orderId().equals(failingOrderId) && !failed) {
+				failed = true;
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return CompletableFuture.failedFuture(new IllegalStateException("Notification failed"));
+			}
+			return CompletableFuture.completedFuture(
+					new ShipmentResponseDTO(shipmentMessageDTO.orderId(), "SUCCESS", "Email sent successfully"));
+		}
+	}
+}
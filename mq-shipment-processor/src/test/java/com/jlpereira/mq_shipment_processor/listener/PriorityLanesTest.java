@@ -0,0 +1,63 @@
+package com.jlpereira.mq_shipment_processor.listener;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PriorityLanesTest {
+
+	@Test
+	void drainsOnlyTheRequestQueueWithoutAnExpressQueue() {
+		PriorityLanes lanes = new PriorityLanes("DEV.QUEUE.1", "", "", "", 1, 2, "lanes");
+
+		assertEquals(List.of(new PriorityLanes.Lane("standard", "DEV.QUEUE.1", 1)), lanes.lanes());
+		assertEquals("4-8", lanes.lanes().get(0).concurrency("4-8"));
+	}
+
+	@Test
+	void scalesEachLaneByItsWeight() {
+		PriorityLanes lanes = new PriorityLanes("DEV.QUEUE.1", "DEV.QUEUE.4", "", "", 1, 3, "listener");
+		PriorityLanes.Lane express = lanes.lanes().get(0);
+
+		assertEquals("express", express.name());
+		assertEquals("6", express.concurrency("2"));
+		assertEquals("3-12", express.concurrency("1-4"));
+		assertEquals(3, lanes.weight("DEV.QUEUE.4"));
+		assertEquals(1, lanes.weight("DEV.QUEUE.1"));
+		assertEquals(1, lanes.weight("DEV.QUEUE.3"));
+	}
+
+	@Test
+	void rejectsAnExpressQueueOutsideListenerMode() {
+		assertThrows(IllegalStateException.class, () -> new PriorityLanes("DEV.QUEUE.1", "DEV.QUEUE.4", "", "", 1, 2, "batch"));
+		assertThrows(IllegalArgumentException.class, () -> new PriorityLanes("DEV.QUEUE.1", "", "", "", 0, 2, "listener"));
+	}
+
+	@Test
+	void drainsEveryPartitionWhenNoneAreAssigned() {
+		PriorityLanes lanes = new PriorityLanes("DEV.QUEUE.1", "DEV.QUEUE.4", "DEV.QUEUE.5, DEV.QUEUE.6", "", 1, 2, "listener");
+
+		assertEquals(List.of(
+				new PriorityLanes.Lane("express", "DEV.QUEUE.4", 2),
+				new PriorityLanes.Lane("standard-0", "DEV.QUEUE.5", 1),
+				new PriorityLanes.Lane("standard-1", "DEV.QUEUE.6", 1)), lanes.lanes());
+	}
+
+	@Test
+	void drainsOnlyTheAssignedPartitions() {
+		PriorityLanes lanes = new PriorityLanes("DEV.QUEUE.1", "", "DEV.QUEUE.5,DEV.QUEUE.6,DEV.QUEUE.7", "2,0", 1, 2, "listener");
+
+		assertEquals(List.of(
+				new PriorityLanes.Lane("standard-2", "DEV.QUEUE.7", 1),
+				new PriorityLanes.Lane("standard-0", "DEV.QUEUE.5", 1)), lanes.lanes());
+	}
+
+	@Test
+	void rejectsPartitionsOutsideListenerModeOrOutOfRange() {
+		assertThrows(IllegalStateException.class, () -> new PriorityLanes("DEV.QUEUE.1", "", "DEV.QUEUE.5", "", 1, 2, "batch"));
+		assertThrows(IllegalArgumentException.class, () -> new PriorityLanes("DEV.QUEUE.1", "", "DEV.QUEUE.5", "1", 1, 2, "listener"));
+	}
+}
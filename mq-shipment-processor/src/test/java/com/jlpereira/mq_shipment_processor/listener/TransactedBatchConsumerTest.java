@@ -0,0 +1,158 @@
+package com.jlpereira.mq_shipment_processor.listener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jlpereira.mq_shipment_commons.codec.EncodedPayload;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentBinaryCodec;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentJsonCodec;
+import com.jlpereira.mq_shipment_processor.commons.util.MessageConverter;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentResponseDTO;
+import com.jlpereira.mq_shipment_processor.service.ShipmentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.Connection;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactedBatchConsumerTest {
+
+	private static final String BROKER_URL = "vm://45";
+	private static final String REQUEST_QUEUE = "BATCH.TEST.REQUEST";
+	private static final String REPLY_QUEUE = "BATCH.TEST.REPLY";
+	private static final String BACKOUT_QUEUE = "BATCH.TEST.BACKOUT";
+
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(BROKER_URL);
+	private EmbeddedActiveMQ broker;
+
+	@BeforeEach
+	void startBroker(@TempDir Path directory) throws Exception {
+		ConfigurationImpl configuration = new ConfigurationImpl();
+		configuration.setBrokerInstance(directory.toFile());
+		configuration
+				.setPersistenceEnabled(false)
+				.setSecurityEnabled(false)
+				.setJMXManagementEnabled(false)
+				.addAcceptorConfiguration("in-vm", BROKER_URL);
+		broker = new EmbeddedActiveMQ().setConfiguration(configuration);
+		broker.start();
+	}
+
+	@AfterEach
+	void stopBroker() throws Exception {
+		connectionFactory.close();
+		broker.stop();
+	}
+
+	@Test
+	void retriesAFailedBatchOneByOneAndBacksOutThePoisonMessage() throws Exception {
+		TransactedBatchConsumer consumer = new TransactedBatchConsumer(connectionFactory,
+				new MessageConverter(new ShipmentJsonCodec(new ObjectMapper()), meterRegistry),
+				new PoisonShipmentService(meterRegistry, "ORD-2"), meterRegistry, REQUEST_QUEUE, 10, 200, 100, 2,
+				BACKOUT_QUEUE);
+		send("ORD-1", "ORD-2", "ORD-3");
+
+		consumer.start();
+		try {
+			// ORD-1 and ORD-2 one per transaction, ORD-2 moved to the backout queue, then ORD-3
+			awaitUntil(() -> commits() == 3);
+			assertEquals(List.of("ORD-1", "ORD-3"), receiveAll(REPLY_QUEUE));
+			assertEquals(List.of("ORD-2"), receiveAll(BACKOUT_QUEUE));
+
+			send("ORD-4", "ORD-5", "ORD-6");
+			awaitUntil(() -> commits() == 4);
+		} finally {
+			consumer.stop();
+		}
+
+		assertEquals(List.of("ORD-4", "ORD-5", "ORD-6"), receiveAll(REPLY_QUEUE));
+		assertEquals(3.0, meterRegistry.get("shipment.batch.size").summary().max());
+		assertEquals(2.0, meterRegistry.get("shipment.batch.rollbacks").counter().count());
+		assertEquals(1.0, meterRegistry.get("shipment.batch.backouts").counter().count());
+		assertEquals(List.of(), receiveAll(REQUEST_QUEUE));
+	}
+
+	private double commits() {
+		return meterRegistry.get("shipment.batch.commits").counter().count();
+	}
+
+	private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(condition.getAsBoolean(), "Condition not met within 10 s");
+	}
+
+	private void send(String... orderIds) throws Exception {
+		try (Connection connection = connectionFactory.createConnection()) {
+			Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+			Queue replyQueue = session.createQueue(REPLY_QUEUE);
+			MessageProducer producer = session.createProducer(session.createQueue(REQUEST_QUEUE));
+			for (String orderId : orderIds) {
+				Message message = EncodedPayload.binary(ShipmentBinaryCodec.encodeRequest(shipment(orderId))).createMessage(session);
+				message.setJMSCorrelationID(orderId);
+				message.setJMSReplyTo(replyQueue);
+				producer.send(message);
+			}
+		}
+	}
+
+	private List<String> receiveAll(String queue) throws Exception {
+		List<String> correlationIds = new ArrayList<>();
+		try (Connection connection = connectionFactory.createConnection()) {
+			Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+			MessageConsumer consumer = session.createConsumer(session.createQueue(queue));
+			connection.start();
+			Message message;
+			while ((message = consumer.receive(200)) != null) {
+				correlationIds.add(message.getJMSCorrelationID());
+			}
+		}
+		return correlationIds;
+	}
+
+	private static ShipmentMessageDTO shipment(String orderId) {
+		return new ShipmentMessageDTO(orderId, "customer@example.com", "TRK-" + orderId, LocalDate.of(2024, 9, 17), null, null);
+	}
+
+	/**
+	 * Answers every shipment successfully, except the poison order, which always fails.
+	 */
+	private static final class PoisonShipmentService extends ShipmentService {
+
+		private final String poisonOrderId;
+
+		private PoisonShipmentService(MeterRegistry meterRegistry, String poisonOrderId) {
+			super(null, null, null, null, null, null, null, null, null, meterRegistry, REQUEST_QUEUE);
+			this.poisonOrderId = poisonOrderId;
+		}
+
+		@Override
+		public ShipmentResponseDTO handleShipment(ShipmentMessageDTO shipmentMessageDTO, String correlationId) {
+			if (shipmentMessageDTO.orderId().equals(poisonOrderId)) {
+				throw new IllegalStateException("Notification failed");
+			}
+			return new ShipmentResponseDTO(shipmentMessageDTO.orderId(), "SUCCESS", "Email sent successfully");
+		}
+	}
+}
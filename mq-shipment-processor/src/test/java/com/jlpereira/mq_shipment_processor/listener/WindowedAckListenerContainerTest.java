@@ -0,0 +1,195 @@
+package com.jlpereira.mq_shipment_processor.listener;
+
+import com.jlpereira.mq_shipment_commons.util.HashedWheelTimer;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_processor.service.NotificationCoalescer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.Connection;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WindowedAckListenerContainerTest {
+
+	private static final String BROKER_URL = "vm://43";
+	private static final String QUEUE = "WINDOWED.ACK.TEST";
+
+	private final ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(BROKER_URL);
+	private final BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+	private EmbeddedActiveMQ broker;
+	private WindowedAckListenerContainer container;
+
+	@BeforeEach
+	void startBroker(@TempDir Path directory) throws Exception {
+		ConfigurationImpl configuration = new ConfigurationImpl();
+		configuration.setBrokerInstance(directory.toFile());
+		configuration
+				.setPersistenceEnabled(false)
+				.setSecurityEnabled(false)
+				.setJMXManagementEnabled(false)
+				.addAcceptorConfiguration("in-vm", BROKER_URL);
+		broker = new EmbeddedActiveMQ().setConfiguration(configuration);
+		broker.start();
+	}
+
+	@AfterEach
+	void stopBroker() throws Exception {
+		received.forEach(message -> message.processed.complete(null));
+		if (container != null) {
+			container.shutdown();
+		}
+		connectionFactory.close();
+		broker.stop();
+	}
+
+	@Test
+	void receivesNextMessagesWhileEarlierOnesAreProcessed() throws Exception {
+		startContainer(10);
+		send("A", "B", "C");
+
+		List<Received> inFlight = List.of(next(), next(), next());
+
+		assertEquals(List.of("A", "B", "C"), inFlight.stream().map(Received::body).toList());
+		inFlight.forEach(message -> message.processed.complete(null));
+		stopContainer();
+		assertNull(receiveLeftOver());
+	}
+
+	@Test
+	void pausesOnceTheWindowIsUnacknowledged() throws Exception {
+		startContainer(2);
+		send("A", "B", "C");
+
+		Received first = next();
+		Received second = next();
+		assertNull(received.poll(300, TimeUnit.MILLISECONDS));
+
+		first.processed.complete(null);
+		second.processed.complete(null);
+		Received third = next();
+		assertEquals("C", third.body());
+		third.processed.complete(null);
+		stopContainer();
+		assertNull(receiveLeftOver());
+	}
+
+	@Test
+	void redeliversMessagesOnceProcessingFails() throws Exception {
+		startContainer(10);
+		send("A", "B");
+
+		Received first = next();
+		Received second = next();
+		second.processed.completeExceptionally(new IllegalStateException("Response not sent"));
+		assertNull(received.poll(300, TimeUnit.MILLISECONDS));
+		first.processed.complete(null);
+
+		List<Received> redelivered = List.of(next(), next());
+		assertEquals(List.of("A", "B"), redelivered.stream().map(Received::body).toList());
+		assertTrue(redelivered.stream().allMatch(Received::redelivered));
+	}
+
+	@Test
+	void coalescesTheMessagesOfOneConsumerIntoOneDigest() throws Exception {
+		List<List<String>> digests = new CopyOnWriteArrayList<>();
+		try (HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 64)) {
+			NotificationCoalescer coalescer = new NotificationCoalescer(timer, new SimpleMeterRegistry(), true, 300, 20, 100, 1);
+			startContainer(10, message -> coalescer.submit(shipment(((TextMessage) message).getText()), shipments -> {
+				digests.add(shipments.stream().map(ShipmentMessageDTO::orderId).toList());
+				return true;
+			}));
+			send("ORD-1", "ORD-2", "ORD-3");
+
+			long deadline = System.currentTimeMillis() + 5000;
+			while (digests.isEmpty() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			stopContainer();
+			coalescer.destroy();
+		}
+
+		assertEquals(List.of(List.of("ORD-1", "ORD-2", "ORD-3")), digests);
+		assertNull(receiveLeftOver());
+	}
+
+	private void startContainer(int ackWindow) {
+		startContainer(ackWindow, message -> {
+			Received delivery = new Received(((TextMessage) message).getText(), message.getJMSRedelivered(),
+					new CompletableFuture<>());
+			received.add(delivery);
+			return delivery.processed;
+		});
+	}
+
+	private void startContainer(int ackWindow, AsyncMessageListener listener) {
+		container = new WindowedAckListenerContainer(ackWindow);
+		container.setConnectionFactory(connectionFactory);
+		container.setDestinationName(QUEUE);
+		container.setSessionAcknowledgeMode(Session.CLIENT_ACKNOWLEDGE);
+		container.setReceiveTimeout(100);
+		container.setMessageListener(listener);
+		container.afterPropertiesSet();
+		container.start();
+	}
+
+	private static ShipmentMessageDTO shipment(String orderId) {
+		return new ShipmentMessageDTO(orderId, "customer@example.com", "TRK-" + orderId, LocalDate.of(2024, 9, 17), null, null);
+	}
+
+	private void stopContainer() {
+		container.shutdown();
+		container = null;
+	}
+
+	private Received next() throws InterruptedException {
+		Received delivery = received.poll(5, TimeUnit.SECONDS);
+		assertNotNull(delivery);
+		return delivery;
+	}
+
+	private void send(String... bodies) throws JMSException {
+		try (Connection connection = connectionFactory.createConnection()) {
+			Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+			MessageProducer producer = session.createProducer(session.createQueue(QUEUE));
+			for (String body : bodies) {
+				producer.send(session.createTextMessage(body));
+			}
+		}
+	}
+
+	private Message receiveLeftOver() throws JMSException {
+		try (Connection connection = connectionFactory.createConnection()) {
+			Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+			MessageConsumer consumer = session.createConsumer(session.createQueue(QUEUE));
+			connection.start();
+			return consumer.receive(500);
+		}
+	}
+
+	private record Received(String body, boolean redelivered, CompletableFuture<Object> processed) {
+	}
+}
@@ -0,0 +1,102 @@
+package com.jlpereira.mq_shipment_processor.service;
+
+import com.jlpereira.mq_shipment_commons.util.HashedWheelTimer;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotificationCoalescerTest {
+
+	private final HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 64);
+	private final List<List<String>> digests = new CopyOnWriteArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		timer.close();
+	}
+
+	@Test
+	void sendsOneDigestWhenMaxShipmentsReached() throws Exception {
+		NotificationCoalescer coalescer = coalescer(60_000, 3);
+
+		CompletableFuture<Boolean> first = coalescer.submit(shipment("ORD-1", "a@example.com"), this::record);
+		CompletableFuture<Boolean> second = coalescer.submit(shipment("ORD-2", "A@example.com "), this::record);
+		CompletableFuture<Boolean> third = coalescer.submit(shipment("ORD-3", "a@example.com"), this::record);
+
+		assertTrue(third.get(5, TimeUnit.SECONDS));
+		assertTrue(first.get(5, TimeUnit.SECONDS));
+		assertTrue(second.get(5, TimeUnit.SECONDS));
+		assertEquals(List.of(List.of("ORD-1", "ORD-2", "ORD-3")), digests);
+		coalescer.destroy();
+	}
+
+	@Test
+	void sendsDigestPerCustomerWhenWindowElapses() throws Exception {
+		NotificationCoalescer coalescer = coalescer(50, 100);
+
+		CompletableFuture<Boolean> first = coalescer.submit(shipment("ORD-1", "a@example.com"), this::record);
+		CompletableFuture<Boolean> other = coalescer.submit(shipment("ORD-2", "b@example.com"), this::record);
+		CompletableFuture<Boolean> second = coalescer.submit(shipment("ORD-3", "a@example.com"), this::record);
+		assertFalse(first.isDone());
+
+		assertTrue(first.get(5, TimeUnit.SECONDS));
+		assertTrue(second.get(5, TimeUnit.SECONDS));
+		assertTrue(other.get(5, TimeUnit.SECONDS));
+		assertEquals(2, digests.size());
+		assertTrue(digests.contains(List.of("ORD-1", "ORD-3")));
+		assertTrue(digests.contains(List.of("ORD-2")));
+		coalescer.destroy();
+	}
+
+	@Test
+	void sendsOpenDigestsOnShutdown() throws Exception {
+		NotificationCoalescer coalescer = coalescer(60_000, 100);
+
+		CompletableFuture<Boolean> result = coalescer.submit(shipment("ORD-1", "a@example.com"), this::record);
+		coalescer.destroy();
+
+		assertTrue(result.isDone());
+		assertEquals(List.of(List.of("ORD-1")), digests);
+	}
+
+	@Test
+	void sendsEveryShipmentWhenWindowsCloseImmediately() throws Exception {
+		NotificationCoalescer coalescer = coalescer(0, 100);
+		List<CompletableFuture<Boolean>> results = new ArrayList<>();
+
+		for (int i = 0; i < 50; i++) {
+			results.add(coalescer.submit(shipment("ORD-" + i, "a@example.com"), this::record));
+		}
+
+		for (CompletableFuture<Boolean> result : results) {
+			assertTrue(result.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(50, digests.stream().mapToInt(List::size).sum());
+		coalescer.destroy();
+	}
+
+	private NotificationCoalescer coalescer(long windowMs, int maxShipments) {
+		return new NotificationCoalescer(timer, new SimpleMeterRegistry(), true, windowMs, maxShipments, 100, 2);
+	}
+
+	private boolean record(List<ShipmentMessageDTO> shipments) {
+		digests.add(shipments.stream().map(ShipmentMessageDTO::orderId).toList());
+		return true;
+	}
+
+	private static ShipmentMessageDTO shipment(String orderId, String customerEmail) {
+		return new ShipmentMessageDTO(orderId, customerEmail, "TRK-" + orderId, LocalDate.of(2024, 9, 17), null, null);
+	}
+}
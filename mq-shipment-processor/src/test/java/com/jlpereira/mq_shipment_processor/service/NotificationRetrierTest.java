@@ -0,0 +1,112 @@
+package com.jlpereira.mq_shipment_processor.service;
+
+import com.jlpereira.mq_shipment_commons.codec.WireFormat;
+import com.jlpereira.mq_shipment_commons.jms.HopTimestamps;
+import com.jlpereira.mq_shipment_commons.util.HashedWheelTimer;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotificationRetrierTest {
+
+	private final HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 64);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final AtomicInteger attempts = new AtomicInteger();
+
+	@AfterEach
+	void tearDown() {
+		timer.close();
+	}
+
+	@Test
+	void retriesOffTheCallingThreadUntilSent() throws Exception {
+		NotificationRetrier retrier = retrier("memory", 5, 1000);
+		CompletableFuture<Boolean> firstAttempt = new CompletableFuture<>();
+
+		CompletableFuture<Boolean> result = retrier.send(firstAttempt, () -> attempts.incrementAndGet() == 2);
+		firstAttempt.complete(false);
+
+		assertTrue(result.get(5, TimeUnit.SECONDS));
+		assertEquals(2, attempts.get());
+		assertEquals(3, attemptsSummary("sent").totalAmount());
+		assertEquals(2, meterRegistry.get("shipment.notification.retry.scheduled").counter().count());
+		assertEquals(0, meterRegistry.get("shipment.notification.retry.pending").gauge().value());
+		retrier.destroy();
+	}
+
+	@Test
+	void givesUpAfterMaxAttempts() throws Exception {
+		NotificationRetrier retrier = retrier("memory", 3, 1000);
+
+		CompletableFuture<Boolean> result = retrier.send(CompletableFuture.completedFuture(false), () -> {
+			attempts.incrementAndGet();
+			return false;
+		});
+
+		assertFalse(result.get(5, TimeUnit.SECONDS));
+		assertEquals(2, attempts.get());
+		assertEquals(1, attemptsSummary("exhausted").count());
+		assertEquals(3, attemptsSummary("exhausted").totalAmount());
+		retrier.destroy();
+	}
+
+	@Test
+	void failsAtOnceWhenTooManyRetriesArePending() throws Exception {
+		NotificationRetrier retrier = retrier("memory", 3, 0);
+
+		CompletableFuture<Boolean> result = retrier.send(CompletableFuture.completedFuture(false), () -> true);
+
+		assertFalse(result.getNow(true));
+		assertEquals(1, meterRegistry.get("shipment.notification.retry.overflow").counter().count());
+		retrier.destroy();
+	}
+
+	@Test
+	void growsTheDelayExponentiallyWithinTheJitterRange() {
+		NotificationRetrier retrier = retrier("memory", 10, 1000);
+
+		for (int i = 0; i < 100; i++) {
+			assertInRange(retrier.delayMs(1), 5, 10);
+			assertInRange(retrier.delayMs(2), 10, 20);
+			assertInRange(retrier.delayMs(3), 20, 40);
+			assertInRange(retrier.delayMs(8), 50, 100);
+		}
+	}
+
+	@Test
+	void leavesFailuresToTheRetryQueueWithTheQueueStore() throws Exception {
+		NotificationRetrier retrier = retrier("queue", 3, 1000);
+		ShipmentMessageDTO shipment = new ShipmentMessageDTO("ORD-1", "a@example.com", "TRK-1",
+				LocalDate.of(2024, 9, 17), null, null);
+
+		assertFalse(retrier.send(CompletableFuture.completedFuture(false), () -> true).get());
+		assertFalse(retrier.deferToQueue(shipment, "cid-1", WireFormat.JSON, null, new HopTimestamps(0, 0, 0, 0, 0), 3));
+		assertEquals(0, attempts.get());
+		assertEquals(1, attemptsSummary("exhausted").count());
+		retrier.destroy();
+	}
+
+	private NotificationRetrier retrier(String store, int maxAttempts, int maxPending) {
+		return new NotificationRetrier(timer, null, meterRegistry, store, maxAttempts, 10, 2.0, 100, 0.5,
+				maxPending, 1, "DEV.QUEUE.3");
+	}
+
+	private DistributionSummary attemptsSummary(String outcome) {
+		return meterRegistry.get("shipment.notification.attempts").tag("outcome", outcome).summary();
+	}
+
+	private static void assertInRange(long value, long min, long max) {
+		assertTrue(value >= min && value <= max, value + " not in [" + min + ", " + max + "]");
+	}
+}
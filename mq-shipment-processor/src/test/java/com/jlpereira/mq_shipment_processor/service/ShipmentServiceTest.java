@@ -0,0 +1,60 @@
+package com.jlpereira.mq_shipment_processor.service;
+
+import com.jlpereira.mq_shipment_processor.idempotency.IdempotencyCache;
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import com.jlpereira.mq_shipment_processor.template.NotificationTemplateCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShipmentServiceTest {
+
+	private final ShipmentMessageDTO shipment = new ShipmentMessageDTO("ORD-1", "customer@example.com", "TRK-1",
+			LocalDate.of(2024, 9, 17), null, null);
+
+	@Test
+	void sendsNotificationAgainWhenResentAfterFailure() {
+		MeterRegistry meterRegistry = new SimpleMeterRegistry();
+		ScriptedNotificationService notificationService = new ScriptedNotificationService(meterRegistry, false, true);
+		ShipmentService shipmentService = shipmentService(meterRegistry, notificationService);
+
+		assertEquals("FAILED", shipmentService.handleShipment(shipment, "cid-1").status());
+		assertEquals("FAILED", shipmentService.handleShipment(shipment, "cid-1").status());
+		assertEquals(1, notificationService.sent);
+
+		assertEquals("SUCCESS", shipmentService.handleShipment(shipment, "cid-2").status());
+		assertEquals("SUCCESS", shipmentService.handleShipment(shipment, "cid-3").status());
+		assertEquals(2, notificationService.sent);
+	}
+
+	private static ShipmentService shipmentService(MeterRegistry meterRegistry, NotificationService notificationService) {
+		return new ShipmentService(notificationService, null, null, null,
+				new NotificationTemplateCache(meterRegistry, "", 64, 10000),
+				new IdempotencyCache(meterRegistry, true, 100, 60_000, "", 1),
+				null, null, null, meterRegistry, "DEV.QUEUE.1");
+	}
+
+	private static final class ScriptedNotificationService extends NotificationService {
+
+		private final Deque<Boolean> results;
+		private int sent;
+
+		ScriptedNotificationService(MeterRegistry meterRegistry, Boolean... results) {
+			super(meterRegistry);
+			this.results = new ArrayDeque<>(List.of(results));
+		}
+
+		@Override
+		public boolean sendEmail(String to, String subject, String body) {
+			sent++;
+			return results.removeFirst();
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.jlpereira.mq_shipment_processor.template;
+
+import com.jlpereira.mq_shipment_processor.model.dto.ShipmentMessageDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NotificationTemplateTest {
+
+	private final ShipmentMessageDTO shipment = new ShipmentMessageDTO("ORD-1", "customer@example.com", "TRK-1",
+			LocalDate.of(2024, 9, 17), null, null);
+
+	@Test
+	void rendersSubjectAndBody() {
+		NotificationTemplate template = NotificationTemplate.parse(
+				"Subject: Order {{orderId}} shipped\n\nTracking: {{ trackingNumber }}, shipped on {{shippingDate}}.\n");
+
+		assertEquals("Order ORD-1 shipped", template.subject().render(shipment));
+		assertEquals("Tracking: TRK-1, shipped on 2024-09-17.", template.body().render(shipment));
+	}
+
+	@Test
+	void repeatsShipmentsSectionPerShipment() {
+		ShipmentMessageDTO second = new ShipmentMessageDTO("ORD-2", "customer@example.com", "TRK-2",
+				LocalDate.of(2024, 9, 18), null, null);
+		CompiledTemplate template = CompiledTemplate.compile(
+				"Orders for {{customerEmail}}:\n{{#shipments}}\n- {{orderId}} ({{trackingNumber}})\n{{/shipments}}\nBye");
+
+		assertEquals("Orders for customer@example.com:\n- ORD-1 (TRK-1)\n- ORD-2 (TRK-2)\nBye",
+				template.render(List.of(shipment, second)));
+		assertEquals("Orders for customer@example.com:\n- ORD-1 (TRK-1)\nBye", template.render(shipment));
+	}
+
+	@Test
+	void rejectsUnclosedSections() {
+		assertThrows(IllegalArgumentException.class, () -> CompiledTemplate.compile("{{#shipments}}{{orderId}}"));
+	}
+
+	@Test
+	void rejectsUnknownPlaceholders() {
+		assertThrows(IllegalArgumentException.class, () -> CompiledTemplate.compile("Hello {{name}}"));
+	}
+
+	@Test
+	void rejectsUnclosedPlaceholders() {
+		assertThrows(IllegalArgumentException.class, () -> CompiledTemplate.compile("Order {{orderId"));
+	}
+}
@@ -0,0 +1,56 @@
+package com.jlpereira.mq_shipment_sender.commons.jms;
+
+import java.util.Locale;
+
+/**
+ * Service levels of shipment requests.
+ * <p>
+ * Express requests are sent with a higher JMS priority, so a queue that delivers by priority serves them
+ * ahead of queued standard requests, and to their own request queue when one is configured, where the
+ * processor drains them on a lane of their own.
+ */
+public enum ServiceLevel {
+
+    /**
+     * Time-critical notifications.
+     */
+    EXPRESS(7),
+
+    /**
+     * Everything else, including bulk backfills; the JMS default priority.
+     */
+    STANDARD(4);
+
+    private final int jmsPriority;
+
+    ServiceLevel(int jmsPriority) {
+        this.jmsPriority = jmsPriority;
+    }
+
+    /**
+     * @return The JMS priority requests of this level are sent with.
+     */
+    public int jmsPriority() {
+        return jmsPriority;
+    }
+
+    /**
+     * @return The lower-case name, used as a metric tag.
+     */
+    public String tag() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parses the service level of a request, ignoring case.
+     *
+     * @param name The service level name, e.g. {@code express}, or null.
+     * @return The service level; {@link #STANDARD} if the name is null, blank or unknown.
+     */
+    public static ServiceLevel of(String name) {
+        if (name != null && name.trim().equalsIgnoreCase(EXPRESS.name())) {
+            return EXPRESS;
+        }
+        return STANDARD;
+    }
+}
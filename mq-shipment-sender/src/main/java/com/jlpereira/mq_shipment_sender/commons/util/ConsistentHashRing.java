@@ -0,0 +1,78 @@
+package com.jlpereira.mq_shipment_sender.commons.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps keys to nodes on a hash ring with virtual nodes, so every key maps to the same node as long as the
+ * nodes do not change, and adding or removing one of N nodes only moves about 1/N of the keys.
+ * <p>
+ * Keys and virtual nodes are hashed with 64-bit FNV-1a followed by the MurmurHash3 finalizer, which is
+ * stable across JVMs, so every instance given the same nodes maps keys the same way. The ring is
+ * immutable and safe for concurrent use.
+ */
+public final class ConsistentHashRing {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final List<String> nodes;
+
+    /**
+     * Builds the ring.
+     *
+     * @param nodes        The nodes, at least one and without duplicates.
+     * @param virtualNodes The points each node gets on the ring; more points spread keys more evenly.
+     * @throws IllegalArgumentException If there are no nodes, duplicate nodes or fewer than one virtual node.
+     */
+    public ConsistentHashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A hash ring needs at least one node and one virtual node per node");
+        }
+        if (nodes.stream().distinct().count() != nodes.size()) {
+            throw new IllegalArgumentException("Duplicate hash ring nodes: " + nodes);
+        }
+        this.nodes = List.copyOf(nodes);
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * @return The nodes, in the order given.
+     */
+    public List<String> nodes() {
+        return nodes;
+    }
+
+    /**
+     * @param key The key.
+     * @return The node owning the first ring point at or after the key's hash, wrapping around.
+     */
+    public String nodeFor(String key) {
+        if (nodes.size() == 1) {
+            return nodes.get(0);
+        }
+        Map.Entry<Long, String> owner = ring.ceilingEntry(hash(key));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    static long hash(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -2,9 +2,14 @@ package com.jlpereira.mq_shipment_sender.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentJsonCodec;
+import com.jlpereira.mq_shipment_commons.util.HashedWheelTimer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Configuration class for creating beans.
  */
@@ -22,4 +27,27 @@ public class AppConfig {
         objectMapper.registerModule(new JavaTimeModule());
         return objectMapper;
     }
+
+    /**
+     * Provides the streaming JSON codec of shipment messages, shared with the other service.
+     *
+     * @param objectMapper The object mapper whose parser and generator settings are used.
+     * @return A {@link ShipmentJsonCodec} instance.
+     */
+    @Bean
+    public ShipmentJsonCodec shipmentJsonCodec(ObjectMapper objectMapper) {
+        return new ShipmentJsonCodec(objectMapper);
+    }
+
+    /**
+     * Provides the timing wheel that expires requests waiting too long for a reply.
+     * The timer is closed when the context shuts down.
+     *
+     * @param tickMs The tick duration in milliseconds, i.e. the timeout precision.
+     * @return A started {@link HashedWheelTimer}.
+     */
+    @Bean
+    public HashedWheelTimer replyTimeoutTimer(@Value("${ibm.mq.reply.timer-tick-ms:10}") long tickMs) {
+        return new HashedWheelTimer("reply-timeout-timer", tickMs, TimeUnit.MILLISECONDS, 512);
+    }
 }
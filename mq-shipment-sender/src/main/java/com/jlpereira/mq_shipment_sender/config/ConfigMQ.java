@@ -3,17 +3,34 @@ package com.jlpereira.mq_shipment_sender.config;
 import com.ibm.mq.jakarta.jms.MQConnectionFactory;
 import com.ibm.mq.jakarta.jms.MQQueue;
 import com.ibm.msg.client.wmq.common.CommonConstants;
+import com.jlpereira.mq_shipment_commons.jms.MeteredCachingConnectionFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.jms.ConnectionFactory;
 import jakarta.jms.JMSException;
 import jakarta.jms.Queue;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.apache.activemq.artemis.jms.client.ActiveMQQueue;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jms.annotation.EnableJms;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
 import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+import java.util.List;
 
 /**
  * Configuration for IBM MQ and JMS messaging.
+ * <p>
+ * With the {@code loadtest} profile the connection factory and queues point to an Artemis broker instead,
+ * by default the embedded one started by the in-JVM load test.
  */
 @Configuration
+@EnableJms
 public class ConfigMQ {
 
     @Value("${ibm.mq.host}")
@@ -34,6 +51,27 @@ public class ConfigMQ {
     @Value("${ibm.mq.queue.response}")
     private String responseQueue;
 
+    @Value("${ibm.mq.reply.queue:}")
+    private String replyQueue;
+
+    @Value("${loadtest.broker-url:vm://0}")
+    private String loadTestBrokerUrl;
+
+    @Value("${ibm.mq.pool.session-cache-size:10}")
+    private Integer poolSessionCacheSize;
+
+    @Value("${ibm.mq.pool.cache-producers:true}")
+    private boolean poolCacheProducers;
+
+    @Value("${ibm.mq.pool.cache-consumers:true}")
+    private boolean poolCacheConsumers;
+
+    @Value("${ibm.mq.pool.idle-timeout-ms:300000}")
+    private long poolIdleTimeoutMs;
+
+    @Value("${ibm.mq.pool.warm-up-sessions:2}")
+    private Integer poolWarmUpSessions;
+
     /**
      * Configures the IBM MQ connection factory.
      *
@@ -41,6 +79,7 @@ public class ConfigMQ {
      * @throws JMSException if any error occurs during setup.
      */
     @Bean
+    @Profile("!loadtest")
     public MQConnectionFactory mqConnectionFactory() throws JMSException {
         MQConnectionFactory factory = new MQConnectionFactory();
         factory.setHostName(host);
@@ -51,16 +90,86 @@ public class ConfigMQ {
         return factory;
     }
 
+    /**
+     * Configures the Artemis connection factory used in place of IBM MQ by the load test.
+     *
+     * @return Configured ActiveMQConnectionFactory.
+     */
+    @Bean(name = "mqConnectionFactory")
+    @Profile("loadtest")
+    public ActiveMQConnectionFactory loadTestConnectionFactory() {
+        return new ActiveMQConnectionFactory(loadTestBrokerUrl);
+    }
+
+    /**
+     * Configures the pooled connection factory used for sending. It shares one connection and
+     * caches sessions, producers and consumers, so each send no longer opens its own.
+     *
+     * @param mqConnectionFactory The broker connection factory.
+     * @param meterRegistry       The registry for pool metrics.
+     * @return Configured MeteredCachingConnectionFactory.
+     */
+    @Bean
+    public MeteredCachingConnectionFactory cachingConnectionFactory(ConnectionFactory mqConnectionFactory, MeterRegistry meterRegistry) {
+        MeteredCachingConnectionFactory factory = new MeteredCachingConnectionFactory(mqConnectionFactory, poolIdleTimeoutMs, meterRegistry);
+        factory.setSessionCacheSize(poolSessionCacheSize);
+        factory.setCacheProducers(poolCacheProducers);
+        factory.setCacheConsumers(poolCacheConsumers);
+        return factory;
+    }
+
+    /**
+     * Opens pooled sessions and request queue producers once the application is ready.
+     *
+     * @param cachingConnectionFactory The pooled connection factory.
+     * @param requestQueue             The request queue.
+     * @return Listener that warms up the pool.
+     */
+    @Bean
+    public ApplicationListener<ApplicationReadyEvent> connectionPoolWarmUp(MeteredCachingConnectionFactory cachingConnectionFactory,
+                                                                           Queue requestQueue) {
+        return event -> cachingConnectionFactory.warmUp(poolWarmUpSessions, List.of(requestQueue));
+    }
+
+    /**
+     * Configures the JMS listener container factory used by the response listener.
+     * Containers keep their connection, session and consumer open for their whole lifetime,
+     * so they use the MQ connection factory directly rather than the pool.
+     *
+     * @param mqConnectionFactory The broker connection factory.
+     * @return Configured DefaultJmsListenerContainerFactory.
+     */
+    @Bean
+    public DefaultJmsListenerContainerFactory jmsListenerContainerFactory(ConnectionFactory mqConnectionFactory) {
+        DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+        factory.setConnectionFactory(mqConnectionFactory);
+        factory.setCacheLevel(DefaultMessageListenerContainer.CACHE_CONSUMER);
+        return factory;
+    }
+
     /**
      * Configures the JMS template for sending messages.
+     * Replies are consumed by the response listener, so no receive timeout is needed here.
      *
-     * @param mqConnectionFactory The MQ connection factory.
+     * @param cachingConnectionFactory The pooled connection factory.
      * @return Configured JmsTemplate.
      */
     @Bean
-    public JmsTemplate jmsTemplate(MQConnectionFactory mqConnectionFactory) {
-        JmsTemplate jmsTemplate = new JmsTemplate(mqConnectionFactory);
-        jmsTemplate.setReceiveTimeout(5000);
+    public JmsTemplate jmsTemplate(MeteredCachingConnectionFactory cachingConnectionFactory) {
+        return new JmsTemplate(cachingConnectionFactory);
+    }
+
+    /**
+     * Configures a JMS template whose sessions are transacted, for sending batches that
+     * must be committed as a unit.
+     *
+     * @param cachingConnectionFactory The pooled connection factory.
+     * @return Configured transacted JmsTemplate.
+     */
+    @Bean
+    public JmsTemplate transactedJmsTemplate(MeteredCachingConnectionFactory cachingConnectionFactory) {
+        JmsTemplate jmsTemplate = new JmsTemplate(cachingConnectionFactory);
+        jmsTemplate.setSessionTransacted(true);
         return jmsTemplate;
     }
 
@@ -71,18 +180,47 @@ public class ConfigMQ {
      * @throws JMSException if any error occurs.
      */
     @Bean
+    @Profile("!loadtest")
     public Queue requestQueue() throws JMSException {
         return new MQQueue(requestQueue);
     }
 
     /**
-     * Configures the response queue.
+     * Configures the request queue on the load test's Artemis broker.
+     *
+     * @return Configured Queue.
+     */
+    @Bean(name = "requestQueue")
+    @Profile("loadtest")
+    public Queue loadTestRequestQueue() {
+        return new ActiveMQQueue(requestQueue);
+    }
+
+    /**
+     * Configures the queue this instance receives replies on: its own reply queue if one is configured,
+     * otherwise the shared response queue. Requests carry it as their {@code JMSReplyTo}.
      *
      * @return Configured Queue.
      * @throws JMSException if any error occurs.
      */
     @Bean
-    public Queue responseQueue() throws JMSException {
-        return new MQQueue(responseQueue);
+    @Profile("!loadtest")
+    public Queue replyQueue() throws JMSException {
+        return new MQQueue(replyQueueName());
+    }
+
+    /**
+     * Configures the reply queue on the load test's Artemis broker.
+     *
+     * @return Configured Queue.
+     */
+    @Bean(name = "replyQueue")
+    @Profile("loadtest")
+    public Queue loadTestReplyQueue() {
+        return new ActiveMQQueue(replyQueueName());
+    }
+
+    private String replyQueueName() {
+        return replyQueue.isBlank() ? responseQueue : replyQueue;
     }
 }
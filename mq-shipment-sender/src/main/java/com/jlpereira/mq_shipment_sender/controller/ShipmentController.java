@@ -1,16 +1,29 @@
 package com.jlpereira.mq_shipment_sender.controller;
 
+import com.jlpereira.mq_shipment_sender.model.dto.BatchShipmentResponseDTO;
 import com.jlpereira.mq_shipment_sender.model.dto.ShipmentRequestDTO;
 import com.jlpereira.mq_shipment_sender.model.dto.ShipmentResponseDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentStatusDTO;
+import com.jlpereira.mq_shipment_sender.service.AdaptiveConcurrencyLimiter;
 import com.jlpereira.mq_shipment_sender.service.ShipmentService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST controller for handling shipment requests.
@@ -21,40 +34,178 @@ public class ShipmentController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ShipmentController.class);
     private final ShipmentService shipmentService;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
 
     /**
      * Constructor for initializing the ShipmentController.
      *
-     * @param shipmentService The service responsible for processing shipments.
+     * @param shipmentService    The service responsible for processing shipments.
+     * @param concurrencyLimiter The admission control in front of the shipment service.
      */
-    public ShipmentController(ShipmentService shipmentService) {
+    public ShipmentController(ShipmentService shipmentService, AdaptiveConcurrencyLimiter concurrencyLimiter) {
         this.shipmentService = shipmentService;
+        this.concurrencyLimiter = concurrencyLimiter;
     }
 
     /**
      * Endpoint to process a shipment request.
+     * The servlet thread is released once the request message is sent; the response is
+     * written asynchronously when the reply arrives.
+     * Requests over the concurrency limit are rejected at once with 503 and a {@code Retry-After} header.
      *
      * @param shipmentRequest The shipment request DTO containing shipment details.
-     * @return ResponseEntity containing the shipment response (success or failure).
+     * @return A future with the ResponseEntity containing the shipment response (success or failure).
      */
     @PostMapping
-    public ResponseEntity<ShipmentResponseDTO> createShipment(@RequestBody ShipmentRequestDTO shipmentRequest) {
+    public CompletableFuture<ResponseEntity<ShipmentResponseDTO>> createShipment(@RequestBody ShipmentRequestDTO shipmentRequest) {
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire();
+        if (permit == null) {
+            return CompletableFuture.completedFuture(serviceUnavailable(shipmentRequest));
+        }
         try {
             LOGGER.info("Received shipment request for orderId: {}", shipmentRequest.orderId());
 
-            ShipmentResponseDTO response = shipmentService.processShipment(shipmentRequest);
+            return shipmentService.processShipment(shipmentRequest, permit)
+                    .thenApply(this::toResponseEntity)
+                    .exceptionally(e -> internalServerError(shipmentRequest, e));
+
+        } catch (Exception e) {
+            permit.release(null, e);
+            return CompletableFuture.completedFuture(internalServerError(shipmentRequest, e));
+        }
+    }
+
+    /**
+     * Endpoint to submit a shipment request in accepted mode, chosen with the {@code Prefer: respond-async}
+     * header. Answers 202 with a {@code Location} to poll for the status as soon as the request message is sent,
+     * instead of waiting for the reply. A retry of a submission still pending, or recently answered successfully,
+     * is answered with that submission's status without sending another message. Admission control applies as
+     * for {@link #createShipment}: the submission holds its permit until the reply arrives, or, with the outbox
+     * enabled, until the request is appended to it, without feeding that time into the limit.
+     *
+     * @param shipmentRequest The shipment request DTO containing shipment details.
+     * @return The ResponseEntity containing the status of the shipment.
+     */
+    @PostMapping(headers = "Prefer=respond-async")
+    public ResponseEntity<ShipmentStatusDTO> submitShipment(@RequestBody ShipmentRequestDTO shipmentRequest) {
+        ShipmentStatusDTO submitted = shipmentService.findSubmission(shipmentRequest);
+        if (submitted != null) {
+            LOGGER.info("Shipment for orderId: {} already submitted with correlationId: {}", shipmentRequest.orderId(),
+                    submitted.correlationId());
+            return accepted(submitted);
+        }
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire();
+        if (permit == null) {
+            logRejection(shipmentRequest);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(concurrencyLimiter.retryAfterSeconds()))
+                    .build();
+        }
+        try {
+            LOGGER.info("Received shipment submission for orderId: {}", shipmentRequest.orderId());
 
-            if ("SUCCESS".equalsIgnoreCase(response.status())) {
-                return new ResponseEntity<>(response, HttpStatus.OK);
-            } else {
-                return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
-            }
+            return accepted(shipmentService.submitShipment(shipmentRequest, permit));
 
         } catch (Exception e) {
-            LOGGER.error("Error processing shipment for orderId: {}", shipmentRequest.orderId(), e);
-            return new ResponseEntity<>(new ShipmentResponseDTO(
-                    shipmentRequest.orderId(), "FAILED", "Internal server error: " + e.getMessage()),
-                    HttpStatus.INTERNAL_SERVER_ERROR);
+            permit.release(null, e);
+            LOGGER.error("Error submitting shipment for orderId: {}", shipmentRequest.orderId(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    /**
+     * Endpoint to look up the status of the latest shipment submitted in accepted mode for an order.
+     *
+     * @param orderId The ID of the order.
+     * @return The ResponseEntity containing the status of the shipment, or 404 if it is unknown or expired.
+     */
+    @GetMapping("/{orderId}")
+    public ResponseEntity<ShipmentStatusDTO> getShipment(@PathVariable String orderId) {
+        return toStatusEntity(shipmentService.findShipmentByOrderId(orderId));
+    }
+
+    /**
+     * Endpoint to look up the status of a shipment submitted in accepted mode by its correlation ID.
+     *
+     * @param correlationId The correlation ID of the request message.
+     * @return The ResponseEntity containing the status of the shipment, or 404 if it is unknown or expired.
+     */
+    @GetMapping(params = "correlationId")
+    public ResponseEntity<ShipmentStatusDTO> getShipmentByCorrelationId(@RequestParam String correlationId) {
+        return toStatusEntity(shipmentService.findShipmentByCorrelationId(correlationId));
+    }
+
+    /**
+     * Endpoint to look up the status of the latest shipment submitted in accepted mode with a tracking number.
+     *
+     * @param trackingNumber The tracking number for the shipment.
+     * @return The ResponseEntity containing the status of the shipment, or 404 if it is unknown or expired.
+     */
+    @GetMapping(params = "trackingNumber")
+    public ResponseEntity<ShipmentStatusDTO> getShipmentByTrackingNumber(@RequestParam String trackingNumber) {
+        return toStatusEntity(shipmentService.findShipmentByTrackingNumber(trackingNumber));
+    }
+
+    /**
+     * Endpoint to process a batch of shipment requests, given as a JSON array or as
+     * newline-delimited JSON. Each shipment is admitted by the concurrency limiter as its chunk is sent;
+     * shipments over the limit get a FAILED result.
+     *
+     * @param payload The request body containing the shipment requests.
+     * @return A future with a multi-status ResponseEntity containing one result per shipment.
+     */
+    @PostMapping(path = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public CompletableFuture<ResponseEntity<BatchShipmentResponseDTO>> createShipmentBatch(InputStream payload) {
+        LOGGER.info("Received shipment batch request");
+
+        return shipmentService.processShipmentBatch(payload)
+                .thenApply(response -> {
+                    LOGGER.info("Processed shipment batch: {} succeeded, {} failed", response.succeeded(), response.failed());
+                    return new ResponseEntity<>(response, HttpStatus.MULTI_STATUS);
+                });
+    }
+
+    private ResponseEntity<ShipmentResponseDTO> toResponseEntity(ShipmentResponseDTO response) {
+        if ("SUCCESS".equalsIgnoreCase(response.status())) {
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        } else {
+            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private ResponseEntity<ShipmentStatusDTO> toStatusEntity(ShipmentStatusDTO status) {
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+
+    private ResponseEntity<ShipmentStatusDTO> accepted(ShipmentStatusDTO status) {
+        return ResponseEntity.accepted().location(statusLocation(status)).body(status);
+    }
+
+    private URI statusLocation(ShipmentStatusDTO status) {
+        ServletUriComponentsBuilder location = ServletUriComponentsBuilder.fromCurrentRequestUri();
+        if (status.orderId() != null) {
+            return location.path("/{orderId}").buildAndExpand(status.orderId()).toUri();
+        }
+        return location.queryParam("correlationId", status.correlationId()).build().toUri();
+    }
+
+    private void logRejection(ShipmentRequestDTO shipmentRequest) {
+        LOGGER.debug("Rejecting shipment for orderId: {}, {} requests in flight", shipmentRequest.orderId(),
+                concurrencyLimiter.inFlight());
+    }
+
+    private ResponseEntity<ShipmentResponseDTO> serviceUnavailable(ShipmentRequestDTO shipmentRequest) {
+        logRejection(shipmentRequest);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(concurrencyLimiter.retryAfterSeconds()))
+                .body(new ShipmentResponseDTO(shipmentRequest.orderId(), "FAILED",
+                        "Too many shipments in flight, retry later"));
+    }
+
+    private ResponseEntity<ShipmentResponseDTO> internalServerError(ShipmentRequestDTO shipmentRequest, Throwable e) {
+        LOGGER.error("Error processing shipment for orderId: {}", shipmentRequest.orderId(), e);
+        return new ResponseEntity<>(new ShipmentResponseDTO(
+                shipmentRequest.orderId(), "FAILED", "Internal server error: " + e.getMessage()),
+                HttpStatus.INTERNAL_SERVER_ERROR);
+    }
 }
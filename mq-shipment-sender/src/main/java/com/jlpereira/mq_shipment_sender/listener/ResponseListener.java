@@ -0,0 +1,165 @@
+package com.jlpereira.mq_shipment_sender.listener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentBinaryCodec;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentJsonCodec;
+import com.jlpereira.mq_shipment_commons.jms.HopTimestamps;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentResponseDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentTimingsDTO;
+import com.jlpereira.mq_shipment_sender.service.MessageSenderService;
+import com.jlpereira.mq_shipment_sender.service.PendingReplyRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.TextMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.annotation.JmsListenerConfigurer;
+import org.springframework.jms.config.JmsListenerEndpointRegistrar;
+import org.springframework.jms.config.SimpleJmsListenerEndpoint;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived consumer of the response queue that hands each reply to the request waiting for it.
+ * <p>
+ * Requests name this instance's reply queue as their {@code JMSReplyTo}. With a reply queue of its own,
+ * every reply on it belongs to this instance and is consumed without a selector, so adding sender
+ * instances does not add consumers scanning each reply. Without one, replies arrive on the shared
+ * response queue and only those whose correlation ID carries this instance's prefix are consumed.
+ * Replies are JSON {@code TextMessage}s or binary {@code BytesMessage}s, matching the format of the request.
+ * <p>
+ * The time each reply waited in the response queue is recorded. With {@code shipment.response.timings}
+ * enabled, the reply's hop timestamps are also turned into a per-hop breakdown on the response.
+ */
+@Component
+public class ResponseListener implements JmsListenerConfigurer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResponseListener.class);
+
+    private final PendingReplyRegistry pendingReplyRegistry;
+    private final ShipmentJsonCodec jsonCodec;
+    private final Timer deserializeTimer;
+    private final Timer responseDwellTimer;
+    private final String replyQueueName;
+    private final String selector;
+    private final String concurrency;
+    private final boolean timingsEnabled;
+
+    /**
+     * Constructor for initializing the listener.
+     *
+     * @param pendingReplyRegistry The registry of requests waiting for a reply.
+     * @param jsonCodec            The codec for parsing JSON replies.
+     * @param meterRegistry        The registry for the deserialize stage timer and reply queue dwell timer.
+     * @param responseQueueName    The name of the shared response queue.
+     * @param replyQueueName       The name of this instance's reply queue, or blank to use the response queue.
+     * @param instanceId           The prefix of this instance's correlation IDs.
+     * @param concurrency          The number of consumers of the reply queue.
+     * @param timingsEnabled       Whether responses carry the per-hop breakdown of their round trip.
+     */
+    public ResponseListener(PendingReplyRegistry pendingReplyRegistry, ShipmentJsonCodec jsonCodec,
+                            MeterRegistry meterRegistry,
+                            @Value("${ibm.mq.queue.response}") String responseQueueName,
+                            @Value("${ibm.mq.reply.queue:}") String replyQueueName,
+                            @Value("${ibm.mq.reply.instance-id}") String instanceId,
+                            @Value("${ibm.mq.reply.concurrency:1}") String concurrency,
+                            @Value("${shipment.response.timings:false}") boolean timingsEnabled) {
+        this.pendingReplyRegistry = pendingReplyRegistry;
+        this.jsonCodec = jsonCodec;
+        this.deserializeTimer = Timer.builder(MessageSenderService.STAGE_TIMER)
+                .description("Time spent in each stage of a shipment request")
+                .tag("stage", "deserialize")
+                .register(meterRegistry);
+        boolean shared = replyQueueName.isBlank();
+        this.replyQueueName = shared ? responseQueueName : replyQueueName;
+        this.selector = shared ? "JMSCorrelationID LIKE '" + instanceId + ":%'" : null;
+        this.concurrency = concurrency;
+        this.responseDwellTimer = HopTimestamps.dwellTimer(meterRegistry, this.replyQueueName);
+        this.timingsEnabled = timingsEnabled;
+    }
+
+    /**
+     * Registers the listener container of the reply queue, using the default container factory.
+     *
+     * @param registrar The registrar of the listener endpoints.
+     */
+    @Override
+    public void configureJmsListeners(JmsListenerEndpointRegistrar registrar) {
+        SimpleJmsListenerEndpoint endpoint = new SimpleJmsListenerEndpoint();
+        endpoint.setId("shipment-replies");
+        endpoint.setDestination(replyQueueName);
+        endpoint.setSelector(selector);
+        endpoint.setConcurrency(concurrency);
+        endpoint.setMessageListener(message -> {
+            try {
+                receiveResponse(message);
+            } catch (JMSException e) {
+                throw JmsUtils.convertJmsAccessException(e);
+            }
+        });
+        registrar.registerEndpoint(endpoint);
+        LOGGER.info("Listening for replies on {}{}", replyQueueName, selector != null ? " with selector " + selector : "");
+    }
+
+    /**
+     * Receives a reply from the reply queue and completes the matching request.
+     *
+     * @param message The reply message.
+     * @throws JMSException If the message properties cannot be read.
+     */
+    public void receiveResponse(Message message) throws JMSException {
+        long receivedAt = System.currentTimeMillis();
+        HopTimestamps.recordDwell(responseDwellTimer, message, receivedAt);
+        String correlationId = message.getJMSCorrelationID();
+
+        try {
+            long start = System.nanoTime();
+            ShipmentResponseDTO response;
+            if (message instanceof BytesMessage bytesMessage) {
+                response = ShipmentBinaryCodec.decodeResponse(ShipmentBinaryCodec.readBody(bytesMessage), ShipmentResponseDTO::new);
+            } else if (message instanceof TextMessage textMessage) {
+                response = jsonCodec.readResponse(textMessage.getText(), ShipmentResponseDTO::new);
+            } else {
+                LOGGER.error("No valid response received for correlationId: {}", correlationId);
+                pendingReplyRegistry.fail(correlationId, new JMSException("No valid response received"));
+                return;
+            }
+            deserializeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (timingsEnabled) {
+                response = response.withTimings(timings(HopTimestamps.read(message), receivedAt));
+            }
+            pendingReplyRegistry.complete(correlationId, response);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            LOGGER.error("Error parsing response with correlationId: {}. Error: {}", correlationId, e.getMessage());
+            pendingReplyRegistry.fail(correlationId, e);
+        }
+    }
+
+    /**
+     * Breaks the round trip of a reply down by hop.
+     *
+     * @param hops       The hops stamped on the reply.
+     * @param receivedAt When the reply was received, in epoch milliseconds.
+     * @return The breakdown, or null if the request or the reply is missing a stamp.
+     */
+    private static ShipmentTimingsDTO timings(HopTimestamps hops, long receivedAt) {
+        if (hops.senderReceived() == 0 || hops.senderSent() == 0 || hops.processorReceived() == 0
+                || hops.processorReplied() == 0) {
+            return null;
+        }
+        long notified = hops.processorNotified() != 0 ? hops.processorNotified() : hops.processorReceived();
+        return new ShipmentTimingsDTO(
+                hops.senderSent() - hops.senderReceived(),
+                hops.processorReceived() - hops.senderSent(),
+                notified - hops.processorReceived(),
+                hops.processorReplied() - notified,
+                receivedAt - hops.processorReplied(),
+                receivedAt - hops.senderReceived());
+    }
+}
@@ -0,0 +1,19 @@
+package com.jlpereira.mq_shipment_sender.model.dto;
+
+import java.util.List;
+
+/**
+ * DTO representing the multi-status response to a batch of shipment requests.
+ *
+ * @param total     The number of shipment requests read from the batch.
+ * @param succeeded The number of shipments with a SUCCESS status.
+ * @param failed    The number of shipments with any other status.
+ * @param results   The response of each shipment, in the order of the batch.
+ */
+public record BatchShipmentResponseDTO(
+        int total,
+        int succeeded,
+        int failed,
+        List<ShipmentResponseDTO> results
+) {
+}
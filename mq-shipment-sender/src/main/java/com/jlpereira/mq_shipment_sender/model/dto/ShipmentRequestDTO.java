@@ -1,5 +1,8 @@
 package com.jlpereira.mq_shipment_sender.model.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentRequestFields;
+
 import java.time.LocalDate;
 
 /**
@@ -9,11 +12,24 @@ import java.time.LocalDate;
  * @param customerEmail  The customer's email address.
  * @param trackingNumber The tracking number for the shipment.
  * @param shippingDate   The date the shipment was made.
+ * @param brand          The brand the notification is sent for, or null for the default templates.
+ * @param locale         The customer's locale (e.g. {@code es} or {@code es-MX}), or null for the default language.
+ * @param serviceLevel   The service level ({@code express} or {@code standard}), or null for standard. It routes the
+ *                       request message and sets its priority, so it is read from requests but not written
+ *                       into the message body.
  */
 public record ShipmentRequestDTO(
         String orderId,
         String customerEmail,
         String trackingNumber,
-        LocalDate shippingDate
-) {
+        LocalDate shippingDate,
+        String brand,
+        String locale,
+        @JsonProperty(access = JsonProperty.Access.WRITE_ONLY) String serviceLevel
+) implements ShipmentRequestFields {
+
+    public ShipmentRequestDTO(String orderId, String customerEmail, String trackingNumber, LocalDate shippingDate,
+                              String brand, String locale) {
+        this(orderId, customerEmail, trackingNumber, shippingDate, brand, locale, null);
+    }
 }
@@ -1,15 +1,28 @@
 package com.jlpereira.mq_shipment_sender.model.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentResponseFields;
+
 /**
  * DTO representing the response to a shipment request.
  *
  * @param orderId The ID of the order.
  * @param status  The status of the shipment (e.g., SUCCESS or FAILED).
  * @param message A message describing the status.
+ * @param timings Where the time of the round trip went, or null unless {@code shipment.response.timings} is enabled.
  */
 public record ShipmentResponseDTO(
         String orderId,
         String status,
-        String message
-) {
+        String message,
+        @JsonInclude(JsonInclude.Include.NON_NULL) ShipmentTimingsDTO timings
+) implements ShipmentResponseFields {
+
+    public ShipmentResponseDTO(String orderId, String status, String message) {
+        this(orderId, status, message, null);
+    }
+
+    public ShipmentResponseDTO withTimings(ShipmentTimingsDTO timings) {
+        return new ShipmentResponseDTO(orderId, status, message, timings);
+    }
 }
@@ -0,0 +1,34 @@
+package com.jlpereira.mq_shipment_sender.model.dto;
+
+/**
+ * DTO representing the status of a shipment submitted in accepted mode.
+ *
+ * @param orderId        The ID of the order.
+ * @param trackingNumber The tracking number for the shipment.
+ * @param correlationId  The correlation ID of the request message.
+ * @param status         PENDING until the reply arrives, then the status of the reply (e.g., SUCCESS or FAILED).
+ * @param message        A message describing the status.
+ * @param submittedAt    When the shipment was submitted, in epoch milliseconds.
+ * @param completedAt    When the reply arrived or the shipment failed, in epoch milliseconds, or null while pending.
+ */
+public record ShipmentStatusDTO(
+        String orderId,
+        String trackingNumber,
+        String correlationId,
+        String status,
+        String message,
+        long submittedAt,
+        Long completedAt
+) {
+
+    public static final String PENDING = "PENDING";
+
+    public boolean isPending() {
+        return PENDING.equals(status);
+    }
+
+    public ShipmentStatusDTO completed(ShipmentResponseDTO response, long at) {
+        return new ShipmentStatusDTO(orderId, trackingNumber, correlationId, response.status(), response.message(),
+                submittedAt, at);
+    }
+}
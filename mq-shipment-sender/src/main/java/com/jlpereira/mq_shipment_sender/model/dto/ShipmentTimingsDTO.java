@@ -0,0 +1,22 @@
+package com.jlpereira.mq_shipment_sender.model.dto;
+
+/**
+ * DTO breaking a shipment round trip down by hop, in milliseconds. Durations between hops on different
+ * hosts include the skew between their clocks.
+ *
+ * @param senderMs        From the sender receiving the request to sending the request message.
+ * @param requestQueueMs  From the request message being sent to the processor receiving it.
+ * @param notificationMs  From the processor receiving the request to the notification finishing; 0 for a replayed response.
+ * @param replyMs         From the notification finishing to the processor sending the reply.
+ * @param responseQueueMs From the reply being sent to the sender receiving it.
+ * @param totalMs         From the sender receiving the request to receiving the reply.
+ */
+public record ShipmentTimingsDTO(
+        long senderMs,
+        long requestQueueMs,
+        long notificationMs,
+        long replyMs,
+        long responseQueueMs,
+        long totalMs
+) {
+}
@@ -0,0 +1,363 @@
+package com.jlpereira.mq_shipment_sender.outbox;
+
+import com.jlpereira.mq_shipment_commons.codec.EncodedPayload;
+import com.jlpereira.mq_shipment_commons.codec.WireFormat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of outgoing request messages in memory-mapped segment files, read back in order.
+ * <p>
+ * Records are appended to the newest segment, and a new segment is started when it is full. Each record
+ * is {@code [int length][payload]} and a segment ends at the first zero length. A record's payload and
+ * the zero terminator after it are written before its length, so a process that dies mid-append leaves
+ * the previous end of the log intact.
+ * <p>
+ * Reading advances a cursor that {@link #commit()} persists in a checkpoint file and {@link #rewind()}
+ * moves back to the checkpoint. Segments before the checkpoint are deleted, and on open the log is read
+ * again from the checkpoint. Writes go to the page cache, which outlives the process; {@link #close()}
+ * forces them to disk. Not thread-safe; the outbox serializes access.
+ */
+final class MappedOutboxLog implements AutoCloseable {
+
+    private static final int LENGTH_BYTES = Integer.BYTES;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    private static final int CHECKPOINT_BYTES = Long.BYTES + 2 * Integer.BYTES;
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final FileChannel checkpointChannel;
+    private final MappedByteBuffer checkpoint;
+    private final ByteBuffer record = ByteBuffer.allocate(MAX_RECORD_BYTES);
+    private Segment head;
+    private int headPosition;
+    private long readSegment;
+    private int readPosition;
+    private long committedSegment;
+    private int committedPosition;
+    private long pending;
+    private int uncommitted;
+
+    /**
+     * Opens or creates the log and positions it after the last valid record, with the read cursor at
+     * the checkpoint.
+     *
+     * @param directory    The directory of the segment and checkpoint files.
+     * @param segmentBytes The size of each segment file.
+     * @param maxSegments  The maximum number of segment files, i.e. of segments not yet fully read and committed.
+     */
+    MappedOutboxLog(Path directory, int segmentBytes, int maxSegments) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        try {
+            Files.createDirectories(directory);
+            this.checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.checkpoint = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, CHECKPOINT_BYTES);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Long sequence = sequenceOf(file);
+                    if (sequence != null) {
+                        segments.put(sequence, openSegment(sequence));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening outbox " + directory, e);
+        }
+        restore();
+    }
+
+    private void restore() {
+        long segment = checkpoint.getLong(0);
+        int position = checkpoint.getInt(Long.BYTES);
+        boolean valid = checkpoint.getInt(Long.BYTES + Integer.BYTES) == checksum(segment, position)
+                && segments.containsKey(segment) && position >= 0 && position <= segmentBytes;
+        if (!valid) {
+            segment = segments.isEmpty() ? 0 : segments.firstKey();
+            position = 0;
+        }
+        for (Segment published : List.copyOf(segments.headMap(segment).values())) {
+            delete(published);
+        }
+        if (segments.isEmpty()) {
+            segments.put(segment, openSegment(segment));
+        }
+        committedSegment = segment;
+        committedPosition = position;
+        readSegment = segment;
+        readPosition = position;
+
+        while (true) {
+            Segment current = segments.get(segment);
+            if (recordAt(current, position) != null) {
+                pending++;
+                position += LENGTH_BYTES + current.buffer().getInt(position);
+                continue;
+            }
+            Long next = segments.higherKey(segment);
+            if (next == null) {
+                break;
+            }
+            segment = next;
+            position = 0;
+        }
+        head = segments.get(segment);
+        headPosition = position;
+    }
+
+    /**
+     * Appends a record, starting a new segment if it does not fit in the current one.
+     *
+     * @param outboxRecord The record to append.
+     * @return false if the record is too large or the log already has the maximum number of segments.
+     */
+    boolean append(OutboxRecord outboxRecord) {
+        record.clear();
+        try {
+            encode(outboxRecord, record);
+        } catch (BufferOverflowException e) {
+            return false;
+        }
+        record.flip();
+        int length = record.remaining();
+        if (LENGTH_BYTES + length > segmentBytes) {
+            return false;
+        }
+        if (headPosition + LENGTH_BYTES + length > segmentBytes) {
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            head = openSegment(head.sequence() + 1);
+            segments.put(head.sequence(), head);
+            headPosition = 0;
+        }
+        MappedByteBuffer buffer = head.buffer();
+        int next = headPosition + LENGTH_BYTES + length;
+        buffer.put(headPosition + LENGTH_BYTES, record, 0, length);
+        if (next + LENGTH_BYTES <= segmentBytes) {
+            buffer.putInt(next, 0);
+        }
+        buffer.putInt(headPosition, length);
+        headPosition = next;
+        pending++;
+        return true;
+    }
+
+    /**
+     * Reads the records after the read cursor and advances it past them.
+     *
+     * @param maxRecords The maximum number of records to read.
+     * @return The records in the order they were appended; empty if the cursor is at the end of the log.
+     */
+    List<OutboxRecord> read(int maxRecords) {
+        List<OutboxRecord> records = new ArrayList<>();
+        while (records.size() < maxRecords) {
+            Segment segment = segments.get(readSegment);
+            OutboxRecord outboxRecord = recordAt(segment, readPosition);
+            if (outboxRecord != null) {
+                records.add(outboxRecord);
+                readPosition += LENGTH_BYTES + segment.buffer().getInt(readPosition);
+                continue;
+            }
+            if (segment == head) {
+                break;
+            }
+            readSegment = segments.higherKey(readSegment);
+            readPosition = 0;
+        }
+        uncommitted += records.size();
+        return records;
+    }
+
+    /**
+     * Checkpoints the read cursor, so the records read so far are not read again after a restart, and
+     * deletes the segments before it.
+     */
+    void commit() {
+        checkpoint.putLong(0, readSegment);
+        checkpoint.putInt(Long.BYTES, readPosition);
+        checkpoint.putInt(Long.BYTES + Integer.BYTES, checksum(readSegment, readPosition));
+        committedSegment = readSegment;
+        committedPosition = readPosition;
+        pending -= uncommitted;
+        uncommitted = 0;
+        for (Segment published : List.copyOf(segments.headMap(committedSegment).values())) {
+            delete(published);
+        }
+    }
+
+    /**
+     * Moves the read cursor back to the checkpoint, so the records read since are read again.
+     */
+    void rewind() {
+        readSegment = committedSegment;
+        readPosition = committedPosition;
+        uncommitted = 0;
+    }
+
+    /**
+     * @return The number of records after the checkpoint.
+     */
+    long pending() {
+        return pending;
+    }
+
+    /**
+     * @return The number of segment files.
+     */
+    int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return The record at the position, or null if the segment ends there or the record is corrupt.
+     */
+    private static OutboxRecord recordAt(Segment segment, int position) {
+        MappedByteBuffer buffer = segment.buffer();
+        if (position + LENGTH_BYTES > buffer.capacity()) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + LENGTH_BYTES + length > buffer.capacity()) {
+            return null;
+        }
+        try {
+            return decode(buffer.slice(position + LENGTH_BYTES, length));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void encode(OutboxRecord outboxRecord, ByteBuffer target) {
+        EncodedPayload payload = outboxRecord.payload();
+        target.putLong(outboxRecord.receivedAt());
+        target.putInt(outboxRecord.priority());
+        putString(target, outboxRecord.correlationId());
+        putString(target, outboxRecord.destination());
+        putString(target, payload.format().name());
+        byte[] body = payload.format() == WireFormat.BINARY
+                ? payload.bytes()
+                : payload.text().getBytes(StandardCharsets.UTF_8);
+        target.putInt(body.length);
+        target.put(body);
+    }
+
+    private static OutboxRecord decode(ByteBuffer source) {
+        long receivedAt = source.getLong();
+        int priority = source.getInt();
+        String correlationId = getString(source);
+        String destination = getString(source);
+        WireFormat format = WireFormat.valueOf(getString(source));
+        int length = source.getInt();
+        if (length < 0 || length > source.remaining()) {
+            throw new IllegalArgumentException("Corrupt outbox record");
+        }
+        byte[] body = new byte[length];
+        source.get(body);
+        EncodedPayload payload = format == WireFormat.BINARY
+                ? EncodedPayload.binary(body)
+                : EncodedPayload.json(new String(body, StandardCharsets.UTF_8));
+        return new OutboxRecord(correlationId, destination, priority, receivedAt, payload);
+    }
+
+    private static void putString(ByteBuffer target, String value) {
+        if (value == null) {
+            target.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        target.putInt(bytes.length);
+        target.put(bytes);
+    }
+
+    private static String getString(ByteBuffer source) {
+        int length = source.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > source.remaining()) {
+            throw new IllegalArgumentException("Corrupt outbox record");
+        }
+        byte[] bytes = new byte[length];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(long segment, int position) {
+        return Long.hashCode(segment * 31 + position) ^ 0x5bd1e995;
+    }
+
+    private Segment openSegment(long sequence) {
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            return new Segment(sequence, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening outbox segment " + file, e);
+        }
+    }
+
+    private static Long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void delete(Segment segment) {
+        segments.remove(segment.sequence());
+        try {
+            segment.channel().close();
+            Files.deleteIfExists(segment.file());
+        } catch (IOException e) {
+            // Left behind, and deleted the next time the log is opened.
+        }
+    }
+
+    /**
+     * Forces the log and the checkpoint to disk and closes the files.
+     */
+    @Override
+    public void close() {
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer().force();
+                segment.channel().close();
+            }
+            checkpoint.force();
+            checkpointChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record Segment(long sequence, Path file, FileChannel channel, MappedByteBuffer buffer) {
+    }
+}
@@ -0,0 +1,21 @@
+package com.jlpereira.mq_shipment_sender.outbox;
+
+import com.jlpereira.mq_shipment_commons.codec.EncodedPayload;
+
+/**
+ * A request message waiting in the outbox to be published.
+ *
+ * @param correlationId The correlation ID of the message.
+ * @param destination   The name of the queue the message goes to, or null for the request queue.
+ * @param priority      The JMS priority of the message.
+ * @param receivedAt    When the sender received the request, in epoch milliseconds.
+ * @param payload       The encoded request.
+ */
+record OutboxRecord(
+        String correlationId,
+        String destination,
+        int priority,
+        long receivedAt,
+        EncodedPayload payload
+) {
+}
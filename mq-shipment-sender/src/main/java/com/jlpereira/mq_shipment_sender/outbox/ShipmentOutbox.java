@@ -0,0 +1,344 @@
+package com.jlpereira.mq_shipment_sender.outbox;
+
+import com.jlpereira.mq_shipment_commons.codec.EncodedPayload;
+import com.jlpereira.mq_shipment_commons.jms.HopTimestamps;
+import com.jlpereira.mq_shipment_sender.service.PendingReplyRegistry;
+import com.jlpereira.mq_shipment_sender.service.RequestPartitions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.jms.Message;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Local outbox of shipment request messages, so accepting a request neither waits for nor fails with the
+ * queue manager.
+ * <p>
+ * Requests are appended to a memory-mapped, segmented log, and a drainer thread publishes them in the order
+ * they were appended, in batches sent in one transacted session. The log is checkpointed after each commit.
+ * If a batch cannot be published, e.g. while the queue manager is down or restarting, it is read again
+ * after a delay until it goes through, so requests accepted during an outage are sent once it is over.
+ * A batch that still fails after the maximum number of attempts is published one record at a time, and a
+ * record that fails that many times on its own is moved to the dead-letter queue, so one bad record does
+ * not hold up the outbox. While the dead-letter queue cannot be reached either, the record is retried.
+ * <p>
+ * Records after the checkpoint are published again after a restart, so delivery is at least once: a crash
+ * between a commit and its checkpoint sends the batch twice, and the processor's idempotency cache answers
+ * the second copy without notifying the customer again. The reply timeout of a request starts when it is
+ * published, so time spent in the outbox does not count against it; the publish timeout of the
+ * {@link PendingReplyRegistry} bounds the wait until then. Without a path the outbox is disabled.
+ */
+@Component
+public class ShipmentOutbox implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShipmentOutbox.class);
+
+    private final MappedOutboxLog log;
+    private final JmsTemplate transactedJmsTemplate;
+    private final Queue requestQueue;
+    private final Queue replyQueue;
+    private final PendingReplyRegistry pendingReplyRegistry;
+    private final RequestPartitions partitions;
+    private final int batchSize;
+    private final long idleWaitMs;
+    private final long retryDelayMs;
+    private final int maxAttempts;
+    private final String deadLetterQueue;
+    private final Counter appended;
+    private final Counter rejected;
+    private final Counter published;
+    private final Counter deadLettered;
+    private final Counter publishFailures;
+    private volatile boolean running;
+    private volatile Thread drainThread;
+
+    /**
+     * Constructor for initializing the outbox.
+     *
+     * @param transactedJmsTemplate The transacted JMS template batches are published with.
+     * @param requestQueue          The request queue, for records without a destination of their own.
+     * @param replyQueue            The queue replies come back on, set as the messages' reply-to.
+     * @param pendingReplyRegistry  The registry whose reply timeouts start once a request is published.
+     * @param partitions            The request queue partitions, which count the requests published to them.
+     * @param meterRegistry         The registry for outbox metrics.
+     * @param path                  The directory of the outbox files; empty disables the outbox.
+     * @param segmentSizeMb         The size of each segment file in megabytes.
+     * @param maxSegments           The maximum number of segment files; appends fail once they are all full.
+     * @param batchSize             The maximum number of messages published in one transaction.
+     * @param idleWaitMs            How long the drainer waits for new records when the outbox is empty.
+     * @param retryDelayMs          How long the drainer waits before publishing a failed batch again.
+     * @param maxAttempts           How many times a batch is published before it is split, and a single
+     *                              record before it is dead-lettered.
+     * @param deadLetterQueue       The queue records that cannot be published are moved to.
+     */
+    public ShipmentOutbox(JmsTemplate transactedJmsTemplate, Queue requestQueue, Queue replyQueue,
+                          PendingReplyRegistry pendingReplyRegistry, RequestPartitions partitions,
+                          MeterRegistry meterRegistry,
+                          @Value("${shipment.outbox.path:}") String path,
+                          @Value("${shipment.outbox.segment-size-mb:16}") int segmentSizeMb,
+                          @Value("${shipment.outbox.max-segments:64}") int maxSegments,
+                          @Value("${shipment.outbox.batch-size:100}") int batchSize,
+                          @Value("${shipment.outbox.idle-wait-ms:5}") long idleWaitMs,
+                          @Value("${shipment.outbox.retry-delay-ms:1000}") long retryDelayMs,
+                          @Value("${shipment.outbox.max-attempts:5}") int maxAttempts,
+                          @Value("${shipment.outbox.dead-letter-queue:DEV.DEAD.LETTER.QUEUE}") String deadLetterQueue) {
+        if (batchSize < 1 || maxSegments < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Outbox batch size, max segments and max attempts must be at least 1");
+        }
+        this.log = StringUtils.hasText(path)
+                ? new MappedOutboxLog(Path.of(path), segmentSizeMb * 1024 * 1024, maxSegments)
+                : null;
+        this.transactedJmsTemplate = transactedJmsTemplate;
+        this.requestQueue = requestQueue;
+        this.replyQueue = replyQueue;
+        this.pendingReplyRegistry = pendingReplyRegistry;
+        this.partitions = partitions;
+        this.batchSize = batchSize;
+        this.idleWaitMs = idleWaitMs;
+        this.retryDelayMs = retryDelayMs;
+        this.maxAttempts = maxAttempts;
+        this.deadLetterQueue = deadLetterQueue;
+        this.appended = recordCounter(meterRegistry, "appended");
+        this.rejected = recordCounter(meterRegistry, "rejected");
+        this.published = recordCounter(meterRegistry, "published");
+        this.deadLettered = recordCounter(meterRegistry, "dead-lettered");
+        this.publishFailures = Counter.builder("shipment.outbox.publish.failures")
+                .description("Outbox batches that could not be published and will be retried")
+                .register(meterRegistry);
+        if (log != null) {
+            Gauge.builder("shipment.outbox.pending", this, ShipmentOutbox::pending)
+                    .description("Requests in the outbox not yet published")
+                    .register(meterRegistry);
+            Gauge.builder("shipment.outbox.segments", this, ShipmentOutbox::segments)
+                    .description("Segment files of the outbox")
+                    .register(meterRegistry);
+            LOGGER.info("Shipment outbox at {} with {} requests to publish", path, pending());
+        }
+    }
+
+    private static Counter recordCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("shipment.outbox.records")
+                .description("Requests appended to, rejected by, published from and dead-lettered by the outbox")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return Whether requests are sent through the outbox.
+     */
+    public boolean isEnabled() {
+        return log != null;
+    }
+
+    /**
+     * Appends a request message to the outbox, for the drainer to publish.
+     *
+     * @param correlationId The correlation ID of the message.
+     * @param payload       The encoded request.
+     * @param destination   The name of the queue the message goes to, or null for the request queue.
+     * @param priority      The JMS priority of the message.
+     * @param hops          The hops of the request, with when the sender received it.
+     * @return false if the outbox is full or the message too large for it.
+     */
+    public boolean append(String correlationId, EncodedPayload payload, String destination, int priority,
+                          HopTimestamps hops) {
+        boolean stored;
+        synchronized (log) {
+            stored = log.append(new OutboxRecord(correlationId, destination, priority, hops.senderReceived(), payload));
+        }
+        if (!stored) {
+            rejected.increment();
+            return false;
+        }
+        appended.increment();
+        LockSupport.unpark(drainThread);
+        return true;
+    }
+
+    private double pending() {
+        synchronized (log) {
+            return log.pending();
+        }
+    }
+
+    private double segments() {
+        synchronized (log) {
+            return log.segmentCount();
+        }
+    }
+
+    @Override
+    public void start() {
+        if (log == null) {
+            return;
+        }
+        running = true;
+        drainThread = new Thread(this::drain, "outbox-drainer");
+        drainThread.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(drainThread);
+        try {
+            drainThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (log) {
+            log.close();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Drain loop: publishes the records after the read cursor until the outbox is stopped. After a batch
+     * fails {@code maxAttempts} times, its records are published one at a time, and a single record that
+     * fails {@code maxAttempts} times is dead-lettered.
+     */
+    private void drain() {
+        int attempts = 0;
+        int singleRecords = 0;
+        while (running) {
+            List<OutboxRecord> batch;
+            synchronized (log) {
+                batch = log.read(singleRecords > 0 ? 1 : batchSize);
+            }
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(idleWaitMs));
+                continue;
+            }
+            try {
+                publish(batch, null);
+            } catch (RuntimeException e) {
+                publishFailures.increment();
+                attempts++;
+                if (attempts >= maxAttempts && batch.size() > 1) {
+                    LOGGER.error("Error publishing {} outbox messages {} times, publishing them one at a time. Error: {}",
+                            batch.size(), attempts, e.getMessage());
+                    rewind();
+                    singleRecords = batch.size();
+                    attempts = 0;
+                    continue;
+                }
+                if (attempts >= maxAttempts && deadLetter(batch.get(0), e)) {
+                    attempts = 0;
+                    singleRecords = Math.max(singleRecords - 1, 0);
+                    continue;
+                }
+                rewind();
+                LOGGER.error("Error publishing {} outbox messages, retrying in {} ms. Error: {}", batch.size(),
+                        retryDelayMs, e.getMessage());
+                sleepBeforeRetry();
+                continue;
+            }
+            synchronized (log) {
+                log.commit();
+            }
+            attempts = 0;
+            singleRecords = Math.max(singleRecords - batch.size(), 0);
+            published.increment(batch.size());
+            batch.forEach(outboxRecord -> {
+                partitions.sent(outboxRecord.destination());
+                pendingReplyRegistry.startTimeout(outboxRecord.correlationId());
+            });
+        }
+    }
+
+    private void rewind() {
+        synchronized (log) {
+            log.rewind();
+        }
+    }
+
+    /**
+     * Moves a record that cannot be published to the dead-letter queue, and fails the request waiting for it.
+     *
+     * @param outboxRecord The record.
+     * @param cause        The last error publishing it.
+     * @return false if the dead-letter queue cannot be reached either, in which case the record stays in the outbox.
+     */
+    private boolean deadLetter(OutboxRecord outboxRecord, RuntimeException cause) {
+        try {
+            publish(List.of(outboxRecord), deadLetterQueue);
+        } catch (RuntimeException e) {
+            LOGGER.error("Error moving outbox message with correlationId: {} to {}. Error: {}",
+                    outboxRecord.correlationId(), deadLetterQueue, e.getMessage());
+            return false;
+        }
+        synchronized (log) {
+            log.commit();
+        }
+        deadLettered.increment();
+        LOGGER.error("Moved outbox message with correlationId: {} to {} after {} attempts. Error: {}",
+                outboxRecord.correlationId(), deadLetterQueue, maxAttempts, cause.getMessage());
+        pendingReplyRegistry.fail(outboxRecord.correlationId(),
+                new IllegalStateException("Request could not be published: " + cause.getMessage(), cause));
+        return true;
+    }
+
+    /**
+     * Publishes records in one transaction, to their own destinations or all to the given queue.
+     *
+     * @param batch            The records.
+     * @param destinationQueue The name of the queue every record goes to, or null for the records' destinations.
+     */
+    private void publish(List<OutboxRecord> batch, String destinationQueue) {
+        transactedJmsTemplate.execute(session -> {
+            MessageProducer producer = session.createProducer(null);
+            try {
+                for (OutboxRecord outboxRecord : batch) {
+                    Message message = outboxRecord.payload().createMessage(session);
+                    message.setJMSCorrelationID(outboxRecord.correlationId());
+                    message.setJMSReplyTo(replyQueue);
+                    HopTimestamps.receivedBySender(outboxRecord.receivedAt())
+                            .sent(System.currentTimeMillis())
+                            .writeTo(message);
+                    String destinationName = destinationQueue != null ? destinationQueue : outboxRecord.destination();
+                    Queue destination = destinationName != null ? session.createQueue(destinationName) : requestQueue;
+                    producer.send(destination, message, producer.getDeliveryMode(), outboxRecord.priority(),
+                            producer.getTimeToLive());
+                }
+                session.commit();
+            } finally {
+                producer.close();
+            }
+            return null;
+        }, false);
+        LOGGER.debug("Published {} outbox messages", batch.size());
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(retryDelayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.jlpereira.mq_shipment_sender.service;
+
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentResponseDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for shipment requests: bounds the requests in flight by a limit that follows the
+ * measured round-trip latency, and rejects requests over the limit instead of queueing them.
+ * <p>
+ * The limit is adjusted with a gradient: a fast moving average of recent round trips is compared with a
+ * slow one, so a few slow round trips (such as retried notifications) do not move the limit on their own.
+ * While latency stays near the slow average the limit grows by about its square root; when
+ * latency rises, the limit shrinks in proportion, by at most half per sample. A round trip that failed or
+ * waited out the reply timeout multiplies the limit by the backoff ratio. Every change is smoothed and
+ * kept between the minimum and maximum limit. The limit only grows while at least half of it is in use,
+ * so a quiet period does not leave a limit that was never tested.
+ */
+@Service
+public class AdaptiveConcurrencyLimiter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private static final int SHORT_RTT_WINDOW = 10;
+    private static final int LONG_RTT_WINDOW = 600;
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double backoffRatio;
+    private final long dropThresholdNanos;
+    private final long retryAfterSeconds;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+    private volatile double limit;
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    /**
+     * Constructor for initializing the limiter.
+     *
+     * @param meterRegistry     The registry for the limit, in-flight and rejection metrics.
+     * @param enabled           Whether requests over the limit are rejected.
+     * @param initialLimit      The limit before any round trip was measured.
+     * @param minLimit          The lowest the limit can go.
+     * @param maxLimit          The highest the limit can go.
+     * @param smoothing         The weight of each new limit against the current one, between 0 and 1.
+     * @param backoffRatio      The factor the limit is multiplied by after a failed or timed out round trip.
+     * @param replyTimeoutMs    How long a request waits for its reply; a round trip this long counts as timed out.
+     * @param retryAfterSeconds The {@code Retry-After} suggested to rejected clients, in seconds.
+     */
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${shipment.admission.enabled:true}") boolean enabled,
+                                      @Value("${shipment.admission.initial-limit:50}") int initialLimit,
+                                      @Value("${shipment.admission.min-limit:5}") int minLimit,
+                                      @Value("${shipment.admission.max-limit:500}") int maxLimit,
+                                      @Value("${shipment.admission.smoothing:0.2}") double smoothing,
+                                      @Value("${shipment.admission.backoff-ratio:0.9}") double backoffRatio,
+                                      @Value("${ibm.mq.reply.timeout-ms:5000}") long replyTimeoutMs,
+                                      @Value("${shipment.admission.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.backoffRatio = backoffRatio;
+        this.dropThresholdNanos = TimeUnit.MILLISECONDS.toNanos(replyTimeoutMs);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        Gauge.builder("shipment.admission.limit", this, AdaptiveConcurrencyLimiter::limit)
+                .description("Shipment requests allowed in flight")
+                .register(meterRegistry);
+        Gauge.builder("shipment.admission.inflight", inFlight, AtomicInteger::get)
+                .description("Shipment requests admitted and not yet answered")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("shipment.admission.rejected")
+                .description("Shipment requests rejected because the limit was reached")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Admits a request if fewer requests than the limit are in flight.
+     *
+     * @return The permit of the admitted request, to be released when it completes, or null if it is rejected.
+     */
+    public Permit tryAcquire() {
+        if (!enabled) {
+            inFlight.incrementAndGet();
+            return new Permit(System.nanoTime());
+        }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * @return The current limit, rounded down.
+     */
+    public int limit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return The number of requests admitted and not yet released.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return How long a rejected client should wait before retrying, in seconds.
+     */
+    public long retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Adjusts the limit to a completed round trip.
+     *
+     * @param rttNanos The round-trip time, in nanoseconds.
+     * @param dropped  Whether the round trip failed or timed out.
+     */
+    synchronized void onSample(long rttNanos, boolean dropped) {
+        if (!enabled) {
+            return;
+        }
+        double newLimit;
+        if (dropped || rttNanos >= dropThresholdNanos) {
+            newLimit = limit * backoffRatio;
+        } else {
+            if (longRttNanos == 0) {
+                shortRttNanos = rttNanos;
+                longRttNanos = rttNanos;
+            } else {
+                shortRttNanos += (rttNanos - shortRttNanos) / SHORT_RTT_WINDOW;
+                longRttNanos += (rttNanos - longRttNanos) / LONG_RTT_WINDOW;
+            }
+            // Let the slow average recover after a burst instead of tolerating its inflated latency for long
+            if (longRttNanos > 2.0 * shortRttNanos) {
+                longRttNanos *= 0.95;
+            }
+            double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, RTT_TOLERANCE * longRttNanos / Math.max(1, shortRttNanos)));
+            newLimit = limit * gradient + Math.sqrt(limit);
+            if (newLimit > limit && inFlight.get() < limit / 2) {
+                return;
+            }
+        }
+        double smoothed = limit * (1 - smoothing) + newLimit * smoothing;
+        double previous = limit;
+        limit = Math.max(minLimit, Math.min(maxLimit, smoothed));
+        if ((int) limit != (int) previous) {
+            LOGGER.debug("Concurrency limit changed from {} to {} after a round trip of {} ms{}", (int) previous,
+                    (int) limit, TimeUnit.NANOSECONDS.toMillis(rttNanos), dropped ? " (dropped)" : "");
+        }
+    }
+
+    /**
+     * An admitted request. Releasing it feeds its round-trip time back into the limit.
+     */
+    public final class Permit {
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Releases the permit once the request completed; later calls have no effect.
+         * Fits {@link java.util.concurrent.CompletableFuture#whenComplete}.
+         *
+         * @param response The response, or null if the request failed.
+         * @param error    The reason the request failed, or null.
+         */
+        public void release(ShipmentResponseDTO response, Throwable error) {
+            if (released.compareAndSet(false, true)) {
+                onSample(System.nanoTime() - startNanos, error != null);
+                inFlight.decrementAndGet();
+            }
+        }
+
+        /**
+         * Releases the permit without feeding its time into the limit, for a request that was answered
+         * without a round trip to the processor; later calls have no effect.
+         */
+        public void cancel() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -1,104 +1,400 @@
 package com.jlpereira.mq_shipment_sender.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jlpereira.mq_shipment_commons.codec.EncodedPayload;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentBinaryCodec;
+import com.jlpereira.mq_shipment_commons.codec.ShipmentJsonCodec;
+import com.jlpereira.mq_shipment_commons.codec.WireFormat;
+import com.jlpereira.mq_shipment_commons.jms.HopTimestamps;
+import com.jlpereira.mq_shipment_sender.commons.jms.ServiceLevel;
 import com.jlpereira.mq_shipment_sender.model.dto.ShipmentRequestDTO;
 import com.jlpereira.mq_shipment_sender.model.dto.ShipmentResponseDTO;
+import com.jlpereira.mq_shipment_sender.outbox.ShipmentOutbox;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.jms.JMSException;
 import jakarta.jms.Message;
+import jakarta.jms.MessageProducer;
 import jakarta.jms.Queue;
-import jakarta.jms.TextMessage;
+import jakarta.jms.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.JmsException;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class MessageSenderService {
     private static final Logger LOGGER = LoggerFactory.getLogger(MessageSenderService.class);
+
+    /**
+     * Name of the timer recording each stage of a shipment request, tagged by {@code stage}.
+     */
+    public static final String STAGE_TIMER = "shipment.stage";
+
+    /**
+     * Name of the timer recording the round trip of each shipment request, tagged by {@code service_level}.
+     */
+    public static final String ROUND_TRIP_TIMER = "shipment.roundtrip";
+
     private final JmsTemplate jmsTemplate;
+    private final JmsTemplate transactedJmsTemplate;
     private final Queue requestQueue;
-    private final Queue responseQueue;
-    private final ObjectMapper objectMapper;
+    private final Queue replyQueue;
+    private final String expressRequestQueue;
+    private final RequestPartitions partitions;
+    private final ShipmentJsonCodec jsonCodec;
+    private final PendingReplyRegistry pendingReplyRegistry;
+    private final ShipmentOutbox outbox;
+    private final String instanceId;
+    private final WireFormat wireFormat;
+    private final Timer serializeTimer;
+    private final Timer sendTimer;
+    private final Timer waitTimer;
+    private final Map<ServiceLevel, Timer> roundTripTimers = new EnumMap<>(ServiceLevel.class);
+    private final Counter successOutcomes;
+    private final Counter failedOutcomes;
+    private final Counter timeoutOutcomes;
 
-    public MessageSenderService(JmsTemplate jmsTemplate, Queue requestQueue, Queue responseQueue, ObjectMapper objectMapper) {
+    public MessageSenderService(JmsTemplate jmsTemplate, JmsTemplate transactedJmsTemplate, Queue requestQueue,
+                                Queue replyQueue, ShipmentJsonCodec jsonCodec, PendingReplyRegistry pendingReplyRegistry,
+                                ShipmentOutbox outbox, RequestPartitions partitions, MeterRegistry meterRegistry,
+                                @Value("${ibm.mq.reply.instance-id}") String instanceId,
+                                @Value("${shipment.wire-format:json}") String wireFormat,
+                                @Value("${ibm.mq.queue.request-express:}") String expressRequestQueue) {
         this.jmsTemplate = jmsTemplate;
+        this.transactedJmsTemplate = transactedJmsTemplate;
         this.requestQueue = requestQueue;
-        this.responseQueue = responseQueue;
-        this.objectMapper = objectMapper;
+        this.replyQueue = replyQueue;
+        this.expressRequestQueue = expressRequestQueue.isBlank() ? null : expressRequestQueue;
+        this.partitions = partitions;
+        this.jsonCodec = jsonCodec;
+        this.pendingReplyRegistry = pendingReplyRegistry;
+        this.outbox = outbox;
+        this.instanceId = instanceId;
+        this.wireFormat = WireFormat.parse(wireFormat);
+        this.serializeTimer = stageTimer(meterRegistry, "serialize");
+        this.sendTimer = stageTimer(meterRegistry, "send");
+        this.waitTimer = stageTimer(meterRegistry, "wait");
+        for (ServiceLevel level : ServiceLevel.values()) {
+            roundTripTimers.put(level, Timer.builder(ROUND_TRIP_TIMER)
+                    .description("Time from receiving a shipment request to its reply, by service level")
+                    .tag("service_level", level.tag())
+                    .register(meterRegistry));
+        }
+        this.successOutcomes = outcomeCounter(meterRegistry, "SUCCESS");
+        this.failedOutcomes = outcomeCounter(meterRegistry, "FAILED");
+        this.timeoutOutcomes = outcomeCounter(meterRegistry, "timeout");
+    }
+
+    private static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder(STAGE_TIMER)
+                .description("Time spent in each stage of a shipment request")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("shipment.outcome")
+                .description("Shipment requests by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
     }
 
     /**
-     * Sends the shipment message and waits for a response.
+     * Sends the shipment message and returns without waiting for the response.
+     * The calling thread is only held for the send; the returned future is completed
+     * by the response listener or by the reply timeout. The serialize, send and wait stages are
+     * timed; the wait includes deserializing the reply, which the response listener also times.
+     * The request message is stamped with when the request was received and when it was sent, and carries
+     * this instance's reply queue as its {@code JMSReplyTo}.
+     * Express requests are sent with a higher JMS priority, to the express request queue if one is configured.
+     * With request queue partitions, other requests are sent to the partition their orderId hashes to, so
+     * every request of an order goes to the same partition.
+     * With the outbox enabled, the message is appended to the outbox instead of sent, and the reply timeout
+     * starts once the outbox publishes it.
      *
      * @param shipmentRequest The shipment request DTO.
-     * @return A ShipmentResponseDTO indicating the result of the shipment request.
+     * @return A future with the ShipmentResponseDTO indicating the result of the shipment request.
      */
-    public ShipmentResponseDTO sendShipmentMessage(ShipmentRequestDTO shipmentRequest) {
+    public CompletableFuture<ShipmentResponseDTO> sendShipmentMessage(ShipmentRequestDTO shipmentRequest) {
+        return sendShipmentMessage(shipmentRequest, newCorrelationId());
+    }
+
+    /**
+     * Sends the shipment message with a correlation ID chosen by the caller, which must come from
+     * {@link #newCorrelationId()}, and returns without waiting for the response.
+     *
+     * @param shipmentRequest The shipment request DTO.
+     * @param correlationId   The correlation ID of the request message.
+     * @return A future with the ShipmentResponseDTO indicating the result of the shipment request.
+     * @see #sendShipmentMessage(ShipmentRequestDTO)
+     */
+    public CompletableFuture<ShipmentResponseDTO> sendShipmentMessage(ShipmentRequestDTO shipmentRequest, String correlationId) {
+        HopTimestamps hops = HopTimestamps.receivedBySender(System.currentTimeMillis());
+        ServiceLevel serviceLevel = ServiceLevel.of(shipmentRequest.serviceLevel());
         try {
-            String messageContent = convertShipmentToJson(shipmentRequest);
-            String correlationId = UUID.randomUUID().toString();
+            long start = System.nanoTime();
+            EncodedPayload payload = encodeShipment(shipmentRequest);
+            long serialized = System.nanoTime();
+            serializeTimer.record(serialized - start, TimeUnit.NANOSECONDS);
 
-            sendMessage(messageContent, correlationId);
-            Message responseMessage = waitForResponse(correlationId);
+            CompletableFuture<ShipmentResponseDTO> reply = pendingReplyRegistry.register(correlationId, !outbox.isEnabled());
+            try {
+                sendMessage(payload, correlationId, hops, serviceLevel, partitionKey(shipmentRequest, correlationId));
+            } catch (RuntimeException e) {
+                pendingReplyRegistry.cancel(correlationId);
+                failedOutcomes.increment();
+                throw e;
+            }
+            long sent = System.nanoTime();
+            sendTimer.record(sent - serialized, TimeUnit.NANOSECONDS);
 
-            return processResponse(responseMessage, shipmentRequest, correlationId);
-        } catch (JsonProcessingException | JMSException e) {
+            LOGGER.info("Waiting for response with correlationId: {}", correlationId);
+            return reply.handle((response, error) -> {
+                long completed = System.nanoTime();
+                waitTimer.record(completed - sent, TimeUnit.NANOSECONDS);
+                roundTripTimers.get(serviceLevel).record(completed - start, TimeUnit.NANOSECONDS);
+                return processResponse(response, error, shipmentRequest, correlationId);
+            });
+        } catch (JsonProcessingException e) {
             LOGGER.error("Error sending shipment message for orderId: {}. Error: {}", shipmentRequest.orderId(), e.getMessage());
-            return new ShipmentResponseDTO(shipmentRequest.orderId(), "FAILED", "Error processing shipment: " + e.getMessage());
+            failedOutcomes.increment();
+            return CompletableFuture.completedFuture(
+                    new ShipmentResponseDTO(shipmentRequest.orderId(), "FAILED", "Error processing shipment: " + e.getMessage()));
         }
     }
 
     /**
-     * Sends the message to the request queue.
+     * Sends a chunk of shipment messages in one transacted session and returns without waiting
+     * for the responses. Either every message of the chunk is committed or none is.
+     * Each message is stamped with when the chunk was received and when the message was sent, and
+     * routed by its service level as in {@link #sendShipmentMessage(ShipmentRequestDTO)}.
+     * With the outbox enabled, each message is appended to the outbox instead, which publishes them in order
+     * in transactions of its own.
      *
-     * @param messageContent The JSON content of the shipment request.
-     * @param correlationId  The correlation ID.
+     * @param shipmentRequests The shipment request DTOs of the chunk.
+     * @return One future per request, in the same order, completed with its ShipmentResponseDTO.
      */
-    private void sendMessage(String messageContent, String correlationId) {
-        LOGGER.info("Sending shipment message with correlationId: {}", correlationId);
+    public List<CompletableFuture<ShipmentResponseDTO>> sendShipmentBatch(List<ShipmentRequestDTO> shipmentRequests) {
+        HopTimestamps hops = HopTimestamps.receivedBySender(System.currentTimeMillis());
+        long start = System.nanoTime();
+        List<CompletableFuture<ShipmentResponseDTO>> replies = new ArrayList<>(shipmentRequests.size());
+        Map<String, OutgoingMessage> messagesToSend = new LinkedHashMap<>();
+
+        for (ShipmentRequestDTO shipmentRequest : shipmentRequests) {
+            String correlationId = newCorrelationId();
+            ServiceLevel serviceLevel = ServiceLevel.of(shipmentRequest.serviceLevel());
+            try {
+                messagesToSend.put(correlationId, new OutgoingMessage(encodeShipment(shipmentRequest), serviceLevel,
+                        partitionKey(shipmentRequest, correlationId)));
+                replies.add(pendingReplyRegistry.register(correlationId, !outbox.isEnabled())
+                        .handle((response, error) -> {
+                            roundTripTimers.get(serviceLevel).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                            return processResponse(response, error, shipmentRequest, correlationId);
+                        }));
+            } catch (JsonProcessingException e) {
+                failedOutcomes.increment();
+                replies.add(CompletableFuture.completedFuture(
+                        new ShipmentResponseDTO(shipmentRequest.orderId(), "FAILED", "Error processing shipment: " + e.getMessage())));
+            }
+        }
+
+        if (messagesToSend.isEmpty()) {
+            return replies;
+        }
+        if (outbox.isEnabled()) {
+            messagesToSend.forEach((correlationId, outgoing) -> {
+                try {
+                    sendMessage(outgoing.payload(), correlationId, hops, outgoing.serviceLevel(), outgoing.partitionKey());
+                } catch (RuntimeException e) {
+                    pendingReplyRegistry.fail(correlationId, e);
+                }
+            });
+            return replies;
+        }
+
+        try {
+            LOGGER.info("Sending batch of {} shipment messages", messagesToSend.size());
+            transactedJmsTemplate.execute(session -> {
+                MessageProducer producer = session.createProducer(null);
+                List<String> destinations = new ArrayList<>(messagesToSend.size());
+                try {
+                    for (Map.Entry<String, OutgoingMessage> entry : messagesToSend.entrySet()) {
+                        Message message = entry.getValue().payload().createMessage(session);
+                        message.setJMSCorrelationID(entry.getKey());
+                        message.setJMSReplyTo(replyQueue);
+                        hops.sent(System.currentTimeMillis()).writeTo(message);
+                        OutgoingMessage outgoing = entry.getValue();
+                        String destination = destinationName(outgoing.serviceLevel(), outgoing.partitionKey());
+                        producer.send(destination(session, destination), message,
+                                producer.getDeliveryMode(), outgoing.serviceLevel().jmsPriority(), producer.getTimeToLive());
+                        destinations.add(destination);
+                    }
+                    session.commit();
+                    destinations.forEach(partitions::sent);
+                } finally {
+                    producer.close();
+                }
+                return null;
+            }, false);
+        } catch (JmsException e) {
+            LOGGER.error("Error sending batch of {} shipment messages. Error: {}", messagesToSend.size(), e.getMessage());
+            messagesToSend.keySet().forEach(correlationId -> pendingReplyRegistry.fail(correlationId, e));
+        }
+        return replies;
+    }
 
-        jmsTemplate.send(requestQueue, session -> {
-            TextMessage message = session.createTextMessage(messageContent);
-            message.setJMSCorrelationID(correlationId);
-            return message;
-        });
+    /**
+     * @return Whether request messages are sent through the outbox instead of directly.
+     */
+    public boolean isOutboxEnabled() {
+        return outbox.isEnabled();
     }
 
     /**
-     * Waits for a response from the response queue.
+     * Creates a correlation ID prefixed with this instance's ID, so the response listener
+     * only consumes replies to requests sent by this instance.
      *
-     * @param correlationId The correlation ID to filter the response.
-     * @return The JMS response message.
+     * @return A new correlation ID.
      */
-    private Message waitForResponse(String correlationId) {
-        LOGGER.info("Waiting for response with correlationId: {}", correlationId);
-        return jmsTemplate.receiveSelected(responseQueue, "JMSCorrelationID='" + correlationId + "'");
+    public String newCorrelationId() {
+        return instanceId + ":" + UUID.randomUUID();
     }
 
     /**
-     * Processes the response message.
+     * Sends the message to the request queue of its service level and partition, with the level's JMS priority,
+     * or appends it to the outbox if it is enabled.
      *
-     * @param responseMessage The JMS response message.
+     * @param payload       The encoded shipment request.
+     * @param correlationId The correlation ID.
+     * @param hops          The hops of the request, stamped on the message with the send time.
+     * @param serviceLevel  The service level of the request.
+     * @param partitionKey  The key choosing the request queue partition.
+     * @throws IllegalStateException If the outbox is full.
+     */
+    private void sendMessage(EncodedPayload payload, String correlationId, HopTimestamps hops, ServiceLevel serviceLevel,
+                             String partitionKey) {
+        if (outbox.isEnabled()) {
+            LOGGER.info("Appending {} shipment message with correlationId: {} to the outbox", serviceLevel.tag(), correlationId);
+            if (!outbox.append(correlationId, payload, destinationName(serviceLevel, partitionKey),
+                    serviceLevel.jmsPriority(), hops)) {
+                throw new IllegalStateException("Shipment outbox is full");
+            }
+            return;
+        }
+        LOGGER.info("Sending {} shipment message with correlationId: {}", serviceLevel.tag(), correlationId);
+
+        String destination = destinationName(serviceLevel, partitionKey);
+        jmsTemplate.execute(session -> {
+            MessageProducer producer = session.createProducer(destination(session, destination));
+            try {
+                Message message = payload.createMessage(session);
+                message.setJMSCorrelationID(correlationId);
+                message.setJMSReplyTo(replyQueue);
+                hops.sent(System.currentTimeMillis()).writeTo(message);
+                producer.send(message, producer.getDeliveryMode(), serviceLevel.jmsPriority(), producer.getTimeToLive());
+                partitions.sent(destination);
+            } finally {
+                producer.close();
+            }
+            return null;
+        }, false);
+    }
+
+    /**
+     * @param session The session the message is sent on.
+     * @param name    The name from {@link #destinationName}.
+     * @return The named queue, or the request queue if the name is null.
+     * @throws JMSException If the queue cannot be resolved.
+     */
+    private Queue destination(Session session, String name) throws JMSException {
+        return name != null ? session.createQueue(name) : requestQueue;
+    }
+
+    /**
+     * @param serviceLevel The service level of the request.
+     * @param partitionKey The key choosing the request queue partition.
+     * @return The express request queue for express requests if one is configured, otherwise the partition
+     * of the key if the request queue is partitioned, otherwise null for the request queue.
+     */
+    private String destinationName(ServiceLevel serviceLevel, String partitionKey) {
+        if (serviceLevel == ServiceLevel.EXPRESS && expressRequestQueue != null) {
+            return expressRequestQueue;
+        }
+        if (partitions.isEnabled()) {
+            return partitions.queueFor(partitionKey);
+        }
+        return null;
+    }
+
+    /**
+     * @return The orderId of the request, or its correlation ID for requests without one.
+     */
+    private static String partitionKey(ShipmentRequestDTO shipmentRequest, String correlationId) {
+        return shipmentRequest.orderId() != null ? shipmentRequest.orderId() : correlationId;
+    }
+
+    /**
+     * Processes the outcome of a pending reply and counts it as SUCCESS, FAILED or timeout.
+     *
+     * @param response        The reply, or null if the reply failed.
+     * @param error           The reason the reply failed, or null.
      * @param shipmentRequest The original shipment request DTO.
      * @param correlationId   The correlation ID.
      * @return A ShipmentResponseDTO based on the response.
-     * @throws JMSException If there's an error processing the response.
-     * @throws JsonProcessingException If the response can't be parsed to a DTO.
      */
-    private ShipmentResponseDTO processResponse(Message responseMessage, ShipmentRequestDTO shipmentRequest, String correlationId)
-            throws JMSException, JsonProcessingException {
-
-        if (responseMessage instanceof TextMessage textMessage) {
-            String responseText = textMessage.getText();
+    private ShipmentResponseDTO processResponse(ShipmentResponseDTO response, Throwable error,
+                                                ShipmentRequestDTO shipmentRequest, String correlationId) {
+        if (error instanceof CompletionException) {
+            error = error.getCause();
+        }
+        if (error == null) {
             LOGGER.info("Received response for orderId: {} with correlationId: {}", shipmentRequest.orderId(), correlationId);
-            return objectMapper.readValue(responseText, ShipmentResponseDTO.class);
-        } else {
+            ("SUCCESS".equalsIgnoreCase(response.status()) ? successOutcomes : failedOutcomes).increment();
+            return response;
+        }
+        if (error instanceof TimeoutException) {
             LOGGER.error("No valid response received for correlationId: {}", correlationId);
+            timeoutOutcomes.increment();
             return new ShipmentResponseDTO(shipmentRequest.orderId(), "FAILED", "No response received");
         }
+        failedOutcomes.increment();
+        LOGGER.error("Error sending shipment message for orderId: {}. Error: {}", shipmentRequest.orderId(), error.getMessage());
+        return new ShipmentResponseDTO(shipmentRequest.orderId(), "FAILED", "Error processing shipment: " + error.getMessage());
+    }
+
+    /**
+     * A request of a chunk, encoded and ready to send.
+     */
+    private record OutgoingMessage(EncodedPayload payload, ServiceLevel serviceLevel, String partitionKey) {
+    }
+
+    /**
+     * Encodes the ShipmentRequestDTO in the configured wire format.
+     *
+     * @param shipmentRequest The shipment request DTO.
+     * @return The encoded shipment request.
+     * @throws JsonProcessingException If the conversion to JSON fails.
+     */
+    private EncodedPayload encodeShipment(ShipmentRequestDTO shipmentRequest) throws JsonProcessingException {
+        if (wireFormat == WireFormat.BINARY) {
+            return EncodedPayload.binary(ShipmentBinaryCodec.encodeRequest(shipmentRequest));
+        }
+        return EncodedPayload.json(convertShipmentToJson(shipmentRequest));
     }
 
     /**
@@ -109,6 +405,6 @@ public class MessageSenderService {
      * @throws JsonProcessingException If the conversion to JSON fails.
      */
     private String convertShipmentToJson(ShipmentRequestDTO shipmentRequest) throws JsonProcessingException {
-        return objectMapper.writeValueAsString(shipmentRequest);
+        return jsonCodec.writeRequest(shipmentRequest);
     }
 }
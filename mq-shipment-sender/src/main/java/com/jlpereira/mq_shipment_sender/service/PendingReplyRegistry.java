@@ -0,0 +1,190 @@
+package com.jlpereira.mq_shipment_sender.service;
+
+import com.jlpereira.mq_shipment_commons.util.HashedWheelTimer;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentResponseDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Correlates replies consumed by the shared response listener with the requests waiting for them.
+ * <p>
+ * Each in-flight request owns one {@link CompletableFuture}, keyed by its correlation ID.
+ * Timeouts are tracked on a {@link HashedWheelTimer} instead of one blocking receive per request.
+ * A request registered before it waits in the outbox gets a publish timeout, replaced by the reply timeout
+ * once it is published, so its caller is released even while the outbox cannot publish.
+ */
+@Service
+public class PendingReplyRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PendingReplyRegistry.class);
+
+    private final ConcurrentHashMap<String, PendingReply> pendingReplies = new ConcurrentHashMap<>();
+    private final HashedWheelTimer replyTimeoutTimer;
+    private final long replyTimeoutMs;
+    private final long publishTimeoutMs;
+    private final Counter orphanedReplies;
+    private final Counter timedOutReplies;
+
+    /**
+     * Constructor for initializing the registry.
+     *
+     * @param replyTimeoutTimer The timer used to expire requests that never get a reply.
+     * @param meterRegistry     The registry for pending, orphan and timeout metrics.
+     * @param replyTimeoutMs    How long a request waits for its reply, in milliseconds.
+     * @param publishTimeoutMs  How long a request registered without a reply timeout waits to be published,
+     *                          in milliseconds.
+     */
+    public PendingReplyRegistry(HashedWheelTimer replyTimeoutTimer, MeterRegistry meterRegistry,
+                                @Value("${ibm.mq.reply.timeout-ms:5000}") long replyTimeoutMs,
+                                @Value("${shipment.outbox.publish-timeout-ms:30000}") long publishTimeoutMs) {
+        this.replyTimeoutTimer = replyTimeoutTimer;
+        this.replyTimeoutMs = replyTimeoutMs;
+        this.publishTimeoutMs = publishTimeoutMs;
+        Gauge.builder("shipment.reply.pending", pendingReplies, ConcurrentHashMap::size)
+                .description("Requests waiting for a reply")
+                .register(meterRegistry);
+        this.orphanedReplies = Counter.builder("shipment.reply.orphaned")
+                .description("Replies received with no waiting request")
+                .register(meterRegistry);
+        this.timedOutReplies = Counter.builder("shipment.reply.timeouts")
+                .description("Requests that gave up waiting for a reply")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers a request before its message is sent, so a fast reply can never be missed.
+     *
+     * @param correlationId The correlation ID of the outgoing message.
+     * @return A future completed with the reply, or exceptionally with a {@link TimeoutException}.
+     */
+    public CompletableFuture<ShipmentResponseDTO> register(String correlationId) {
+        return register(correlationId, true);
+    }
+
+    /**
+     * Registers a request before its message is sent, optionally leaving its reply timeout to be started once
+     * the message is actually sent, for messages that wait in the outbox first. Until then the request
+     * expires after the publish timeout.
+     *
+     * @param correlationId The correlation ID of the outgoing message.
+     * @param startTimeout  Whether the reply timeout starts now; if not, {@link #startTimeout} starts it.
+     * @return A future completed with the reply, or exceptionally with a {@link TimeoutException}.
+     */
+    public CompletableFuture<ShipmentResponseDTO> register(String correlationId, boolean startTimeout) {
+        CompletableFuture<ShipmentResponseDTO> future = new CompletableFuture<>();
+        PendingReply pendingReply = new PendingReply(future);
+        pendingReplies.put(correlationId, pendingReply);
+        if (startTimeout) {
+            startTimeout(correlationId);
+        } else {
+            pendingReply.timeout = replyTimeoutTimer.schedule(
+                    () -> expire(correlationId, "Request not published within " + publishTimeoutMs + " ms"),
+                    publishTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+        return future;
+    }
+
+    /**
+     * Starts the reply timeout of a request registered without one, replacing its publish timeout. Does
+     * nothing if the request is no longer waiting, e.g. because its reply already arrived or it expired.
+     *
+     * @param correlationId The correlation ID of the request.
+     */
+    public void startTimeout(String correlationId) {
+        PendingReply pendingReply = pendingReplies.get(correlationId);
+        if (pendingReply != null && !pendingReply.replyTimeoutStarted) {
+            pendingReply.replyTimeoutStarted = true;
+            if (pendingReply.timeout != null) {
+                pendingReply.timeout.cancel();
+            }
+            pendingReply.timeout = replyTimeoutTimer.schedule(
+                    () -> expire(correlationId, "No response received within " + replyTimeoutMs + " ms"),
+                    replyTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Completes the request waiting for the given correlation ID.
+     *
+     * @param correlationId The correlation ID of the reply.
+     * @param response      The reply.
+     * @return true if a request was waiting, false if the reply was orphaned.
+     */
+    public boolean complete(String correlationId, ShipmentResponseDTO response) {
+        PendingReply pendingReply = remove(correlationId);
+        if (pendingReply == null) {
+            orphanedReplies.increment();
+            LOGGER.warn("Discarding orphaned response with correlationId: {}", correlationId);
+            return false;
+        }
+        pendingReply.future.complete(response);
+        return true;
+    }
+
+    /**
+     * Fails the request waiting for the given correlation ID.
+     *
+     * @param correlationId The correlation ID of the reply.
+     * @param cause         The reason the reply could not be delivered.
+     */
+    public void fail(String correlationId, Throwable cause) {
+        PendingReply pendingReply = remove(correlationId);
+        if (pendingReply != null) {
+            pendingReply.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Drops a registration whose request message was never sent.
+     *
+     * @param correlationId The correlation ID of the request.
+     */
+    public void cancel(String correlationId) {
+        PendingReply pendingReply = remove(correlationId);
+        if (pendingReply != null) {
+            pendingReply.future.cancel(false);
+        }
+    }
+
+    /**
+     * @return The number of requests currently waiting for a reply.
+     */
+    public int pendingCount() {
+        return pendingReplies.size();
+    }
+
+    private PendingReply remove(String correlationId) {
+        PendingReply pendingReply = pendingReplies.remove(correlationId);
+        if (pendingReply != null && pendingReply.timeout != null) {
+            pendingReply.timeout.cancel();
+        }
+        return pendingReply;
+    }
+
+    private void expire(String correlationId, String reason) {
+        PendingReply pendingReply = pendingReplies.remove(correlationId);
+        if (pendingReply != null) {
+            timedOutReplies.increment();
+            pendingReply.future.completeExceptionally(new TimeoutException(reason));
+        }
+    }
+
+    private static final class PendingReply {
+        private final CompletableFuture<ShipmentResponseDTO> future;
+        private volatile HashedWheelTimer.Timeout timeout;
+        private volatile boolean replyTimeoutStarted;
+
+        private PendingReply(CompletableFuture<ShipmentResponseDTO> future) {
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.jlpereira.mq_shipment_sender.service;
+
+import com.jlpereira.mq_shipment_sender.commons.util.ConsistentHashRing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The partitions of the standard request queue, and how many requests have been sent to each.
+ * <p>
+ * A request's partition is chosen by hashing its key on a {@link ConsistentHashRing}, so every request of an
+ * order goes to the same partition. Requests are counted when they are actually sent, directly or by the outbox.
+ */
+@Service
+public class RequestPartitions {
+
+    private final ConsistentHashRing ring;
+    private final Map<String, Counter> sentCounters = new HashMap<>();
+
+    /**
+     * Constructor for initializing the partitions.
+     *
+     * @param meterRegistry         The registry for the per-partition sent counters.
+     * @param requestPartitions     Comma-separated names of the partition queues; blank if the request queue
+     *                              is not partitioned.
+     * @param partitionVirtualNodes The number of points of each partition on the hash ring.
+     */
+    public RequestPartitions(MeterRegistry meterRegistry,
+                             @Value("${ibm.mq.queue.request-partitions:}") String requestPartitions,
+                             @Value("${ibm.mq.queue.partition-virtual-nodes:128}") int partitionVirtualNodes) {
+        List<String> partitionQueues = Arrays.stream(requestPartitions.split(","))
+                .map(String::trim)
+                .filter(queue -> !queue.isEmpty())
+                .toList();
+        this.ring = partitionQueues.isEmpty() ? null : new ConsistentHashRing(partitionQueues, partitionVirtualNodes);
+        for (String queue : partitionQueues) {
+            sentCounters.put(queue, Counter.builder("shipment.partition.sent")
+                    .description("Standard shipment requests sent to each request queue partition")
+                    .tag("queue", queue)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * @return Whether the request queue is partitioned.
+     */
+    public boolean isEnabled() {
+        return ring != null;
+    }
+
+    /**
+     * @param partitionKey The key of the request, e.g. its orderId.
+     * @return The name of the partition queue the key hashes to.
+     */
+    public String queueFor(String partitionKey) {
+        return ring.nodeFor(partitionKey);
+    }
+
+    /**
+     * Counts a request sent to a queue. Does nothing if the queue is not a partition.
+     *
+     * @param queue The name of the queue the request was sent to, or null for the request queue.
+     */
+    public void sent(String queue) {
+        Counter counter = queue != null ? sentCounters.get(queue) : null;
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.jlpereira.mq_shipment_sender.service;
+
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentRequestDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentResponseDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Absorbs client retries of the same shipment request.
+ * <p>
+ * While a request for an order is waiting for its response, identical requests for that order share its
+ * future instead of sending another message. Successful responses are then served from a bounded cache
+ * until they expire; failures are not cached, so a retry after a failure is sent again. Requests for the
+ * same order with different details are never collapsed or served from the cache.
+ */
+@Service
+public class ShipmentResponseCache {
+
+    private final boolean enabled;
+    private final long ttlMs;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, CachedResponse> responses;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter collapsed;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+
+    /**
+     * Constructor for initializing the response cache.
+     *
+     * @param meterRegistry The registry for hit, collapse and eviction metrics.
+     * @param enabled       Whether retries are collapsed and cached.
+     * @param maxEntries    The maximum number of cached responses.
+     * @param ttlMs         How long a response is served from the cache, in milliseconds.
+     */
+    public ShipmentResponseCache(MeterRegistry meterRegistry,
+                                 @Value("${shipment.response-cache.enabled:true}") boolean enabled,
+                                 @Value("${shipment.response-cache.max-entries:10000}") int maxEntries,
+                                 @Value("${shipment.response-cache.ttl-ms:30000}") long ttlMs) {
+        this.enabled = enabled;
+        this.ttlMs = ttlMs;
+        this.responses = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                if (eldest.getValue().isExpired(System.currentTimeMillis())) {
+                    expiredEvictions.increment();
+                    return true;
+                }
+                boolean evict = size() > maxEntries;
+                if (evict) {
+                    sizeEvictions.increment();
+                }
+                return evict;
+            }
+        };
+        this.hits = lookupCounter(meterRegistry, "hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        this.collapsed = Counter.builder("shipment.response.collapsed")
+                .description("Requests that joined an identical request already waiting for its response")
+                .register(meterRegistry);
+        this.sizeEvictions = evictionCounter(meterRegistry, "size");
+        this.expiredEvictions = evictionCounter(meterRegistry, "expired");
+        Gauge.builder("shipment.response.cache.size", this, ShipmentResponseCache::size)
+                .description("Responses in the response cache")
+                .register(meterRegistry);
+        Gauge.builder("shipment.response.inflight", inFlight, Map::size)
+                .description("Orders with a request waiting for its response")
+                .register(meterRegistry);
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("shipment.response.cache")
+                .description("Response cache lookups")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter evictionCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("shipment.response.cache.evictions")
+                .description("Responses removed from the response cache")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached or in-flight response for an identical request, or sends the request.
+     *
+     * @param request The shipment request.
+     * @param sender  Sends the request and returns the future of its response.
+     * @return A future with the response.
+     */
+    public CompletableFuture<ShipmentResponseDTO> getOrSend(ShipmentRequestDTO request,
+                                                            Function<ShipmentRequestDTO, CompletableFuture<ShipmentResponseDTO>> sender) {
+        if (!enabled || request.orderId() == null) {
+            return sender.apply(request);
+        }
+        String key = request.orderId();
+
+        ShipmentResponseDTO cached = lookup(key, request);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        misses.increment();
+
+        InFlight mine = new InFlight(request, new CompletableFuture<>());
+        InFlight existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            if (existing.request.equals(request)) {
+                collapsed.increment();
+                return existing.response.copy();
+            }
+            return sender.apply(request);
+        }
+
+        try {
+            sender.apply(request).whenComplete((response, error) -> {
+                if (error == null && "SUCCESS".equalsIgnoreCase(response.status())) {
+                    store(key, request, response);
+                }
+                inFlight.remove(key, mine);
+                if (error != null) {
+                    mine.response.completeExceptionally(error);
+                } else {
+                    mine.response.complete(response);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, mine);
+            mine.response.completeExceptionally(e);
+        }
+        return mine.response.copy();
+    }
+
+    private ShipmentResponseDTO lookup(String key, ShipmentRequestDTO request) {
+        synchronized (responses) {
+            CachedResponse cached = responses.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.isExpired(System.currentTimeMillis())) {
+                responses.remove(key);
+                expiredEvictions.increment();
+                return null;
+            }
+            return cached.request.equals(request) ? cached.response : null;
+        }
+    }
+
+    private void store(String key, ShipmentRequestDTO request, ShipmentResponseDTO response) {
+        synchronized (responses) {
+            responses.put(key, new CachedResponse(request, response, System.currentTimeMillis() + ttlMs));
+        }
+    }
+
+    private int size() {
+        synchronized (responses) {
+            return responses.size();
+        }
+    }
+
+    /**
+     * A request waiting for its response.
+     */
+    private record InFlight(ShipmentRequestDTO request, CompletableFuture<ShipmentResponseDTO> response) {
+    }
+
+    /**
+     * A successful response and the request it answered.
+     */
+    private record CachedResponse(ShipmentRequestDTO request, ShipmentResponseDTO response, long expiresAtMs) {
+
+        boolean isExpired(long nowMs) {
+            return nowMs >= expiresAtMs;
+        }
+    }
+}
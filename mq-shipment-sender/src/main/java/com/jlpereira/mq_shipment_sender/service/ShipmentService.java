@@ -1,11 +1,26 @@
 package com.jlpereira.mq_shipment_sender.service;
 
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.jlpereira.mq_shipment_sender.model.dto.BatchShipmentResponseDTO;
 import com.jlpereira.mq_shipment_sender.model.dto.ShipmentRequestDTO;
 import com.jlpereira.mq_shipment_sender.model.dto.ShipmentResponseDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentStatusDTO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Service for processing shipment requests.
  */
@@ -13,24 +28,230 @@ import org.springframework.stereotype.Service;
 public class ShipmentService {
     private static final Logger LOGGER = LoggerFactory.getLogger(ShipmentService.class);
     private final MessageSenderService messageSenderService;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final ShipmentResponseCache responseCache;
+    private final ShipmentStatusStore statusStore;
+    private final ObjectReader shipmentRequestReader;
+    private final int batchChunkSize;
 
     /**
      * Constructor for initializing the ShipmentService.
      *
      * @param messageSenderService The service responsible for sending shipment messages.
+     * @param concurrencyLimiter   The admission control of the shipments of a batch.
+     * @param responseCache        The cache that collapses and answers retried requests.
+     * @param statusStore          The status of the shipments submitted in accepted mode.
+     * @param objectMapper         The object mapper for reading shipment batches.
+     * @param batchChunkSize       The number of shipments sent per transacted chunk.
      */
-    public ShipmentService(MessageSenderService messageSenderService) {
+    public ShipmentService(MessageSenderService messageSenderService, AdaptiveConcurrencyLimiter concurrencyLimiter,
+                           ShipmentResponseCache responseCache, ShipmentStatusStore statusStore, ObjectMapper objectMapper,
+                           @Value("${shipment.batch.chunk-size:100}") int batchChunkSize) {
         this.messageSenderService = messageSenderService;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.responseCache = responseCache;
+        this.statusStore = statusStore;
+        this.shipmentRequestReader = objectMapper.readerFor(ShipmentRequestDTO.class);
+        this.batchChunkSize = batchChunkSize;
     }
 
     /**
      * Processes a shipment request, sends the shipment details to the request queue,
-     * and waits for a response in the response queue.
+     * and completes once a response arrives in the response queue.
+     * Retries of a request still waiting for its response, or recently answered successfully,
+     * are answered without sending another message.
+     * The admission permit of the request is released with its round-trip time once the response arrives,
+     * or right away, without one, if the request is answered without sending a message.
      *
      * @param shipmentRequest The shipment request DTO containing shipment details.
-     * @return A ShipmentResponseDTO indicating success or failure.
+     * @param permit          The admission permit of the request.
+     * @return A future with the ShipmentResponseDTO indicating success or failure.
+     */
+    public CompletableFuture<ShipmentResponseDTO> processShipment(ShipmentRequestDTO shipmentRequest,
+                                                                  AdaptiveConcurrencyLimiter.Permit permit) {
+        AtomicBoolean sent = new AtomicBoolean();
+        CompletableFuture<ShipmentResponseDTO> response = responseCache.getOrSend(shipmentRequest, request -> {
+            sent.set(true);
+            try {
+                return messageSenderService.sendShipmentMessage(request).whenComplete(permit::release);
+            } catch (RuntimeException e) {
+                permit.release(null, e);
+                throw e;
+            }
+        });
+        if (!sent.get()) {
+            permit.cancel();
+        }
+        return response;
+    }
+
+    /**
+     * Submits a shipment request in accepted mode: returns once the request message is sent, with the
+     * shipment stored as PENDING. The status is updated when the response listener completes the reply,
+     * or when the reply times out. With the outbox enabled, it returns once the request is appended to it.
+     *
+     * @param shipmentRequest The shipment request DTO containing shipment details.
+     * @param permit          The admission permit of the request, released with its round-trip time once the
+     *                        reply arrived or failed; with the outbox enabled, released right away without one,
+     *                        as the request no longer depends on the queue manager.
+     * @return The PENDING status of the shipment.
+     */
+    public ShipmentStatusDTO submitShipment(ShipmentRequestDTO shipmentRequest, AdaptiveConcurrencyLimiter.Permit permit) {
+        String correlationId = messageSenderService.newCorrelationId();
+        ShipmentStatusDTO status = statusStore.accept(correlationId, shipmentRequest);
+        CompletableFuture<ShipmentResponseDTO> reply;
+        try {
+            reply = messageSenderService.sendShipmentMessage(shipmentRequest, correlationId);
+        } catch (RuntimeException e) {
+            statusStore.complete(correlationId, failed(shipmentRequest, e));
+            throw e;
+        }
+        CompletableFuture<ShipmentResponseDTO> completed = reply.whenComplete((response, error) ->
+                statusStore.complete(correlationId, error == null ? response : failed(shipmentRequest, error)));
+        if (messageSenderService.isOutboxEnabled()) {
+            permit.cancel();
+        } else {
+            completed.whenComplete(permit::release);
+        }
+        return status;
+    }
+
+    private static ShipmentResponseDTO failed(ShipmentRequestDTO shipmentRequest, Throwable error) {
+        return new ShipmentResponseDTO(shipmentRequest.orderId(), "FAILED", "Error processing shipment: " + error.getMessage());
+    }
+
+    /**
+     * Finds an earlier submission of an identical request that is still pending or succeeded, so a
+     * retried submission can be answered without sending another message.
+     *
+     * @param shipmentRequest The shipment request DTO containing shipment details.
+     * @return The status of the earlier submission, or null if there is none.
+     */
+    public ShipmentStatusDTO findSubmission(ShipmentRequestDTO shipmentRequest) {
+        return statusStore.findIdentical(shipmentRequest);
+    }
+
+    /**
+     * @param orderId The ID of the order.
+     * @return The status of the latest shipment submitted in accepted mode for the order, or null if none is known.
+     */
+    public ShipmentStatusDTO findShipmentByOrderId(String orderId) {
+        return statusStore.findByOrderId(orderId);
+    }
+
+    /**
+     * @param correlationId The correlation ID of the request message.
+     * @return The status of the shipment submitted in accepted mode, or null if none is known.
+     */
+    public ShipmentStatusDTO findShipmentByCorrelationId(String correlationId) {
+        return statusStore.findByCorrelationId(correlationId);
+    }
+
+    /**
+     * @param trackingNumber The tracking number for the shipment.
+     * @return The status of the latest shipment submitted in accepted mode with the tracking number, or null if none is known.
+     */
+    public ShipmentStatusDTO findShipmentByTrackingNumber(String trackingNumber) {
+        return statusStore.findByTrackingNumber(trackingNumber);
+    }
+
+    /**
+     * Processes a batch of shipment requests given as a JSON array or as newline-delimited JSON.
+     * Requests are parsed incrementally and sent in transacted chunks while the rest of the
+     * payload is still being read; the responses of all chunks are awaited concurrently.
+     * The results are in the order of the payload; an invalid shipment, or the rest of a payload that
+     * cannot be read, gets a FAILED result in its place.
+     * Each shipment is admitted by the concurrency limiter before its chunk is sent, and holds its permit
+     * until its response arrives; shipments over the limit are not sent and get a FAILED result.
+     *
+     * @param payload The request body containing the shipment requests.
+     * @return A future with the per-item results of the batch.
      */
-    public ShipmentResponseDTO processShipment(ShipmentRequestDTO shipmentRequest) {
-        return messageSenderService.sendShipmentMessage(shipmentRequest);
+    public CompletableFuture<BatchShipmentResponseDTO> processShipmentBatch(InputStream payload) {
+        List<CompletableFuture<ShipmentResponseDTO>> replies = new ArrayList<>();
+        List<ShipmentRequestDTO> chunk = new ArrayList<>(batchChunkSize);
+
+        try (MappingIterator<ShipmentRequestDTO> requests = shipmentRequestReader.readValues(payload)) {
+            while (requests.hasNextValue()) {
+                try {
+                    chunk.add(requests.nextValue());
+                } catch (JsonMappingException e) {
+                    LOGGER.error("Skipping invalid shipment at position {}. Error: {}", replies.size() + chunk.size(), e.getOriginalMessage());
+                    replies.addAll(sendChunk(chunk));
+                    chunk.clear();
+                    replies.add(CompletableFuture.completedFuture(
+                            new ShipmentResponseDTO(null, "FAILED", "Invalid shipment: " + e.getOriginalMessage())));
+                    continue;
+                }
+                if (chunk.size() == batchChunkSize) {
+                    replies.addAll(sendChunk(chunk));
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Stopped reading shipment batch at position {}. Error: {}", replies.size() + chunk.size(), e.getMessage());
+            replies.addAll(sendChunk(chunk));
+            chunk.clear();
+            replies.add(CompletableFuture.completedFuture(
+                    new ShipmentResponseDTO(null, "FAILED", "Malformed batch payload: " + e.getMessage())));
+        }
+        if (!chunk.isEmpty()) {
+            replies.addAll(sendChunk(chunk));
+        }
+
+        return CompletableFuture.allOf(replies.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> toBatchResponse(replies));
+    }
+
+    /**
+     * Sends the shipments of a chunk that the concurrency limiter admits in one transaction.
+     *
+     * @param chunk The shipment requests of the chunk.
+     * @return One future per request, in the same order; a FAILED result for requests over the limit.
+     */
+    private List<CompletableFuture<ShipmentResponseDTO>> sendChunk(List<ShipmentRequestDTO> chunk) {
+        List<CompletableFuture<ShipmentResponseDTO>> replies = new ArrayList<>(chunk.size());
+        List<ShipmentRequestDTO> admitted = new ArrayList<>(chunk.size());
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>(chunk.size());
+        for (ShipmentRequestDTO shipmentRequest : chunk) {
+            AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire();
+            if (permit == null) {
+                replies.add(CompletableFuture.completedFuture(new ShipmentResponseDTO(shipmentRequest.orderId(), "FAILED",
+                        "Too many shipments in flight, retry later")));
+            } else {
+                replies.add(null);
+                admitted.add(shipmentRequest);
+                permits.add(permit);
+            }
+        }
+        if (admitted.size() < chunk.size()) {
+            LOGGER.warn("Rejected {} of {} shipments of a batch chunk, {} requests in flight",
+                    chunk.size() - admitted.size(), chunk.size(), concurrencyLimiter.inFlight());
+        }
+        if (admitted.isEmpty()) {
+            return replies;
+        }
+
+        List<CompletableFuture<ShipmentResponseDTO>> sent;
+        try {
+            sent = messageSenderService.sendShipmentBatch(admitted);
+        } catch (RuntimeException e) {
+            permits.forEach(permit -> permit.release(null, e));
+            throw e;
+        }
+        Iterator<CompletableFuture<ShipmentResponseDTO>> sentReplies = sent.iterator();
+        Iterator<AdaptiveConcurrencyLimiter.Permit> sentPermits = permits.iterator();
+        for (int i = 0; i < replies.size(); i++) {
+            if (replies.get(i) == null) {
+                replies.set(i, sentReplies.next().whenComplete(sentPermits.next()::release));
+            }
+        }
+        return replies;
+    }
+
+    private BatchShipmentResponseDTO toBatchResponse(List<CompletableFuture<ShipmentResponseDTO>> replies) {
+        List<ShipmentResponseDTO> results = replies.stream().map(CompletableFuture::join).toList();
+        int succeeded = (int) results.stream().filter(result -> "SUCCESS".equalsIgnoreCase(result.status())).count();
+        return new BatchShipmentResponseDTO(results.size(), succeeded, results.size() - succeeded, results);
     }
 }
@@ -0,0 +1,209 @@
+package com.jlpereira.mq_shipment_sender.service;
+
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentRequestDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentResponseDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentStatusDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Status of the shipments submitted in accepted mode, looked up by orderId, correlation ID or tracking number.
+ * <p>
+ * A shipment is stored as PENDING when its request message is sent and updated when its reply arrives or
+ * times out. Statuses are kept in submission order and expire a fixed time after submission, so the oldest
+ * status is always the next to expire or, once the store is full, to be evicted. When several submissions
+ * share an orderId or tracking number, lookups by those return the latest one.
+ */
+@Service
+public class ShipmentStatusStore {
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Entry> byCorrelationId = new LinkedHashMap<>();
+    private final Map<String, Entry> byOrderId = new HashMap<>();
+    private final Map<String, Entry> byTrackingNumber = new HashMap<>();
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+
+    /**
+     * Constructor for initializing the status store.
+     *
+     * @param meterRegistry The registry for size and eviction metrics.
+     * @param maxEntries    The maximum number of statuses kept.
+     * @param ttlMs         How long a status is kept after its shipment was submitted, in milliseconds.
+     */
+    public ShipmentStatusStore(MeterRegistry meterRegistry,
+                               @Value("${shipment.status-store.max-entries:100000}") int maxEntries,
+                               @Value("${shipment.status-store.ttl-ms:600000}") long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.sizeEvictions = evictionCounter(meterRegistry, "size");
+        this.expiredEvictions = evictionCounter(meterRegistry, "expired");
+        Gauge.builder("shipment.status-store.size", this, ShipmentStatusStore::size)
+                .description("Shipment statuses in the status store")
+                .register(meterRegistry);
+    }
+
+    private static Counter evictionCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("shipment.status-store.evictions")
+                .description("Shipment statuses removed from the status store")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stores a submitted shipment as PENDING.
+     *
+     * @param correlationId The correlation ID of its request message.
+     * @param request       The shipment request.
+     * @return The PENDING status.
+     */
+    public synchronized ShipmentStatusDTO accept(String correlationId, ShipmentRequestDTO request) {
+        long now = System.currentTimeMillis();
+        evictExpired(now);
+        Entry entry = new Entry(request, now + ttlMs, new ShipmentStatusDTO(request.orderId(), request.trackingNumber(),
+                correlationId, ShipmentStatusDTO.PENDING, "Shipment accepted", now, null));
+        Entry replaced = byCorrelationId.put(correlationId, entry);
+        if (replaced != null) {
+            unindex(replaced);
+        }
+        if (request.orderId() != null) {
+            byOrderId.put(request.orderId(), entry);
+        }
+        if (request.trackingNumber() != null) {
+            byTrackingNumber.put(request.trackingNumber(), entry);
+        }
+        while (byCorrelationId.size() > maxEntries) {
+            removeEldest();
+            sizeEvictions.increment();
+        }
+        return entry.status;
+    }
+
+    /**
+     * Records the reply of a submitted shipment. Has no effect if its status was already evicted.
+     *
+     * @param correlationId The correlation ID of its request message.
+     * @param response      The reply, or the failure that replaced it.
+     */
+    public synchronized void complete(String correlationId, ShipmentResponseDTO response) {
+        Entry entry = byCorrelationId.get(correlationId);
+        if (entry != null) {
+            entry.status = entry.status.completed(response, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @param orderId The ID of the order.
+     * @return The status of the latest shipment submitted for the order, or null if none is stored.
+     */
+    public synchronized ShipmentStatusDTO findByOrderId(String orderId) {
+        return live(byOrderId.get(orderId));
+    }
+
+    /**
+     * @param correlationId The correlation ID of the request message.
+     * @return The status of the shipment, or null if none is stored.
+     */
+    public synchronized ShipmentStatusDTO findByCorrelationId(String correlationId) {
+        return live(byCorrelationId.get(correlationId));
+    }
+
+    /**
+     * @param trackingNumber The tracking number for the shipment.
+     * @return The status of the latest shipment submitted with the tracking number, or null if none is stored.
+     */
+    public synchronized ShipmentStatusDTO findByTrackingNumber(String trackingNumber) {
+        return live(byTrackingNumber.get(trackingNumber));
+    }
+
+    /**
+     * Finds the latest submission of an identical request that is still pending or succeeded, so a
+     * retried submission can be answered without sending another message.
+     *
+     * @param request The shipment request.
+     * @return The status of the identical submission, or null if there is none.
+     */
+    public synchronized ShipmentStatusDTO findIdentical(ShipmentRequestDTO request) {
+        if (request.orderId() == null) {
+            return null;
+        }
+        Entry entry = byOrderId.get(request.orderId());
+        ShipmentStatusDTO status = live(entry);
+        if (status == null || !entry.request.equals(request)) {
+            return null;
+        }
+        return status.isPending() || "SUCCESS".equalsIgnoreCase(status.status()) ? status : null;
+    }
+
+    private ShipmentStatusDTO live(Entry entry) {
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            evictExpired(System.currentTimeMillis());
+            return null;
+        }
+        return entry.status;
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Entry> entries = byCorrelationId.values().iterator();
+        while (entries.hasNext()) {
+            Entry eldest = entries.next();
+            if (!eldest.isExpired(now)) {
+                return;
+            }
+            entries.remove();
+            unindex(eldest);
+            expiredEvictions.increment();
+        }
+    }
+
+    private void removeEldest() {
+        Iterator<Entry> entries = byCorrelationId.values().iterator();
+        Entry eldest = entries.next();
+        entries.remove();
+        unindex(eldest);
+    }
+
+    private void unindex(Entry entry) {
+        if (entry.request.orderId() != null) {
+            byOrderId.remove(entry.request.orderId(), entry);
+        }
+        if (entry.request.trackingNumber() != null) {
+            byTrackingNumber.remove(entry.request.trackingNumber(), entry);
+        }
+    }
+
+    private synchronized int size() {
+        return byCorrelationId.size();
+    }
+
+    /**
+     * A submitted shipment and its current status.
+     */
+    private static final class Entry {
+        private final ShipmentRequestDTO request;
+        private final long expiresAtMs;
+        private ShipmentStatusDTO status;
+
+        private Entry(ShipmentRequestDTO request, long expiresAtMs, ShipmentStatusDTO status) {
+            this.request = request;
+            this.expiresAtMs = expiresAtMs;
+            this.status = status;
+        }
+
+        boolean isExpired(long nowMs) {
+            return nowMs >= expiresAtMs;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.jlpereira.mq_shipment_sender.commons.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+	private static final int KEYS = 20_000;
+
+	@Test
+	void mapsKeysTheSameWayOnEveryRing() {
+		ConsistentHashRing ring = new ConsistentHashRing(List.of("Q1", "Q2", "Q3"), 128);
+		ConsistentHashRing other = new ConsistentHashRing(List.of("Q1", "Q2", "Q3"), 128);
+
+		for (int i = 0; i < 1_000; i++) {
+			assertEquals(ring.nodeFor("ORD-" + i), other.nodeFor("ORD-" + i));
+		}
+	}
+
+	@Test
+	void spreadsKeysEvenly() {
+		ConsistentHashRing ring = new ConsistentHashRing(List.of("Q1", "Q2", "Q3", "Q4"), 128);
+		Map<String, Integer> counts = new HashMap<>();
+
+		for (int i = 0; i < KEYS; i++) {
+			counts.merge(ring.nodeFor("ORD-" + i), 1, Integer::sum);
+		}
+
+		assertEquals(4, counts.size());
+		counts.values().forEach(count -> assertTrue(Math.abs(count - KEYS / 4) < KEYS / 4 * 0.2, counts::toString));
+	}
+
+	@Test
+	void addingANodeMovesOnlyItsShareOfKeys() {
+		ConsistentHashRing before = new ConsistentHashRing(List.of("Q1", "Q2", "Q3"), 128);
+		ConsistentHashRing after = new ConsistentHashRing(List.of("Q1", "Q2", "Q3", "Q4"), 128);
+
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			String node = after.nodeFor("ORD-" + i);
+			if (!node.equals(before.nodeFor("ORD-" + i))) {
+				assertEquals("Q4", node);
+				moved++;
+			}
+		}
+
+		assertTrue(Math.abs(moved - KEYS / 4) < KEYS / 4 * 0.2, "moved " + moved + " keys");
+	}
+
+	@Test
+	void rejectsMissingOrDuplicateNodes() {
+		assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of(), 128));
+		assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of("Q1", "Q1"), 128));
+		assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of("Q1"), 0));
+	}
+}
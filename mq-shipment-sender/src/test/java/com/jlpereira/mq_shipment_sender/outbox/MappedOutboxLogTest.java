@@ -0,0 +1,141 @@
+package com.jlpereira.mq_shipment_sender.outbox;
+
+import com.jlpereira.mq_shipment_commons.codec.EncodedPayload;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedOutboxLogTest {
+
+	private static final int SEGMENT_BYTES = 256;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void readsRecordsInOrderAcrossSegments() {
+		try (MappedOutboxLog log = new MappedOutboxLog(directory, SEGMENT_BYTES, 16)) {
+			for (int i = 0; i < 10; i++) {
+				assertTrue(log.append(outboxRecord(i)));
+			}
+
+			assertTrue(log.segmentCount() > 1);
+			assertEquals(10, log.pending());
+			assertCorrelationIds(log.read(4), 0, 4);
+			assertCorrelationIds(log.read(100), 4, 10);
+			assertTrue(log.read(100).isEmpty());
+		}
+	}
+
+	@Test
+	void keepsRecordFields() {
+		try (MappedOutboxLog log = new MappedOutboxLog(directory, SEGMENT_BYTES, 16)) {
+			log.append(new OutboxRecord("c-1", "DEV.QUEUE.5", 7, 42L, EncodedPayload.binary(new byte[]{1, 2, 3})));
+			log.append(outboxRecord(2));
+
+			List<OutboxRecord> records = log.read(2);
+
+			OutboxRecord express = records.get(0);
+			assertEquals("c-1", express.correlationId());
+			assertEquals("DEV.QUEUE.5", express.destination());
+			assertEquals(7, express.priority());
+			assertEquals(42L, express.receivedAt());
+			assertEquals(3, express.payload().bytes().length);
+			assertNull(records.get(1).destination());
+			assertEquals("{\"orderId\":\"ORD-2\"}", records.get(1).payload().text());
+		}
+	}
+
+	@Test
+	void rewindReadsUncommittedRecordsAgain() {
+		try (MappedOutboxLog log = new MappedOutboxLog(directory, SEGMENT_BYTES, 16)) {
+			for (int i = 0; i < 6; i++) {
+				log.append(outboxRecord(i));
+			}
+
+			log.read(2);
+			log.commit();
+			log.read(3);
+			log.rewind();
+
+			assertEquals(4, log.pending());
+			assertCorrelationIds(log.read(100), 2, 6);
+		}
+	}
+
+	@Test
+	void replaysRecordsAfterTheCheckpointOnReopen() {
+		try (MappedOutboxLog log = new MappedOutboxLog(directory, SEGMENT_BYTES, 16)) {
+			for (int i = 0; i < 8; i++) {
+				log.append(outboxRecord(i));
+			}
+			log.read(5);
+			log.commit();
+			log.read(2);
+		}
+
+		try (MappedOutboxLog log = new MappedOutboxLog(directory, SEGMENT_BYTES, 16)) {
+			assertEquals(3, log.pending());
+			assertTrue(log.append(outboxRecord(8)));
+			assertCorrelationIds(log.read(100), 5, 9);
+		}
+	}
+
+	@Test
+	void deletesPublishedSegments() throws IOException {
+		try (MappedOutboxLog log = new MappedOutboxLog(directory, SEGMENT_BYTES, 16)) {
+			for (int i = 0; i < 10; i++) {
+				log.append(outboxRecord(i));
+			}
+			int segments = log.segmentCount();
+
+			log.read(100);
+			log.commit();
+
+			assertEquals(1, log.segmentCount());
+			assertEquals(0, log.pending());
+			assertTrue(segments > 1);
+		}
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(1, files.filter(file -> file.getFileName().toString().endsWith(".log")).count());
+		}
+	}
+
+	@Test
+	void rejectsRecordsOnceAllSegmentsAreFull() {
+		try (MappedOutboxLog log = new MappedOutboxLog(directory, SEGMENT_BYTES, 2)) {
+			int appended = 0;
+			while (log.append(outboxRecord(appended))) {
+				appended++;
+			}
+
+			assertEquals(2, log.segmentCount());
+			assertFalse(log.append(new OutboxRecord("c-big", null, 4, 0L, EncodedPayload.binary(new byte[SEGMENT_BYTES]))));
+
+			log.read(100);
+			log.commit();
+			assertTrue(log.append(outboxRecord(appended)));
+		}
+	}
+
+	private static OutboxRecord outboxRecord(int i) {
+		return new OutboxRecord("c-" + i, null, 4, 1_000L + i, EncodedPayload.json("{\"orderId\":\"ORD-" + i + "\"}"));
+	}
+
+	private static void assertCorrelationIds(List<OutboxRecord> records, int from, int to) {
+		assertEquals(to - from, records.size());
+		for (int i = from; i < to; i++) {
+			assertEquals("c-" + i, records.get(i - from).correlationId());
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.jlpereira.mq_shipment_sender.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+	private static final long RTT = TimeUnit.MILLISECONDS.toNanos(20);
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void rejectsRequestsOverTheLimitUntilOneIsReleased() {
+		AdaptiveConcurrencyLimiter limiter = limiter(true, 10);
+		List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(limiter, 10);
+
+		assertNull(limiter.tryAcquire());
+		permits.get(0).release(null, null);
+		assertNotNull(limiter.tryAcquire());
+		assertEquals(1, meterRegistry.get("shipment.admission.rejected").counter().count());
+		assertEquals(10, meterRegistry.get("shipment.admission.inflight").gauge().value());
+	}
+
+	@Test
+	void growsWhileLatencyHoldsAndShrinksWhenItRises() {
+		AdaptiveConcurrencyLimiter limiter = limiter(true, 10);
+		acquire(limiter, 10);
+
+		for (int i = 0; i < 20; i++) {
+			limiter.onSample(RTT, false);
+		}
+		int grown = limiter.limit();
+		assertTrue(grown > 10, "limit " + grown);
+
+		for (int i = 0; i < 20; i++) {
+			limiter.onSample(RTT * 10, false);
+		}
+		assertTrue(limiter.limit() < grown / 2, "limit " + limiter.limit());
+	}
+
+	@Test
+	void doesNotGrowAnUnusedLimit() {
+		AdaptiveConcurrencyLimiter limiter = limiter(true, 10);
+
+		for (int i = 0; i < 20; i++) {
+			limiter.onSample(RTT, false);
+		}
+		assertEquals(10, limiter.limit());
+	}
+
+	@Test
+	void backsOffOnFailuresAndTimeoutsDownToTheMinimum() {
+		AdaptiveConcurrencyLimiter limiter = limiter(true, 100);
+
+		limiter.onSample(RTT, true);
+		assertEquals(98, limiter.limit());
+		limiter.onSample(TimeUnit.SECONDS.toNanos(5), false);
+		assertEquals(96, limiter.limit());
+
+		for (int i = 0; i < 1000; i++) {
+			limiter.onSample(RTT, true);
+		}
+		assertEquals(5, limiter.limit());
+		assertEquals(5, meterRegistry.get("shipment.admission.limit").gauge().value());
+	}
+
+	@Test
+	void cancelledPermitsFreeTheirSlotWithoutFeedingTheLimit() {
+		AdaptiveConcurrencyLimiter limiter = limiter(true, 10);
+		List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(limiter, 10);
+
+		permits.get(0).cancel();
+		permits.get(0).release(null, new IllegalStateException("Reply timed out"));
+		assertEquals(10, limiter.limit());
+		assertEquals(9, limiter.inFlight());
+		assertNotNull(limiter.tryAcquire());
+	}
+
+	@Test
+	void admitsEverythingWhenDisabled() {
+		AdaptiveConcurrencyLimiter limiter = limiter(false, 10);
+
+		acquire(limiter, 50);
+		limiter.onSample(RTT, true);
+		assertEquals(10, limiter.limit());
+	}
+
+	private AdaptiveConcurrencyLimiter limiter(boolean enabled, int initialLimit) {
+		return new AdaptiveConcurrencyLimiter(meterRegistry, enabled, initialLimit, 5, 500, 0.2, 0.9, 5000, 1);
+	}
+
+	private static List<AdaptiveConcurrencyLimiter.Permit> acquire(AdaptiveConcurrencyLimiter limiter, int count) {
+		List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+			assertNotNull(permit, "permit " + i);
+			permits.add(permit);
+		}
+		return permits;
+	}
+}
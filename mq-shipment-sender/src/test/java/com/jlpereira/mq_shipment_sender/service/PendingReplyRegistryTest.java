@@ -0,0 +1,52 @@
+package com.jlpereira.mq_shipment_sender.service;
+
+import com.jlpereira.mq_shipment_commons.util.HashedWheelTimer;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentResponseDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PendingReplyRegistryTest {
+
+	private final HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 64);
+
+	@AfterEach
+	void tearDown() {
+		timer.close();
+	}
+
+	@Test
+	void expiresUnpublishedRequestAfterPublishTimeout() {
+		PendingReplyRegistry registry = new PendingReplyRegistry(timer, new SimpleMeterRegistry(), 60_000, 50);
+
+		CompletableFuture<ShipmentResponseDTO> reply = registry.register("cid-1", false);
+
+		ExecutionException error = assertThrows(ExecutionException.class, () -> reply.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(TimeoutException.class, error.getCause());
+		assertEquals(0, registry.pendingCount());
+	}
+
+	@Test
+	void replacesPublishTimeoutWithReplyTimeoutOncePublished() throws Exception {
+		PendingReplyRegistry registry = new PendingReplyRegistry(timer, new SimpleMeterRegistry(), 60_000, 50);
+
+		CompletableFuture<ShipmentResponseDTO> reply = registry.register("cid-1", false);
+		registry.startTimeout("cid-1");
+		Thread.sleep(200);
+
+		assertFalse(reply.isDone());
+		assertTrue(registry.complete("cid-1", new ShipmentResponseDTO("ORD-1", "SUCCESS", "Email sent successfully")));
+		assertEquals("SUCCESS", reply.get().status());
+	}
+}
@@ -0,0 +1,39 @@
+package com.jlpereira.mq_shipment_sender.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestPartitionsTest {
+
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void countsOnlyRequestsSentToPartitions() {
+		RequestPartitions partitions = new RequestPartitions(meterRegistry, "Q1, Q2", 128);
+
+		String queue = partitions.queueFor("ORD-1");
+		partitions.sent(queue);
+		partitions.sent(queue);
+		partitions.sent("EXPRESS");
+		partitions.sent(null);
+
+		assertTrue(partitions.isEnabled());
+		assertEquals(2.0, meterRegistry.get("shipment.partition.sent").tag("queue", queue).counter().count());
+		assertEquals(2.0, meterRegistry.get("shipment.partition.sent").counters().stream()
+				.mapToDouble(Counter::count).sum());
+	}
+
+	@Test
+	void isDisabledWithoutPartitionQueues() {
+		RequestPartitions partitions = new RequestPartitions(meterRegistry, " ", 128);
+
+		assertFalse(partitions.isEnabled());
+		assertTrue(meterRegistry.find("shipment.partition.sent").counters().isEmpty());
+	}
+}
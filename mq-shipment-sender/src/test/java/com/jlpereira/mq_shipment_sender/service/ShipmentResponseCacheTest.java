@@ -0,0 +1,66 @@
+package com.jlpereira.mq_shipment_sender.service;
+
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentRequestDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentResponseDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class ShipmentResponseCacheTest {
+
+	private final ShipmentRequestDTO request = new ShipmentRequestDTO("ORD-1", "customer@example.com", "TRK-1",
+			LocalDate.of(2024, 9, 17), null, null);
+	private final ShipmentResponseDTO success = new ShipmentResponseDTO("ORD-1", "SUCCESS", "Email sent successfully");
+	private final AtomicInteger sends = new AtomicInteger();
+
+	@Test
+	void collapsesIdenticalInFlightRequests() {
+		ShipmentResponseCache cache = new ShipmentResponseCache(new SimpleMeterRegistry(), true, 100, 60_000);
+		CompletableFuture<ShipmentResponseDTO> reply = new CompletableFuture<>();
+
+		CompletableFuture<ShipmentResponseDTO> first = cache.getOrSend(request, r -> send(reply));
+		CompletableFuture<ShipmentResponseDTO> retry = cache.getOrSend(request, r -> send(reply));
+		assertFalse(retry.isDone());
+		reply.complete(success);
+
+		assertEquals(1, sends.get());
+		assertEquals(success, first.join());
+		assertEquals(success, retry.join());
+	}
+
+	@Test
+	void servesSuccessfulResponsesFromCache() {
+		ShipmentResponseCache cache = new ShipmentResponseCache(new SimpleMeterRegistry(), true, 100, 60_000);
+
+		cache.getOrSend(request, r -> send(CompletableFuture.completedFuture(success))).join();
+		ShipmentResponseDTO retried = cache.getOrSend(request, r -> send(CompletableFuture.completedFuture(success))).join();
+
+		assertEquals(1, sends.get());
+		assertEquals(success, retried);
+	}
+
+	@Test
+	void sendsAgainAfterFailureOrForDifferentDetails() {
+		ShipmentResponseCache cache = new ShipmentResponseCache(new SimpleMeterRegistry(), true, 100, 60_000);
+		ShipmentResponseDTO failed = new ShipmentResponseDTO("ORD-1", "FAILED", "No response received");
+		ShipmentRequestDTO changed = new ShipmentRequestDTO("ORD-1", "customer@example.com", "TRK-2",
+				LocalDate.of(2024, 9, 17), null, null);
+
+		cache.getOrSend(request, r -> send(CompletableFuture.completedFuture(failed))).join();
+		cache.getOrSend(request, r -> send(CompletableFuture.completedFuture(success))).join();
+		cache.getOrSend(changed, r -> send(CompletableFuture.completedFuture(success))).join();
+
+		assertEquals(3, sends.get());
+	}
+
+	private CompletableFuture<ShipmentResponseDTO> send(CompletableFuture<ShipmentResponseDTO> reply) {
+		sends.incrementAndGet();
+		return reply;
+	}
+}
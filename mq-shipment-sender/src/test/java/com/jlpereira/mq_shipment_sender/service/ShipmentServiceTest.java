@@ -0,0 +1,183 @@
+package com.jlpereira.mq_shipment_sender.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jlpereira.mq_shipment_sender.model.dto.BatchShipmentResponseDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentRequestDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentResponseDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentStatusDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShipmentServiceTest {
+
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final RecordingMessageSenderService messageSenderService = new RecordingMessageSenderService(meterRegistry);
+	private SamplingConcurrencyLimiter concurrencyLimiter = new SamplingConcurrencyLimiter(meterRegistry, 100);
+
+	@Test
+	void answersTruncatedBatchInPayloadOrder() throws Exception {
+		ShipmentService shipmentService = shipmentService(100);
+
+		BatchShipmentResponseDTO response = shipmentService.processShipmentBatch(ndjson(
+				shipment("ORD-1") + "\n" + shipment("ORD-2") + "\n" + "{\"orderId\":\"ORD-3\",\"customerEm")).get();
+
+		assertEquals(3, response.total());
+		assertEquals(2, response.succeeded());
+		assertEquals("ORD-1", response.results().get(0).orderId());
+		assertEquals("ORD-2", response.results().get(1).orderId());
+		assertEquals("FAILED", response.results().get(2).status());
+		assertTrue(response.results().get(2).message().startsWith("Malformed batch payload"));
+	}
+
+	@Test
+	void sendsBatchInChunksAndSkipsInvalidShipments() throws Exception {
+		ShipmentService shipmentService = shipmentService(2);
+
+		BatchShipmentResponseDTO response = shipmentService.processShipmentBatch(ndjson(
+				shipment("ORD-1") + "\n" + "{\"orderId\":[]}" + "\n" + shipment("ORD-2") + "\n" + shipment("ORD-3"))).get();
+
+		assertEquals(List.of("ORD-1", "FAILED", "ORD-2", "ORD-3"), response.results().stream()
+				.map(result -> result.orderId() != null ? result.orderId() : result.status()).toList());
+		assertEquals(List.of(List.of("ORD-1"), List.of("ORD-2", "ORD-3")), messageSenderService.chunks);
+	}
+
+	@Test
+	void rejectsBatchShipmentsOverTheLimitInPlace() throws Exception {
+		concurrencyLimiter = new SamplingConcurrencyLimiter(meterRegistry, 2);
+		ShipmentService shipmentService = shipmentService(100);
+
+		BatchShipmentResponseDTO response = shipmentService.processShipmentBatch(ndjson(
+				shipment("ORD-1") + "\n" + shipment("ORD-2") + "\n" + shipment("ORD-3"))).get();
+
+		assertEquals(List.of("SUCCESS", "SUCCESS", "FAILED"), response.results().stream()
+				.map(ShipmentResponseDTO::status).toList());
+		assertEquals("ORD-3", response.results().get(2).orderId());
+		assertEquals(List.of(List.of("ORD-1", "ORD-2")), messageSenderService.chunks);
+		assertEquals(2, concurrencyLimiter.samples.size());
+		assertEquals(0, concurrencyLimiter.inFlight());
+	}
+
+	@Test
+	void samplesOnlyShipmentsSentToTheProcessor() throws Exception {
+		ShipmentService shipmentService = shipmentService(100);
+		ShipmentRequestDTO request = request("ORD-1");
+
+		shipmentService.processShipment(request, concurrencyLimiter.tryAcquire()).get();
+		ShipmentResponseDTO cached = shipmentService.processShipment(request, concurrencyLimiter.tryAcquire()).get();
+
+		assertEquals("SUCCESS", cached.status());
+		assertEquals(1, messageSenderService.sent);
+		assertEquals(1, concurrencyLimiter.samples.size());
+		assertEquals(0, concurrencyLimiter.inFlight());
+	}
+
+	@Test
+	void doesNotSampleSubmissionsAppendedToTheOutbox() {
+		messageSenderService.outboxEnabled = true;
+		ShipmentService shipmentService = shipmentService(100);
+
+		ShipmentStatusDTO status = shipmentService.submitShipment(request("ORD-1"), concurrencyLimiter.tryAcquire());
+
+		assertTrue(status.isPending());
+		assertTrue(concurrencyLimiter.samples.isEmpty());
+		assertEquals(0, concurrencyLimiter.inFlight());
+	}
+
+	private ShipmentService shipmentService(int batchChunkSize) {
+		ObjectMapper objectMapper = new ObjectMapper();
+		objectMapper.registerModule(new JavaTimeModule());
+		return new ShipmentService(messageSenderService, concurrencyLimiter,
+				new ShipmentResponseCache(meterRegistry, true, 100, 30_000), new ShipmentStatusStore(meterRegistry, 100, 60_000),
+				objectMapper, batchChunkSize);
+	}
+
+	private static ShipmentRequestDTO request(String orderId) {
+		return new ShipmentRequestDTO(orderId, "customer@example.com", "TRK-" + orderId, LocalDate.of(2024, 9, 17), null, null);
+	}
+
+	private static String shipment(String orderId) {
+		return "{\"orderId\":\"" + orderId + "\",\"customerEmail\":\"customer@example.com\",\"trackingNumber\":\"TRK-"
+				+ orderId + "\",\"shippingDate\":\"2024-09-17\"}";
+	}
+
+	private static ByteArrayInputStream ndjson(String payload) {
+		return new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Records the round trips fed into the limit.
+	 */
+	private static final class SamplingConcurrencyLimiter extends AdaptiveConcurrencyLimiter {
+
+		private final List<Long> samples = new CopyOnWriteArrayList<>();
+
+		private SamplingConcurrencyLimiter(MeterRegistry meterRegistry, int limit) {
+			super(meterRegistry, true, limit, 1, limit, 0.2, 0.9, 5000, 1);
+		}
+
+		@Override
+		synchronized void onSample(long rttNanos, boolean dropped) {
+			samples.add(rttNanos);
+			super.onSample(rttNanos, dropped);
+		}
+	}
+
+	/**
+	 * Records the messages and chunks sent and answers every shipment successfully; submissions in accepted
+	 * mode are left pending.
+	 */
+	private static final class RecordingMessageSenderService extends MessageSenderService {
+
+		private final List<List<String>> chunks = new ArrayList<>();
+		private int sent;
+		private boolean outboxEnabled;
+
+		private RecordingMessageSenderService(MeterRegistry meterRegistry) {
+			super(null, null, null, null, null, null, null, null, meterRegistry, "test", "json", "");
+		}
+
+		@Override
+		public List<CompletableFuture<ShipmentResponseDTO>> sendShipmentBatch(List<ShipmentRequestDTO> shipmentRequests) {
+			if (shipmentRequests.isEmpty()) {
+				return List.of();
+			}
+			chunks.add(shipmentRequests.stream().map(ShipmentRequestDTO::orderId).toList());
+			return shipmentRequests.stream()
+					.map(request -> CompletableFuture.completedFuture(
+							new ShipmentResponseDTO(request.orderId(), "SUCCESS", "Email sent successfully")))
+					.toList();
+		}
+
+		@Override
+		public CompletableFuture<ShipmentResponseDTO> sendShipmentMessage(ShipmentRequestDTO shipmentRequest) {
+			sent++;
+			return CompletableFuture.completedFuture(
+					new ShipmentResponseDTO(shipmentRequest.orderId(), "SUCCESS", "Email sent successfully"));
+		}
+
+		@Override
+		public CompletableFuture<ShipmentResponseDTO> sendShipmentMessage(ShipmentRequestDTO shipmentRequest,
+																		  String correlationId) {
+			sent++;
+			return new CompletableFuture<>();
+		}
+
+		@Override
+		public boolean isOutboxEnabled() {
+			return outboxEnabled;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.jlpereira.mq_shipment_sender.service;
+
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentRequestDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentResponseDTO;
+import com.jlpereira.mq_shipment_sender.model.dto.ShipmentStatusDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShipmentStatusStoreTest {
+
+	private final ShipmentRequestDTO request = request("ORD-1", "TRK-1");
+
+	@Test
+	void findsPendingShipmentByEveryKeyUntilItCompletes() {
+		ShipmentStatusStore store = new ShipmentStatusStore(new SimpleMeterRegistry(), 100, 60_000);
+
+		ShipmentStatusDTO accepted = store.accept("cid-1", request);
+		assertTrue(accepted.isPending());
+		assertEquals(accepted, store.findByOrderId("ORD-1"));
+		assertEquals(accepted, store.findByCorrelationId("cid-1"));
+		assertEquals(accepted, store.findByTrackingNumber("TRK-1"));
+
+		store.complete("cid-1", new ShipmentResponseDTO("ORD-1", "SUCCESS", "Email sent successfully"));
+		ShipmentStatusDTO completed = store.findByTrackingNumber("TRK-1");
+		assertEquals("SUCCESS", completed.status());
+		assertEquals(accepted.submittedAt(), completed.submittedAt());
+		assertNotNull(completed.completedAt());
+	}
+
+	@Test
+	void findsIdenticalSubmissionsUnlessTheyFailed() {
+		ShipmentStatusStore store = new ShipmentStatusStore(new SimpleMeterRegistry(), 100, 60_000);
+
+		store.accept("cid-1", request);
+		assertEquals("cid-1", store.findIdentical(request).correlationId());
+		assertNull(store.findIdentical(request("ORD-1", "TRK-2")));
+
+		store.complete("cid-1", new ShipmentResponseDTO("ORD-1", "FAILED", "No response received"));
+		assertNull(store.findIdentical(request));
+	}
+
+	@Test
+	void evictsOldestSubmissionsAndTheirIndexes() {
+		ShipmentStatusStore store = new ShipmentStatusStore(new SimpleMeterRegistry(), 2, 60_000);
+
+		store.accept("cid-1", request);
+		store.accept("cid-2", request("ORD-2", "TRK-2"));
+		store.accept("cid-3", request("ORD-1", "TRK-3"));
+		store.accept("cid-4", request("ORD-4", "TRK-4"));
+
+		assertNull(store.findByCorrelationId("cid-1"));
+		assertNull(store.findByCorrelationId("cid-2"));
+		assertNull(store.findByTrackingNumber("TRK-1"));
+		assertEquals("cid-3", store.findByOrderId("ORD-1").correlationId());
+		assertEquals("cid-4", store.findByOrderId("ORD-4").correlationId());
+	}
+
+	@Test
+	void expiresSubmissionsAfterTtl() {
+		ShipmentStatusStore store = new ShipmentStatusStore(new SimpleMeterRegistry(), 100, 0);
+
+		store.accept("cid-1", request);
+
+		assertNull(store.findByOrderId("ORD-1"));
+		assertNull(store.findByCorrelationId("cid-1"));
+	}
+
+	private static ShipmentRequestDTO request(String orderId, String trackingNumber) {
+		return new ShipmentRequestDTO(orderId, "customer@example.com", trackingNumber, LocalDate.of(2024, 9, 17), null, null);
+	}
+}